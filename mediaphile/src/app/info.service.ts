@@ -28,6 +28,7 @@ export class InfoService {
   private getBookDetailsEndpoint: string = `${this.apiBackendUrl}books/details`;
   private getIsInListEndpoint: string = `${this.apiBackendUrl}list/isInList`;
   private getActivityEndpoint: string = `${this.apiBackendUrl}activity/followers`;
+  private getNewActivityEndpoint: string = `${this.apiBackendUrl}activity/newer`;
   private getRecommendationsEndpoint: string = `${this.apiBackendUrl}recommendations`;
 
   constructor(private http: HttpClient, private router: Router, private loginStatusService: LoginStatus) {
@@ -200,21 +201,33 @@ export class InfoService {
       }
     })
   }
-  public isInList(userId: string, mediaId: string) {
+  public isInList(userId: string, mediaType: string, mediaId: string) {
     return this.http.get<IsInList>(this.getIsInListEndpoint, {
       params: {
         "userId": userId,
+        "mediaType": mediaType,
         "mediaId": mediaId,
       }
     });
   }
 
 
-  public getActivity(userId: string, pageNumber: number) {
-    return this.http.get<{}[]>(this.getActivityEndpoint, {
+  // cursor is empty for the first page, then the one returned with the previous page
+  public getActivity(userId: string, cursor: string) {
+    return this.http.get<{results: {}[], cursor?: string}>(this.getActivityEndpoint, {
       params: {
         userId: userId,
-        pageNumber: String(pageNumber)
+        cursor: cursor
+      }
+    })
+  }
+
+  // Whether the feed has activity newer than the given timestamp, cheap enough to poll
+  public hasNewActivity(userId: string, since: number) {
+    return this.http.get<{newer: boolean}>(this.getNewActivityEndpoint, {
+      params: {
+        userId: userId,
+        since: String(since)
       }
     })
   }
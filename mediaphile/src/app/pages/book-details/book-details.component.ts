@@ -39,7 +39,7 @@ export class BookDetailsComponent implements OnInit {
       this.userId = x;
       if(x != "") {
         if (this.userId != "") {
-          this.infoSvc.isInList(this.userId, this.bookId).subscribe(data => {
+          this.infoSvc.isInList(this.userId, "book", this.bookId).subscribe(data => {
             this.hasQueue = data.isInQueue;
             this.hasWatched = data.isInViewed;
             this.hasListResponse = true;
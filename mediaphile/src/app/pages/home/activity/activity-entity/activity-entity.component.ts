@@ -23,6 +23,20 @@ export class ActivityEntityComponent implements OnInit {
     }
   }
 
+  public isGroup(): boolean {
+    if(this.activity != null) {
+      return "items" in this.activity
+    }
+  }
+
+  public getPreview(): Object[] {
+    return this.activity["items"]
+  }
+
+  public getCount(): number {
+    return this.activity["count"]
+  }
+
   public getArtwork() {
     return this.activity["artUrl"];
   }
@@ -59,6 +73,9 @@ export class ActivityEntityComponent implements OnInit {
     if(this.isReview()) {
       return `${this.getAuthor()} rated "${this.getTitle()}" ${this.getRating()} stars!`
     }
+    if(this.isGroup()) {
+      return `${this.getAuthor()} added ${this.getCount()} titles to their "${this.getListType()}" list`
+    }
     return `${this.getAuthor()} added ${this.getTitle()} to their "${this.getListType()}" list`
   }
 
@@ -1,6 +1,6 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import {InfoService} from "../../../info.service";
-import {Observable} from "rxjs";
+import {Observable, Subscription, interval} from "rxjs";
 import {LoginStatus} from "../../../auth/login.status";
 import {ModalComponent} from "../../helper/modal/modal.component";
 import {NgbModal} from "@ng-bootstrap/ng-bootstrap";
@@ -11,26 +11,59 @@ import { faEye } from '@fortawesome/free-solid-svg-icons';
   templateUrl: './activity.component.html',
   styleUrls: ['./activity.component.scss']
 })
-export class ActivityComponent implements OnInit {
+export class ActivityComponent implements OnInit, OnDestroy {
 
   public activity: {}[] = [];
   faEye = faEye;
   public loaded: boolean = false;
   public showMore: boolean = true;
-  public pageNumber: number = 0;
+  public cursor: string = "";
+  private poll: Subscription;
+  // How often the page checks for new activity
+  private pollMillis: number = 30000;
   constructor(private infoSvc: InfoService, private loginStatus: LoginStatus, private modalService: NgbModal) { }
 
   ngOnInit(): void {
-    this.getMoreActivity(0);
+    this.getMoreActivity();
+    this.loginStatus.sharedAccountId.subscribe(id => {
+      this.stopPolling();
+      this.poll = interval(this.pollMillis).subscribe(() => this.checkNewActivity(id));
+    })
+  }
+
+  ngOnDestroy(): void {
+    this.stopPolling();
+  }
+
+  private stopPolling() {
+    if (this.poll) {
+      this.poll.unsubscribe();
+    }
+  }
+
+  // Only reads the first page again when the feed has something newer than what is shown
+  private checkNewActivity(userId: string) {
+    const since = this.activity.length > 0 ? this.activity[0]["timestamp"] : 0;
+    this.infoSvc.hasNewActivity(userId, since).subscribe(data => {
+      if (!data.newer) {
+        return;
+      }
+      this.infoSvc.getActivity(userId, "").subscribe(page => {
+        const fresh = page.results.filter(activity => !this.activity.some(a => a["id"] == activity["id"]));
+        this.activity.unshift(...fresh);
+      })
+    })
   }
 
-  public getMoreActivity(pageNumber: number) {
+  public getMoreActivity() {
     this.loaded = false;
     this.loginStatus.sharedAccountId.subscribe(id => {
-      this.infoSvc.getActivity(id, pageNumber).subscribe(data => {
-        this.activity.push.apply(this.activity, data)
-        if(data.length != 10) {
+      this.infoSvc.getActivity(id, this.cursor).subscribe(data => {
+        this.activity.push.apply(this.activity, data.results)
+        if(!data.cursor) {
           this.showMore = false;
+        } else {
+          this.cursor = data.cursor;
         }
         this.loaded = true;
       })
@@ -47,8 +80,7 @@ export class ActivityComponent implements OnInit {
   }
 
   public loadMore() {
-    this.pageNumber += 10;
-    this.getMoreActivity(this.pageNumber);
+    this.getMoreActivity();
   }
 
   public isEntitiesEmpty() {
@@ -35,7 +35,7 @@ export class MovieDetailsComponent implements OnInit {
     this.loginStatus.sharedAccountId.subscribe(x => {
       this.userId = x;
       if(this.userId != "") {
-        this.infoSvc.isInList(this.userId, this.movieId).subscribe(data => {
+        this.infoSvc.isInList(this.userId, "movie", this.movieId).subscribe(data => {
           this.hasQueue = data.isInQueue;
           this.hasWatched = data.isInViewed;
           this.hasListResponse = true;
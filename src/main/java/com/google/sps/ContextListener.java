@@ -2,11 +2,23 @@ package com.google.sps;
 
 
 import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.queue.ListItemPointer;
 import com.google.sps.model.queue.MediaListItem;
 import com.google.sps.model.queue.QueueListItemObject;
 import com.google.sps.model.queue.ViewedListItemObject;
 import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.review.ReviewPointer;
+import com.google.sps.model.review.ReviewStats;
+import com.google.sps.model.review.ReviewSummaryObject;
+import com.google.sps.model.search.SearchSegment;
+import com.google.sps.model.search.SearchSegmentVersion;
+import com.google.sps.model.trending.TrendingCheckpoint;
+import com.google.sps.model.user.FollowerCountShard;
 import com.google.sps.model.user.UserObject;
+import com.google.sps.model.user.UserStats;
+import com.google.sps.util.GlobalActivityBuffer;
+import com.google.sps.model.follow.FollowChange;
 import com.google.sps.model.follow.FollowItem;
 import com.googlecode.objectify.ObjectifyService;
 
@@ -25,6 +37,12 @@ public class ContextListener implements ServletContextListener {
     @Override
     public void contextInitialized(ServletContextEvent event) {
         initDbObjects();
+        try {
+            GlobalActivityBuffer.get().restore();
+        } catch (RuntimeException e) {
+            // The site-wide activity starts out empty rather than keeping the instance from starting
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -37,8 +55,19 @@ public class ContextListener implements ServletContextListener {
         ObjectifyService.register(QueueListItemObject.class);
         ObjectifyService.register(ViewedListItemObject.class);
         ObjectifyService.register(UserObject.class);
+        ObjectifyService.register(UserStats.class);
+        ObjectifyService.register(FollowerCountShard.class);
         ObjectifyService.register(ReviewObject.class);
+        ObjectifyService.register(ReviewPointer.class);
+        ObjectifyService.register(ReviewSummaryObject.class);
+        ObjectifyService.register(ListItemPointer.class);
+        ObjectifyService.register(ReviewStats.class);
+        ObjectifyService.register(SearchSegment.class);
+        ObjectifyService.register(SearchSegmentVersion.class);
+        ObjectifyService.register(TrendingCheckpoint.class);
         ObjectifyService.register(FollowItem.class);
+        ObjectifyService.register(FollowChange.class);
         ObjectifyService.register(Activity.class);
+        ObjectifyService.register(FeedEntry.class);
     }
 }
@@ -0,0 +1,258 @@
+package com.google.sps.graph;
+
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.follow.FollowSuggestion;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.util.Metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * "Who to follow" suggestions, ranking users by follow paths of length two and by taste overlap.
+ *
+ * Paths are counted by a sampled BFS over the in-memory SocialGraph: at most SAMPLED_FOLLOWING of
+ * the users someone follows are expanded, each to at most SAMPLED_SECOND_HOP of the users they
+ * follow, and every path counts for the inverse of the chance it had of being sampled. Counts are
+ * exact for users below both limits, and estimates that cost the same for users who follow thousands.
+ *
+ * Taste overlap comes from the reviews of the RATED_ITEMS items the user reviewed last: every other
+ * reviewer of those items scores 1 for an equal rating, down to 0 for ratings at opposite ends.
+ *
+ * Rankings are cached per user for CACHE_TTL_MILLIS. Users followed since are filtered out when
+ * reading the cache, so following a suggestion removes it right away.
+ *
+ * Until the instance has loaded the graph (see SocialGraphService), users are ranked by taste
+ * alone, those already followed are found with a batch get of their FollowItems, and the
+ * rankings aren't cached.
+ */
+public class FollowSuggestions {
+
+    public static final int MAX_SUGGESTIONS = 50;
+
+    static final int SAMPLED_FOLLOWING = 100;
+    static final int SAMPLED_SECOND_HOP = 200;
+    static final int RATED_ITEMS = 20;
+    static final int REVIEWS_PER_ITEM = 50;
+    static final long CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    static final int CACHE_SIZE = 1000;
+
+    // A shared rating counts for more than a path, as it says something about the candidate's taste
+    static final double TASTE_WEIGHT = 2;
+
+    private static final int RATING_RANGE = 4;
+    private static final String HIT_METRIC = "follow.suggestions.cache.hit";
+    private static final String MISS_METRIC = "follow.suggestions.cache.miss";
+    private static final String LATENCY_METRIC = "follow.suggestions.compute";
+
+    private static final FollowSuggestions instance = new FollowSuggestions();
+
+    /**
+     * Path and taste scores of a user that could be suggested
+     */
+    private static class Candidate {
+        final String userId;
+        double paths;
+        double taste;
+        int sharedRatings;
+
+        Candidate(String userId) {
+            this.userId = userId;
+        }
+
+        double score() {
+            return paths + TASTE_WEIGHT * taste;
+        }
+    }
+
+    private static class Ranking {
+        final List<FollowSuggestion> suggestions;
+        final long computedAt;
+
+        Ranking(List<FollowSuggestion> suggestions, long computedAt) {
+            this.suggestions = suggestions;
+            this.computedAt = computedAt;
+        }
+    }
+
+    // Least recently used rankings are dropped once CACHE_SIZE users are cached
+    private final Map<String, Ranking> cache = new LinkedHashMap<String, Ranking>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Ranking> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private FollowSuggestions() {}
+
+    public static FollowSuggestions get() {
+        return instance;
+    }
+
+    /**
+     * @param userId: user to suggest users to follow to
+     * @param limit: maximum number of suggestions, at most MAX_SUGGESTIONS are kept
+     * @return: users that userId doesn't follow yet, best first
+     */
+    public List<FollowSuggestion> suggest(String userId, int limit) {
+        SocialGraph graph = SocialGraphService.get().getGraphIfLoaded();
+
+        Ranking ranking = null;
+        if (graph != null) {
+            synchronized (cache) {
+                ranking = cache.get(userId);
+            }
+        }
+        if (ranking == null || System.currentTimeMillis() - ranking.computedAt >= CACHE_TTL_MILLIS) {
+            Metrics.increment(MISS_METRIC);
+            long start = System.nanoTime();
+            ranking = new Ranking(rank(graph, userId), System.currentTimeMillis());
+            Metrics.recordLatency(LATENCY_METRIC, start);
+            if (graph != null) {
+                synchronized (cache) {
+                    cache.put(userId, ranking);
+                }
+            }
+        } else {
+            Metrics.increment(HIT_METRIC);
+        }
+
+        Set<String> followed = (graph == null) ? loadFollowed(userId, ranking.suggestions) : null;
+        List<FollowSuggestion> suggestions = new ArrayList<>();
+        for (FollowSuggestion suggestion : ranking.suggestions) {
+            if (suggestions.size() >= limit) break;
+            boolean following = (graph == null)
+                    ? followed.contains(suggestion.getUserId())
+                    : graph.isFollowing(userId, suggestion.getUserId());
+            if (!following) {
+                suggestions.add(suggestion);
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * @return: the ids of the suggested users that userId follows, found with a batch get of the FollowItems
+     */
+    private static Set<String> loadFollowed(String userId, List<FollowSuggestion> suggestions) {
+        List<String> followIds = new ArrayList<>();
+        for (FollowSuggestion suggestion : suggestions) {
+            followIds.add(FollowItem.makeId(userId, suggestion.getUserId()));
+        }
+        Set<String> followed = new HashSet<>();
+        for (FollowItem followItem : ofy().load().type(FollowItem.class).ids(followIds).values()) {
+            followed.add(followItem.getTargetId());
+        }
+        return followed;
+    }
+
+    // Without the graph, users already followed are left for suggest() to filter out
+    private static List<FollowSuggestion> rank(SocialGraph graph, String userId) {
+        Map<String, Candidate> candidates = new HashMap<>();
+        if (graph != null) {
+            addPaths(graph, userId, candidates);
+        }
+        addTaste(userId, candidates);
+
+        List<Candidate> ranked = new ArrayList<>();
+        for (Candidate candidate : candidates.values()) {
+            if (candidate.score() > 0 && !candidate.userId.equals(userId)
+                    && (graph == null || !graph.isFollowing(userId, candidate.userId))) {
+                ranked.add(candidate);
+            }
+        }
+        ranked.sort((a, b) -> {
+            int byScore = Double.compare(b.score(), a.score());
+            return (byScore != 0) ? byScore : a.userId.compareTo(b.userId);
+        });
+
+        List<FollowSuggestion> suggestions = new ArrayList<>();
+        for (Candidate candidate : ranked.subList(0, Math.min(MAX_SUGGESTIONS, ranked.size()))) {
+            suggestions.add(new FollowSuggestion(candidate.userId, candidate.score(),
+                    (int) Math.round(candidate.paths), candidate.sharedRatings));
+        }
+        return suggestions;
+    }
+
+    private static void addPaths(SocialGraph graph, String userId, Map<String, Candidate> candidates) {
+        int user = graph.indexOf(userId);
+        if (user < 0) {
+            return;
+        }
+        Random random = ThreadLocalRandom.current();
+        int[] following = graph.followingOf(user);
+        int sampled = sample(following, SAMPLED_FOLLOWING, random);
+        double firstHopScale = (double) following.length / sampled;
+
+        Map<Integer, Double> paths = new HashMap<>();
+        for (int i = 0; i < sampled; i++) {
+            int[] secondHop = graph.followingOf(following[i]);
+            int secondSampled = sample(secondHop, SAMPLED_SECOND_HOP, random);
+            double weight = firstHopScale * secondHop.length / secondSampled;
+            for (int j = 0; j < secondSampled; j++) {
+                paths.merge(secondHop[j], weight, Double::sum);
+            }
+        }
+
+        for (Map.Entry<Integer, Double> path : paths.entrySet()) {
+            String candidateId = graph.userIdAt(path.getKey());
+            candidates.computeIfAbsent(candidateId, Candidate::new).paths = path.getValue();
+        }
+    }
+
+    private static void addTaste(String userId, Map<String, Candidate> candidates) {
+        List<ReviewObject> rated = ofy().load().type(ReviewObject.class)
+                .filter("userId", userId)
+                .order("-timestamp")
+                .limit(RATED_ITEMS)
+                .list();
+
+        // Objectify runs the queries of lists asynchronously, so these are all issued before any is read
+        List<List<ReviewObject>> others = new ArrayList<>();
+        for (ReviewObject review : rated) {
+            others.add(ofy().load().type(ReviewObject.class)
+                    .filter("contentType", review.getContentType())
+                    .filter("contentId", review.getContentId())
+                    .order("-timestamp")
+                    .limit(REVIEWS_PER_ITEM)
+                    .list());
+        }
+
+        for (int i = 0; i < rated.size(); i++) {
+            int rating = rated.get(i).getRating();
+            for (ReviewObject other : others.get(i)) {
+                if (userId.equals(other.getAuthorId())) continue;
+                Candidate candidate = candidates.computeIfAbsent(other.getAuthorId(), Candidate::new);
+                candidate.taste += 1 - (double) Math.abs(rating - other.getRating()) / RATING_RANGE;
+                candidate.sharedRatings++;
+            }
+        }
+    }
+
+    /**
+     * Moves a random sample of at most size values to the front of the array
+     * @return: the number of values sampled
+     */
+    private static int sample(int[] values, int size, Random random) {
+        if (values.length <= size) {
+            return values.length;
+        }
+        for (int i = 0; i < size; i++) {
+            int pick = i + random.nextInt(values.length - i);
+            int swap = values[i];
+            values[i] = values[pick];
+            values[pick] = swap;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,496 @@
+package com.google.sps.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The follow graph held in memory as primitive arrays.
+ *
+ * Users are mapped to dense ints, and each direction of the graph is stored in compressed sparse
+ * row form: the users followed by u are targets[offsets[u]] to targets[offsets[u + 1]], sorted.
+ * That is two ints per edge and one per user and direction, and a lookup is a binary search.
+ *
+ * Follows and unfollows made after the arrays were built are kept as per user deltas, and merged
+ * into the arrays once there are more than 1% of the edges (or MIN_COMPACT_DELTAS) of them, so
+ * that a write never rebuilds the arrays and reads stay close to array speed.
+ */
+public class SocialGraph {
+
+    static final int MIN_COMPACT_DELTAS = 10_000;
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * One direction of the graph in compressed sparse row form
+     */
+    private static class Rows {
+        final int[] offsets;
+        final int[] targets;
+
+        Rows(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        int rowCount() {
+            return offsets.length - 1;
+        }
+
+        int degree(int row) {
+            return (row < rowCount()) ? offsets[row + 1] - offsets[row] : 0;
+        }
+
+        boolean contains(int row, int target) {
+            return row < rowCount() && Arrays.binarySearch(targets, offsets[row], offsets[row + 1], target) >= 0;
+        }
+
+        // The transposed rows, each sorted as rows are visited in order
+        Rows transpose(int rowCount) {
+            int[] degrees = new int[rowCount + 1];
+            for (int i = 0; i < offsets[rowCount()]; i++) {
+                degrees[targets[i] + 1]++;
+            }
+            for (int row = 0; row < rowCount; row++) {
+                degrees[row + 1] += degrees[row];
+            }
+            int[] transposedOffsets = degrees.clone();
+            int[] transposedTargets = new int[offsets[rowCount()]];
+            for (int row = 0; row < rowCount(); row++) {
+                for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+                    transposedTargets[degrees[targets[i]]++] = row;
+                }
+            }
+            return new Rows(transposedOffsets, transposedTargets);
+        }
+    }
+
+    /**
+     * Follows or unfollows of one user in one direction, not yet merged into the rows
+     */
+    private static class Delta {
+        final TreeSet<Integer> added = new TreeSet<>();
+        final TreeSet<Integer> removed = new TreeSet<>();
+    }
+
+    /**
+     * Collects edges to build a graph from in one go
+     */
+    public static class Builder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> userIds = new ArrayList<>();
+        private int[] sources = new int[1024];
+        private int[] targets = new int[1024];
+        private int edgeCount;
+
+        /**
+         * Adds a user without any edges, so that it keeps its int id
+         * @return: the int id of the user
+         */
+        public int addUser(String userId) {
+            Integer id = ids.get(userId);
+            if (id == null) {
+                id = userIds.size();
+                ids.put(userId, id);
+                userIds.add(userId);
+            }
+            return id;
+        }
+
+        /**
+         * Adds userId following targetId, duplicates and self follows are dropped when building
+         */
+        public Builder addFollow(String userId, String targetId) {
+            return addFollow(addUser(userId), addUser(targetId));
+        }
+
+        // Takes ids returned by addUser()
+        Builder addFollow(int user, int target) {
+            if (edgeCount == sources.length) {
+                sources = Arrays.copyOf(sources, edgeCount * 2);
+                targets = Arrays.copyOf(targets, edgeCount * 2);
+            }
+            sources[edgeCount] = user;
+            targets[edgeCount] = target;
+            edgeCount++;
+            return this;
+        }
+
+        public SocialGraph build() {
+            int userCount = userIds.size();
+            int[] offsets = new int[userCount + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                offsets[sources[i] + 1]++;
+            }
+            for (int user = 0; user < userCount; user++) {
+                offsets[user + 1] += offsets[user];
+            }
+            int[] next = Arrays.copyOf(offsets, userCount);
+            int[] sorted = new int[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                sorted[next[sources[i]]++] = targets[i];
+            }
+            sources = null;
+            targets = null;
+
+            // Sort each row and squeeze out duplicates and self follows in place
+            int written = 0;
+            int rowStart = 0;
+            for (int user = 0; user < userCount; user++) {
+                int rowEnd = offsets[user + 1];
+                Arrays.sort(sorted, rowStart, rowEnd);
+                offsets[user] = written;
+                for (int i = rowStart; i < rowEnd; i++) {
+                    if (sorted[i] != user && (written == offsets[user] || sorted[written - 1] != sorted[i])) {
+                        sorted[written++] = sorted[i];
+                    }
+                }
+                rowStart = rowEnd;
+            }
+            offsets[userCount] = written;
+
+            Rows following = new Rows(offsets, (written == sorted.length) ? sorted : Arrays.copyOf(sorted, written));
+            return new SocialGraph(ids, userIds, following, following.transpose(userCount));
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ids;
+    private final List<String> userIds;
+    private Rows following;
+    private Rows followers;
+    private final Map<Integer, Delta> followingDeltas = new HashMap<>();
+    private final Map<Integer, Delta> followerDeltas = new HashMap<>();
+    private int deltaCount;
+    private long edgeCount;
+
+    private SocialGraph(Map<String, Integer> ids, List<String> userIds, Rows following, Rows followers) {
+        this.ids = ids;
+        this.userIds = userIds;
+        this.following = following;
+        this.followers = followers;
+        this.edgeCount = following.targets.length;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getUserCount() {
+        lock.readLock().lock();
+        try {
+            return userIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getEdgeCount() {
+        lock.readLock().lock();
+        try {
+            return edgeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return: true if userId follows targetId
+     */
+    public boolean isFollowing(String userId, String targetId) {
+        lock.readLock().lock();
+        try {
+            Integer user = ids.get(userId);
+            Integer target = ids.get(targetId);
+            return user != null && target != null && contains(following, followingDeltas, user, target);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return: true if otherId follows userId, for showing "follows you" on otherId's profile
+     */
+    public boolean followsBack(String userId, String otherId) {
+        lock.readLock().lock();
+        try {
+            Integer user = ids.get(userId);
+            Integer other = ids.get(otherId);
+            return user != null && other != null && contains(following, followingDeltas, other, user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<String> getFollowing(String userId) {
+        lock.readLock().lock();
+        try {
+            Integer user = ids.get(userId);
+            return (user == null) ? Collections.emptyList() : toUserIds(row(following, followingDeltas, user));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<String> getFollowers(String userId) {
+        lock.readLock().lock();
+        try {
+            Integer user = ids.get(userId);
+            return (user == null) ? Collections.emptyList() : toUserIds(row(followers, followerDeltas, user));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return: the users that userId follows and that follow userId back, ordered by int id
+     */
+    public List<String> getMutual(String userId) {
+        lock.readLock().lock();
+        try {
+            Integer user = ids.get(userId);
+            if (user == null) {
+                return Collections.emptyList();
+            }
+            return toUserIds(intersect(row(following, followingDeltas, user), row(followers, followerDeltas, user)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getFollowingCount(String userId) {
+        lock.readLock().lock();
+        try {
+            Integer user = ids.get(userId);
+            return (user == null) ? 0 : degree(following, followingDeltas, user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getFollowerCount(String userId) {
+        lock.readLock().lock();
+        try {
+            Integer user = ids.get(userId);
+            return (user == null) ? 0 : degree(followers, followerDeltas, user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Int id access for traversals in this package, which would otherwise map every visited user to a String
+
+    /**
+     * @return: the int id of a user, or -1 if the user has no follows
+     */
+    int indexOf(String userId) {
+        lock.readLock().lock();
+        try {
+            Integer user = ids.get(userId);
+            return (user == null) ? -1 : user;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    String userIdAt(int user) {
+        lock.readLock().lock();
+        try {
+            return userIds.get(user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return: the int ids of the users that user follows, sorted, in an array the caller may modify
+     */
+    int[] followingOf(int user) {
+        lock.readLock().lock();
+        try {
+            return row(following, followingDeltas, user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that userId now follows targetId, does nothing if it already did
+     */
+    public void addFollow(String userId, String targetId) {
+        if (userId.equals(targetId)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int user = intern(userId);
+            int target = intern(targetId);
+            if (contains(following, followingDeltas, user, target)) {
+                return;
+            }
+            applyDelta(following, followingDeltas, user, target, true);
+            applyDelta(followers, followerDeltas, target, user, true);
+            edgeCount++;
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records that userId no longer follows targetId, does nothing if it didn't
+     */
+    public void removeFollow(String userId, String targetId) {
+        lock.writeLock().lock();
+        try {
+            Integer user = ids.get(userId);
+            Integer target = ids.get(targetId);
+            if (user == null || target == null || !contains(following, followingDeltas, user, target)) {
+                return;
+            }
+            applyDelta(following, followingDeltas, user, target, false);
+            applyDelta(followers, followerDeltas, target, user, false);
+            edgeCount--;
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int intern(String userId) {
+        Integer id = ids.get(userId);
+        if (id == null) {
+            id = userIds.size();
+            ids.put(userId, id);
+            userIds.add(userId);
+        }
+        return id;
+    }
+
+    private static boolean contains(Rows rows, Map<Integer, Delta> deltas, int row, int target) {
+        Delta delta = deltas.get(row);
+        if (delta != null) {
+            if (delta.added.contains(target)) return true;
+            if (delta.removed.contains(target)) return false;
+        }
+        return rows.contains(row, target);
+    }
+
+    private static int degree(Rows rows, Map<Integer, Delta> deltas, int row) {
+        Delta delta = deltas.get(row);
+        int degree = rows.degree(row);
+        return (delta == null) ? degree : degree + delta.added.size() - delta.removed.size();
+    }
+
+    // The sorted targets of a row with its delta applied
+    private static int[] row(Rows rows, Map<Integer, Delta> deltas, int row) {
+        if (row >= rows.rowCount()) {
+            Delta delta = deltas.get(row);
+            return (delta == null) ? EMPTY : toArray(delta.added);
+        }
+        int start = rows.offsets[row];
+        int end = rows.offsets[row + 1];
+        Delta delta = deltas.get(row);
+        if (delta == null) {
+            return Arrays.copyOfRange(rows.targets, start, end);
+        }
+
+        int[] merged = new int[end - start + delta.added.size() - delta.removed.size()];
+        int written = 0;
+        for (int i = start; i < end; i++) {
+            if (!delta.removed.contains(rows.targets[i])) {
+                merged[written++] = rows.targets[i];
+            }
+        }
+        for (int target : delta.added) {
+            merged[written++] = target;
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private static void applyDelta(Rows rows, Map<Integer, Delta> deltas, int row, int target, boolean add) {
+        Delta delta = deltas.computeIfAbsent(row, r -> new Delta());
+        if (add) {
+            if (!delta.removed.remove(target)) delta.added.add(target);
+        }
+        else {
+            if (!delta.added.remove(target)) delta.removed.add(target);
+        }
+        if (delta.added.isEmpty() && delta.removed.isEmpty()) {
+            deltas.remove(row);
+        }
+    }
+
+    private void compactIfNeeded() {
+        deltaCount++;
+        if (deltaCount > Math.max(MIN_COMPACT_DELTAS, edgeCount / 100)) {
+            compact();
+        }
+    }
+
+    // Merges the deltas into the rows, must hold the write lock
+    private void compact() {
+        if (followingDeltas.isEmpty() && userIds.size() == following.rowCount()) {
+            deltaCount = 0;
+            return;
+        }
+        int userCount = userIds.size();
+        int[] offsets = new int[userCount + 1];
+        int[] targets = new int[(int) edgeCount];
+        int written = 0;
+        for (int user = 0; user < userCount; user++) {
+            offsets[user] = written;
+            int[] row = row(following, followingDeltas, user);
+            System.arraycopy(row, 0, targets, written, row.length);
+            written += row.length;
+        }
+        offsets[userCount] = written;
+
+        following = new Rows(offsets, targets);
+        followers = following.transpose(userCount);
+        followingDeltas.clear();
+        followerDeltas.clear();
+        deltaCount = 0;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] both = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                both[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(both, count);
+    }
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        int[] array = new int[set.size()];
+        int i = 0;
+        for (int value : set) {
+            array[i++] = value;
+        }
+        return array;
+    }
+
+    private List<String> toUserIds(int[] row) {
+        List<String> result = new ArrayList<>(row.length);
+        for (int user : row) {
+            result.add(userIds.get(user));
+        }
+        return result;
+    }
+}
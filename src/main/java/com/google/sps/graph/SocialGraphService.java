@@ -0,0 +1,224 @@
+package com.google.sps.graph;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.sps.model.follow.FollowChange;
+import com.google.sps.model.follow.FollowItem;
+import com.googlecode.objectify.Key;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Keeps the follow graph of all users in memory on each instance (see SocialGraph).
+ *
+ * The graph is built from a keys-only scan of the FollowItems, whose keys are "userId:targetId",
+ * when the instance gets its warmup request (see WarmupServlet), never while serving a user:
+ * until it is built, getGraphIfLoaded() returns null and callers do without it. App Engine doesn't
+ * always send warmup requests, so an instance asked for a graph it doesn't have builds it in a
+ * background thread, or where those aren't available, in a task (see GraphLoadServlet). A task
+ * may be served by another instance, so this one asks again every LOAD_RETRY_MILLIS until it has
+ * a graph.
+ *
+ * Once built, it is kept up to date from the FollowChanges saved with every follow and unfollow
+ * instead of being scanned again. Follows made through this instance are applied as they happen,
+ * and at most once every refreshMillis() the changes made since the last check are read and
+ * applied in order. Changes are read again for CHANGE_OVERLAP_MILLIS, as a query may not see a
+ * change as soon as it is saved, and applying one twice does nothing. An instance that didn't
+ * check for longer than the changes are kept drops its graph and builds it again.
+ */
+public class SocialGraphService {
+
+    public static final String LOAD_URL = "/jobs/loadGraph";
+    public static final String REFRESH_MILLIS_PROPERTY = "mediaphile.graph.refreshMillis";
+    static final long DEFAULT_REFRESH_MILLIS = 5000;
+    static final long CHANGE_OVERLAP_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    static final long LOAD_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // FollowChanges are kept this long, an instance that didn't check for longer has to scan again
+    public static final long CHANGE_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static final int SCAN_CHUNK_SIZE = 1000;
+
+    private static final Logger logger = Logger.getLogger(SocialGraphService.class.getName());
+    private static final SocialGraphService instance = new SocialGraphService();
+
+    private volatile SocialGraph graph;
+    private volatile long lastRefreshMillis;
+    // Changes saved at or after this time may not have been applied yet
+    private volatile long changesFrom;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicLong loadRequestedMillis = new AtomicLong();
+
+    private SocialGraphService() {}
+
+    public static SocialGraphService get() {
+        return instance;
+    }
+
+    /**
+     * Never builds the graph, but has it built outside of the request if it isn't, see requestLoad().
+     * Applies the changes made by other instances if refreshMillis() passed since they were last
+     * read, unless another request already is.
+     * @return: the graph, or null if it wasn't built on this instance yet
+     */
+    public SocialGraph getGraphIfLoaded() {
+        if (graph == null) {
+            requestLoad();
+            return null;
+        }
+        if (isRefreshDue() && refreshLock.tryLock()) {
+            try {
+                if (isRefreshDue()) {
+                    refresh();
+                }
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Builds the graph from the Datastore and replaces the current one, while requests keep reading
+     * the current one. Called by WarmupServlet, and by admins when follows were written without
+     * going through FollowServlet, e.g. by a migration
+     */
+    public void reload() {
+        refreshLock.lock();
+        try {
+            load();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Builds the graph if this instance doesn't have one, called outside of user requests
+     * @return: true if it was built, false if it already was
+     */
+    public boolean loadIfMissing() {
+        refreshLock.lock();
+        try {
+            if (graph != null) {
+                return false;
+            }
+            load();
+            return true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a follow saved by this instance to the graph, if it is loaded
+     */
+    public void applyFollow(FollowItem followItem) {
+        SocialGraph current = graph;
+        if (current != null) {
+            current.addFollow(followItem.getUserId(), followItem.getTargetId());
+        }
+    }
+
+    /**
+     * Applies a follow deleted by this instance to the graph, if it is loaded
+     */
+    public void applyUnfollow(FollowItem followItem) {
+        SocialGraph current = graph;
+        if (current != null) {
+            current.removeFollow(followItem.getUserId(), followItem.getTargetId());
+        }
+    }
+
+    static long refreshMillis() {
+        return Long.getLong(REFRESH_MILLIS_PROPERTY, DEFAULT_REFRESH_MILLIS);
+    }
+
+    private boolean isRefreshDue() {
+        return System.currentTimeMillis() - lastRefreshMillis >= refreshMillis();
+    }
+
+    /**
+     * Starts building the graph in a background thread, or in a task where background threads
+     * aren't available, unless it was already requested in the last LOAD_RETRY_MILLIS
+     */
+    private void requestLoad() {
+        long now = System.currentTimeMillis();
+        long requested = loadRequestedMillis.get();
+        if (now - requested < LOAD_RETRY_MILLIS || !loadRequestedMillis.compareAndSet(requested, now)) {
+            return;
+        }
+        try {
+            ThreadManager.createBackgroundThread(this::loadIfMissing).start();
+        } catch (RuntimeException e) {
+            // Only instances with manual or basic scaling can run background threads
+            try {
+                QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(LOAD_URL));
+            } catch (RuntimeException queueError) {
+                logger.log(Level.WARNING, "Could not enqueue the follow graph load", queueError);
+            }
+        }
+    }
+
+    // Must hold refreshLock
+    private void refresh() {
+        if (System.currentTimeMillis() - changesFrom >= CHANGE_RETENTION_MILLIS) {
+            // Some of the changes may have been pruned already, the graph can't be brought up to date
+            graph = null;
+            requestLoad();
+            return;
+        }
+        applyChanges(graph, changesFrom);
+    }
+
+    // Must hold refreshLock
+    private void load() {
+        long startedAt = System.currentTimeMillis();
+        SocialGraph loaded = scanDatastore();
+        // The scan may or may not have seen the follows changed while it ran
+        applyChanges(loaded, startedAt - CHANGE_OVERLAP_MILLIS);
+        graph = loaded;
+    }
+
+    /**
+     * Applies the FollowChanges saved since a given time to a graph, oldest first
+     * @param target: graph to update
+     * @param from: time of the oldest change to apply
+     */
+    private void applyChanges(SocialGraph target, long from) {
+        long readAt = System.currentTimeMillis();
+        lastRefreshMillis = readAt;
+        List<FollowChange> changes = ofy().load().type(FollowChange.class)
+                .filter("timestamp >=", from)
+                .order("timestamp")
+                .list();
+        for (FollowChange change : changes) {
+            if (change.isFollow()) {
+                target.addFollow(change.getUserId(), change.getTargetId());
+            } else {
+                target.removeFollow(change.getUserId(), change.getTargetId());
+            }
+        }
+        changesFrom = Math.max(from, readAt - CHANGE_OVERLAP_MILLIS);
+    }
+
+    private static SocialGraph scanDatastore() {
+        SocialGraph.Builder builder = SocialGraph.builder();
+        for (Key<FollowItem> key : ofy().load().type(FollowItem.class).chunk(SCAN_CHUNK_SIZE).keys()) {
+            // Follows that haven't been moved to named keys yet are left out until they are
+            String name = key.getName();
+            int separator = (name == null) ? -1 : name.indexOf(':');
+            if (separator > 0) {
+                builder.addFollow(name.substring(0, separator), name.substring(separator + 1));
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.google.sps.model.activity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Activity of one user doing the same thing many times in a short while, e.g. adding 30 movies
+ * to their queue, shown as a single feed item. Only built when feeds are read, never saved.
+ * Its id and timestamp are those of the newest activity in the group, items holds a preview
+ * of the newest few, and count how many there are in total.
+ */
+public class ActivityGroup extends Activity {
+
+    public static final int PREVIEW_SIZE = 3;
+
+    @JsonProperty
+    private String userId;
+
+    @JsonProperty
+    private String username;
+
+    // The list type for list activity
+    @JsonProperty
+    private String listType;
+
+    @JsonProperty
+    private long timestamp;
+
+    @JsonProperty
+    private int count;
+
+    @JsonProperty
+    private List<Activity> items;
+
+    // Feed position of the oldest activity in the group, where the next page starts
+    private transient long endTimestamp;
+    private transient long endActivityId;
+
+    public ActivityGroup() {}
+
+    /**
+     * @param preview: the newest activities of the group, newest first, at most PREVIEW_SIZE are kept
+     * @param count: number of activities in the group
+     * @param endTimestamp: timestamp of the oldest activity in the group
+     * @param endActivityId: id of the oldest activity in the group
+     */
+    public ActivityGroup(String userId, String username, String listType, List<? extends Activity> preview,
+                         long timestamp, int count, long endTimestamp, long endActivityId) {
+        setId(preview.get(0).getId());
+        this.userId = userId;
+        this.username = username;
+        this.listType = listType;
+        this.items = new ArrayList<>(preview.subList(0, Math.min(preview.size(), PREVIEW_SIZE)));
+        this.timestamp = timestamp;
+        this.count = count;
+        this.endTimestamp = endTimestamp;
+        this.endActivityId = endActivityId;
+    }
+
+    /**
+     * Adds an activity newer than those in the group
+     */
+    public void addNewest(Activity activity, long activityTimestamp) {
+        setId(activity.getId());
+        items.add(0, activity);
+        if (items.size() > PREVIEW_SIZE) {
+            items.remove(items.size() - 1);
+        }
+        timestamp = activityTimestamp;
+        count++;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getListType() {
+        return listType;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public List<Activity> getItems() {
+        return items;
+    }
+
+    public long getEndTimestamp() {
+        return endTimestamp;
+    }
+
+    public long getEndActivityId() {
+        return endActivityId;
+    }
+}
@@ -0,0 +1,72 @@
+package com.google.sps.model.activity;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Index;
+
+/**
+ * An activity delivered to the feed inbox of one of its author's followers, written when the
+ * activity is posted (see FeedInboxes). Keyed by "ownerId:activityId", so delivering the same
+ * activity twice, e.g. when a fan-out task is retried, writes the same entry.
+ */
+@Entity
+public class FeedEntry {
+
+    @Id
+    private String id;
+
+    // User whose feed this entry is in
+    @Index
+    private String ownerId;
+
+    // Copied from the activity, feeds are ordered by it
+    @Index
+    private long timestamp;
+
+    private long activityId;
+
+    private String authorId;
+
+    // What the author did (see FeedInboxes.actionOf()), so that entries can be grouped without
+    // loading their activities. Null for entries delivered before it was recorded.
+    private String action;
+
+    public FeedEntry() {}
+
+    public FeedEntry(String ownerId, long activityId, String authorId, String action, long timestamp) {
+        this.id = makeId(ownerId, activityId);
+        this.ownerId = ownerId;
+        this.activityId = activityId;
+        this.authorId = authorId;
+        this.action = action;
+        this.timestamp = timestamp;
+    }
+
+    public static String makeId(String ownerId, long activityId) {
+        return ownerId + ":" + activityId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getActivityId() {
+        return activityId;
+    }
+
+    public String getAuthorId() {
+        return authorId;
+    }
+
+    public String getAction() {
+        return action;
+    }
+}
@@ -0,0 +1,40 @@
+package com.google.sps.model.activity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.sps.model.follow.FollowItem;
+
+/**
+ * A user following another user, shown in the site-wide activity (see GlobalActivityBuffer).
+ * Follows are stored as FollowItems, so this is never saved and has no id.
+ */
+public class FollowActivity extends Activity {
+
+    @JsonProperty
+    private String userId;
+
+    @JsonProperty
+    private String targetId;
+
+    @JsonProperty
+    private long timestamp;
+
+    public FollowActivity() {}
+
+    public FollowActivity(FollowItem followItem) {
+        this.userId = followItem.getUserId();
+        this.targetId = followItem.getTargetId();
+        this.timestamp = followItem.getTimestamp();
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getTargetId() {
+        return targetId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
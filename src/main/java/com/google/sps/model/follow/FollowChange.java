@@ -0,0 +1,64 @@
+package com.google.sps.model.follow;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Index;
+
+/**
+ * A follow or unfollow, saved in the same transaction as the FollowItem it created or deleted.
+ * Instances read the changes made since they last looked to keep their in-memory follow graph
+ * up to date (see SocialGraphService), and changes older than
+ * SocialGraphService.CHANGE_RETENTION_MILLIS are deleted by /jobs/pruneFollowChanges.
+ */
+@Entity
+public class FollowChange {
+
+    @Id
+    private Long id;
+
+    private String userId;
+
+    private String targetId;
+
+    private boolean follow;
+
+    @Index
+    private long timestamp;
+
+    public FollowChange() {} // For Objectify
+
+    /**
+     * @param followItem: the follow that was created or deleted
+     * @param follow: true if it was created, false if it was deleted
+     */
+    public FollowChange(FollowItem followItem, boolean follow) {
+        this.userId = followItem.getUserId();
+        this.targetId = followItem.getTargetId();
+        this.follow = follow;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getTargetId() {
+        return targetId;
+    }
+
+    public boolean isFollow() {
+        return follow;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
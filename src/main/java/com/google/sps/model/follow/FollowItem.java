@@ -4,9 +4,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
 import com.googlecode.objectify.annotation.Index;
+import com.googlecode.objectify.annotation.OnSave;
 
-import static com.google.sps.util.Utils.parseInt;
-
+/**
+ * A user following another user. Keyed by "userId:targetId" (see makeId), so whether
+ * one user follows another is a single get, and a user can't follow someone twice.
+ */
 @Entity
 public class FollowItem {
 
@@ -14,9 +17,8 @@ public class FollowItem {
     public static final String TYPE_FOLLOWING = "following";
 
     @JsonProperty
-    @Index
     @Id
-    private Long id;
+    private String id;
 
     @JsonProperty
     @Index
@@ -26,16 +28,28 @@ public class FollowItem {
     @Index
     private String targetId;
 
+    // When the follow was created, follow lists are ordered by it
+    @JsonProperty
+    @Index
+    private long timestamp;
+
     public FollowItem() { }
 
-    public Long getId() {
-        return id;
+    public FollowItem(String userId, String targetId) {
+        this.userId = userId;
+        this.targetId = targetId;
+        this.id = makeId(userId, targetId);
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static String makeId(String userId, String targetId) {
+        return userId + ":" + targetId;
     }
 
-    public void setId(Long id) {
-        this.id = id;
+    public String getId() {
+        return id;
     }
-    
+
     public String getUserId() {
         return userId;
     }
@@ -51,4 +65,16 @@ public class FollowItem {
     public void setTargetId(String targetId) {
         this.targetId = targetId;
     }
-}
\ No newline at end of file
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @OnSave void assignId() {
+        this.id = makeId(userId, targetId);
+    }
+}
@@ -4,29 +4,38 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
 import com.googlecode.objectify.annotation.Index;
-import com.google.sps.model.user.UserObject;
+import com.google.sps.model.user.PublicUserObject;
 
 import java.util.List;
 
 @Entity
 public class FollowListObject {
 
-    public FollowListObject(List<UserObject> followersList,
-                                List<UserObject> followingList,
+    public FollowListObject(List<PublicUserObject> followersList,
+                                List<PublicUserObject> followingList,
                                 int followerLength, int followingLength) {
+        this(followersList, followingList, followerLength, followingLength, null, null);
+    }
+
+    public FollowListObject(List<PublicUserObject> followersList,
+                                List<PublicUserObject> followingList,
+                                int followerLength, int followingLength,
+                                String followersCursor, String followingCursor) {
         this.followersList = followersList;
         this.followingList = followingList;
         this.followerLength = followerLength;
         this.followingLength = followingLength;
+        this.followersCursor = followersCursor;
+        this.followingCursor = followingCursor;
     }
 
     @JsonProperty
     @Index
-    private List<UserObject> followersList;
+    private List<PublicUserObject> followersList;
 
     @JsonProperty
     @Index
-    private List<UserObject> followingList;
+    private List<PublicUserObject> followingList;
 
     @JsonProperty
     @Index
@@ -35,4 +44,11 @@ public class FollowListObject {
     @JsonProperty
     @Index
     private int followingLength;
-}
\ No newline at end of file
+
+    // Tokens to pass back as followersCursor / followingCursor for the next page, null on the last page
+    @JsonProperty
+    private String followersCursor;
+
+    @JsonProperty
+    private String followingCursor;
+}
@@ -0,0 +1,29 @@
+package com.google.sps.model.follow;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * How a user relates to another: whether they follow them, and whether they are followed back
+ */
+public class FollowRelationship {
+    @JsonProperty
+    private boolean following;
+
+    @JsonProperty
+    private boolean followsBack;
+
+    public FollowRelationship() {}
+
+    public FollowRelationship(boolean following, boolean followsBack) {
+        this.following = following;
+        this.followsBack = followsBack;
+    }
+
+    public boolean isFollowing() {
+        return following;
+    }
+
+    public boolean isFollowsBack() {
+        return followsBack;
+    }
+}
@@ -0,0 +1,63 @@
+package com.google.sps.model.follow;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.sps.model.user.PublicUserObject;
+
+/**
+ * A user suggested to follow, and why: how many of the users you follow follow them
+ * (estimated from a sample for users who follow many), and how many items you both rated alike
+ */
+public class FollowSuggestion {
+    @JsonProperty
+    private String userId;
+
+    @JsonProperty
+    private PublicUserObject user;
+
+    @JsonProperty
+    private double score;
+
+    @JsonProperty
+    private int followedBy;
+
+    @JsonProperty
+    private int sharedRatings;
+
+    public FollowSuggestion() {}
+
+    public FollowSuggestion(String userId, double score, int followedBy, int sharedRatings) {
+        this.userId = userId;
+        this.score = score;
+        this.followedBy = followedBy;
+        this.sharedRatings = sharedRatings;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public PublicUserObject getUser() {
+        return user;
+    }
+
+    /**
+     * @return: a copy with the profile of the suggested user, as suggestions are cached and shared
+     */
+    public FollowSuggestion withUser(PublicUserObject user) {
+        FollowSuggestion copy = new FollowSuggestion(userId, score, followedBy, sharedRatings);
+        copy.user = user;
+        return copy;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getFollowedBy() {
+        return followedBy;
+    }
+
+    public int getSharedRatings() {
+        return sharedRatings;
+    }
+}
@@ -0,0 +1,38 @@
+package com.google.sps.model.queue;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Points from "listType:userId:mediaType:mediaId" to the id of that list item. List items are
+ * activities with generated ids, so this lets us check whether media items are in a user's lists
+ * with a batch key get instead of a query per list, and makes adding an item twice a conflict
+ * on a single key.
+ */
+@Entity
+public class ListItemPointer {
+
+    @Id
+    private String id;
+
+    private Long itemId;
+
+    public ListItemPointer() {} // For Objectify
+
+    public ListItemPointer(MediaListItem item) {
+        this.id = makeId(item.getListType(), item.getUserId(), item.getMediaType(), item.getMediaId());
+        this.itemId = item.getId();
+    }
+
+    public static String makeId(String listType, String userId, String mediaType, String mediaId) {
+        return listType + ":" + userId + ":" + mediaType + ":" + mediaId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+}
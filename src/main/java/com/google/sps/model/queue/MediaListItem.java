@@ -12,6 +12,7 @@ import java.sql.Timestamp;
  * Base class used as a schema for our database. This represents a
  * queue object or already watched object. We abstract these later as
  * to end up in different tables in the db.
+ * Only userId, mediaType, mediaId and timestamp are queried on, so only those are indexed.
  */
 @Subclass(index=true)
 public class MediaListItem extends Activity {
@@ -25,7 +26,6 @@ public class MediaListItem extends Activity {
     }
 
     @JsonProperty
-    @Index
     private String title;
 
     @JsonProperty
@@ -37,11 +37,9 @@ public class MediaListItem extends Activity {
     private String mediaId;
 
     @JsonProperty
-    @Index
     private String listType;
 
     @JsonProperty
-    @Index
     private String artUrl;
 
     @JsonProperty
@@ -53,7 +51,6 @@ public class MediaListItem extends Activity {
     private String userId;
 
     @JsonProperty
-    @Index
     private String username;
 
     public String getTitle() {
@@ -0,0 +1,31 @@
+package com.google.sps.model.results;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Used to represent a page of results fetched with a cursor.
+ * cursor is an opaque token to pass back to get the next page,
+ * and is null once there are no more results.
+ */
+public class CursorResultsObject<T> {
+    @JsonProperty
+    private final List<T> results;
+
+    @JsonProperty
+    private final String cursor;
+
+    public CursorResultsObject(List<T> results, String cursor) {
+        this.results = results;
+        this.cursor = cursor;
+    }
+
+    public List<T> getResults() {
+        return results;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+}
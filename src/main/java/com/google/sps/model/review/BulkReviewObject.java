@@ -0,0 +1,46 @@
+package com.google.sps.model.review;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Used to represent one item of a GET /reviews/bulk response: the viewer's
+ * review of the item, if any, and the item's aggregate rating.
+ */
+public class BulkReviewObject {
+
+    @JsonProperty
+    private final String contentType;
+
+    @JsonProperty
+    private final String contentId;
+
+    @JsonProperty
+    private final ReviewSummaryObject viewerReview;
+
+    @JsonProperty
+    private final int ratingCount;
+
+    @JsonProperty
+    private final double averageRating;
+
+    public BulkReviewObject(String contentType, String contentId,
+                            ReviewSummaryObject viewerReview, ReviewStats stats) {
+        this.contentType = contentType;
+        this.contentId = contentId;
+        this.viewerReview = viewerReview;
+        this.ratingCount = stats.getRatingCount();
+        this.averageRating = stats.getAverageRating();
+    }
+
+    public ReviewSummaryObject getViewerReview() {
+        return viewerReview;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+}
@@ -1,16 +1,41 @@
 package com.google.sps.model.review;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.google.sps.model.activity.Activity;
 import com.google.sps.model.user.UserObject;
+import com.google.sps.util.Compression;
+import com.googlecode.objectify.annotation.IgnoreSave;
 import com.googlecode.objectify.annotation.Index;
+import com.googlecode.objectify.annotation.OnSave;
 import com.googlecode.objectify.annotation.Subclass;
+import com.googlecode.objectify.condition.IfNull;
+import com.googlecode.objectify.condition.ValueIf;
 
+import java.io.IOException;
 import java.sql.Timestamp;
 
+/**
+ * A user's review of a movie or book, stored as part of the Activity hierarchy.
+ * Only the fields that are filtered or sorted on (userId, contentType, contentId and timestamp)
+ * are indexed, every other field is display data and is left unindexed to keep writes cheap.
+ * List pages read the review's ReviewSummaryObject instead, which holds a short excerpt of the body.
+ * Bodies of COMPRESSION_THRESHOLD characters or more are stored deflated in compressedBody instead
+ * of reviewBody, and are only inflated when the body is read or the review is written as JSON.
+ */
 @Subclass(index=true, name="ReviewObject")
+@JsonAdapter(ReviewObject.InflatingAdapterFactory.class)
 public class ReviewObject extends Activity {
 
+    public static final int EXCERPT_LENGTH = 200;
+    public static final int COMPRESSION_THRESHOLD = 1000;
+
     public ReviewObject() {
         Timestamp currentTime = new Timestamp(System.currentTimeMillis());
         this.timestamp = currentTime.getTime();
@@ -45,7 +70,6 @@ public class ReviewObject extends Activity {
     private String userId;
 
     @JsonProperty
-    @Index
     private String authorName;
 
     @JsonProperty
@@ -57,23 +81,23 @@ public class ReviewObject extends Activity {
     private String contentId;
 
     @JsonProperty
-    @Index
     private String contentTitle;
 
     @JsonProperty
-    @Index
     private String artUrl;
 
     @JsonProperty
-    @Index
     private String reviewTitle;
 
     @JsonProperty
-    @Index
+    @IgnoreSave(IfCompressed.class)
     private String reviewBody;
 
+    // Transient keeps it out of JSON, Objectify still stores it as an unindexed blob
+    @IgnoreSave(IfNull.class)
+    private transient byte[] compressedBody;
+
     @JsonProperty
-    @Index
     private int rating;
 
 
@@ -142,11 +166,24 @@ public class ReviewObject extends Activity {
     }
 
     public String getReviewBody() {
+        if (reviewBody == null && compressedBody != null) {
+            reviewBody = Compression.inflate(compressedBody);
+        }
         return reviewBody;
     }
 
     public void setReviewBody(String reviewBody) {
         this.reviewBody = reviewBody;
+        this.compressedBody = null;
+    }
+
+    public String getReviewExcerpt() {
+        return makeExcerpt(getReviewBody());
+    }
+
+    public boolean isExcerptTruncated() {
+        String body = getReviewBody();
+        return body != null && body.length() > EXCERPT_LENGTH;
     }
 
     public int getRating() {
@@ -156,4 +193,70 @@ public class ReviewObject extends Activity {
     public void setRating(int rating) {
         this.rating = rating;
     }
-}
\ No newline at end of file
+
+    @OnSave void prepareBody() {
+        if (reviewBody == null && compressedBody != null) {
+            // Loaded compressed and never read, so nothing needs recomputing
+            return;
+        }
+
+        String body = getReviewBody();
+        if (body == null || body.length() < COMPRESSION_THRESHOLD) {
+            compressedBody = null;
+        }
+        else if (compressedBody == null) {
+            compressedBody = Compression.deflate(body);
+        }
+    }
+
+    /**
+     * Shortens a review body to at most EXCERPT_LENGTH characters, cutting at a word boundary
+     * @param body: the full review body
+     * @return: the excerpt, ending in "..." if the body was shortened
+     */
+    public static String makeExcerpt(String body) {
+        if (body == null || body.length() <= EXCERPT_LENGTH) {
+            return body;
+        }
+        int end = body.lastIndexOf(' ', EXCERPT_LENGTH);
+        if (end <= 0) {
+            end = EXCERPT_LENGTH;
+        }
+        return body.substring(0, end).trim() + "...";
+    }
+
+    /**
+     * Objectify condition that leaves reviewBody out of the entity when it is stored in compressedBody
+     */
+    public static class IfCompressed extends ValueIf<String> {
+        @Override
+        public boolean matchesValue(String value) {
+            return value == null || value.length() >= COMPRESSION_THRESHOLD;
+        }
+    }
+
+    /**
+     * Inflates a compressed body right before the review is written as JSON,
+     * as Gson reads the reviewBody field directly rather than through getReviewBody()
+     */
+    public static class InflatingAdapterFactory implements TypeAdapterFactory {
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+            return new TypeAdapter<T>() {
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    if (value instanceof ReviewObject) {
+                        ((ReviewObject) value).getReviewBody();
+                    }
+                    delegate.write(out, value);
+                }
+
+                @Override
+                public T read(JsonReader in) throws IOException {
+                    return delegate.read(in);
+                }
+            };
+        }
+    }
+}
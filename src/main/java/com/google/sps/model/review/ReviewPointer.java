@@ -0,0 +1,37 @@
+package com.google.sps.model.review;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Points from "userId:contentType:contentId" to the id of that user's review of the item.
+ * Reviews themselves have generated ids, so this lets us find a user's reviews of many
+ * items with a batch key get instead of one query per item.
+ */
+@Entity
+public class ReviewPointer {
+
+    @Id
+    private String id;
+
+    private Long reviewId;
+
+    public ReviewPointer() {} // For Objectify
+
+    public ReviewPointer(ReviewObject review) {
+        this.id = makeId(review.getAuthorId(), review.getContentType(), review.getContentId());
+        this.reviewId = review.getId();
+    }
+
+    public static String makeId(String userId, String contentType, String contentId) {
+        return userId + ":" + contentType + ":" + contentId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getReviewId() {
+        return reviewId;
+    }
+}
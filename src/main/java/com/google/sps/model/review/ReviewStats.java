@@ -0,0 +1,61 @@
+package com.google.sps.model.review;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Aggregate rating of a single movie or book, keyed by "contentType:contentId"
+ * so the stats of many items can be fetched with one batch get.
+ * Kept up to date by ReviewServlet whenever a review is posted or deleted.
+ */
+@Entity
+public class ReviewStats {
+
+    @Id
+    @JsonProperty
+    private String id;
+
+    @JsonProperty
+    private int ratingCount;
+
+    @JsonProperty
+    private long ratingSum;
+
+    public ReviewStats() {} // For Objectify
+
+    public ReviewStats(String contentType, String contentId) {
+        this.id = makeId(contentType, contentId);
+    }
+
+    public static String makeId(String contentType, String contentId) {
+        return contentType + ":" + contentId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
+    public double getAverageRating() {
+        return (ratingCount == 0) ? 0 : (double) ratingSum / ratingCount;
+    }
+
+    public void addRating(int rating) {
+        ratingCount++;
+        ratingSum += rating;
+    }
+
+    public void removeRating(int rating) {
+        if (ratingCount == 0) return;
+        ratingCount--;
+        ratingSum -= rating;
+    }
+}
@@ -0,0 +1,86 @@
+package com.google.sps.model.review;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Used to represent a review in list pages. Carries the review metadata and
+ * a short excerpt instead of the full body, which can be fetched on demand
+ * with GET /reviews?id={id}
+ * Stored under the id of its review, without indexes, so a page of summaries is
+ * a keys-only review query and one batch get that never loads the bodies.
+ */
+@Entity
+public class ReviewSummaryObject {
+
+    @Id
+    @JsonProperty
+    private Long id;
+
+    @JsonProperty
+    private long timestamp;
+
+    @JsonProperty
+    private String userId;
+
+    @JsonProperty
+    private String authorName;
+
+    @JsonProperty
+    private String contentType;
+
+    @JsonProperty
+    private String contentId;
+
+    @JsonProperty
+    private String contentTitle;
+
+    @JsonProperty
+    private String artUrl;
+
+    @JsonProperty
+    private String reviewTitle;
+
+    @JsonProperty
+    private String reviewExcerpt;
+
+    @JsonProperty
+    private boolean truncated;
+
+    @JsonProperty
+    private int rating;
+
+    public ReviewSummaryObject() {} // For Objectify
+
+    public ReviewSummaryObject(ReviewObject review) {
+        this.id = review.getId();
+        this.timestamp = review.getTimestamp();
+        this.userId = review.getAuthorId();
+        this.authorName = review.getAuthorName();
+        this.contentType = review.getContentType();
+        this.contentId = review.getContentId();
+        this.contentTitle = review.getContentTitle();
+        this.artUrl = review.getArtUrl();
+        this.reviewTitle = review.getReviewTitle();
+        this.reviewExcerpt = review.getReviewExcerpt();
+        this.truncated = review.isExcerptTruncated();
+        this.rating = review.getRating();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getReviewExcerpt() {
+        return reviewExcerpt;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+}
@@ -0,0 +1,33 @@
+package com.google.sps.model.search;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Used to represent a page of search results, along with how long the search took
+ */
+public class SearchResultsObject<T> {
+    @JsonProperty
+    private final List<T> results;
+
+    @JsonProperty
+    private final int total_results;
+
+    @JsonProperty
+    private final int total_pages;
+
+    @JsonProperty
+    private final int page;
+
+    @JsonProperty
+    private final double took_ms;
+
+    public SearchResultsObject(List<T> results, int totalResults, int totalPages, int page, double tookMs) {
+        this.results = results;
+        this.total_results = totalResults;
+        this.total_pages = totalPages;
+        this.page = page;
+        this.took_ms = tookMs;
+    }
+}
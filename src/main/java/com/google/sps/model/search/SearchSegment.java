@@ -0,0 +1,46 @@
+package com.google.sps.model.search;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * A persisted segment of the review search index, see IndexSegment for the data format.
+ * Stored so instances can load the index on startup instead of rebuilding it from the reviews.
+ * Its version is also kept in its SearchSegmentVersion, which is what instances poll.
+ */
+@Entity
+public class SearchSegment {
+
+    @Id
+    private Long id;
+
+    private byte[] data;
+
+    private long version;
+
+    public SearchSegment() {} // For Objectify
+
+    public SearchSegment(Long id) {
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
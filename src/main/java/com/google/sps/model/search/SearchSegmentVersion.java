@@ -0,0 +1,43 @@
+package com.google.sps.model.search;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Parent;
+
+/**
+ * The current version of one search index segment, stored as a child of its SearchSegment
+ * so both are written in a transaction on that segment alone. Instances find every segment and tell
+ * which of their in-memory copies are out of date with one query over these small entities, without
+ * loading the segments' data.
+ */
+@Entity
+public class SearchSegmentVersion {
+
+    // Each segment has a single version entity
+    public static final long ID = 1;
+
+    @Parent
+    private Key<SearchSegment> segment;
+
+    @Id
+    private Long id;
+
+    private long version;
+
+    public SearchSegmentVersion() {} // For Objectify
+
+    public SearchSegmentVersion(SearchSegment segment) {
+        this.segment = Key.create(SearchSegment.class, segment.getId());
+        this.id = ID;
+        this.version = segment.getVersion();
+    }
+
+    public Long getSegmentId() {
+        return segment.getId();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
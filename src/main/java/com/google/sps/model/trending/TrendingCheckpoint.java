@@ -0,0 +1,58 @@
+package com.google.sps.model.trending;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * The shared state of the trending leaderboard, see TrendingTracker for the data format.
+ * Instances merge the scores they collected into it periodically, and load it back to see
+ * what other instances recorded.
+ */
+@Entity
+public class TrendingCheckpoint {
+
+    @Id
+    private String id;
+
+    // Scores are relative to this time, in milliseconds
+    private long landmark;
+
+    private byte[] data;
+
+    private long version;
+
+    public TrendingCheckpoint() {} // For Objectify
+
+    public TrendingCheckpoint(String id, long landmark) {
+        this.id = id;
+        this.landmark = landmark;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getLandmark() {
+        return landmark;
+    }
+
+    public void setLandmark(long landmark) {
+        this.landmark = landmark;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
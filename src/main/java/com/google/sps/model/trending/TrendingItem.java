@@ -0,0 +1,41 @@
+package com.google.sps.model.trending;
+
+/**
+ * A media item on the trending leaderboard, with its current time-decayed score
+ */
+public class TrendingItem {
+
+    private final String contentType;
+    private final String contentId;
+    private final String title;
+    private final String artUrl;
+    private final double score;
+
+    public TrendingItem(String contentType, String contentId, String title, String artUrl, double score) {
+        this.contentType = contentType;
+        this.contentId = contentId;
+        this.title = title;
+        this.artUrl = artUrl;
+        this.score = score;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getContentId() {
+        return contentId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtUrl() {
+        return artUrl;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,40 @@
+package com.google.sps.model.user;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * One of FollowLookups.FOLLOWER_SHARDS counters of a user's new followers and unfollowers, keyed by
+ * "userId:shard". Each follow updates a random shard, so follows of a popular user are spread over
+ * several entity groups instead of all writing its UserStats.
+ */
+@Entity
+public class FollowerCountShard {
+
+    @Id
+    private String id;
+
+    private long count;
+
+    public FollowerCountShard() {} // For Objectify
+
+    public FollowerCountShard(String id) {
+        this.id = id;
+    }
+
+    public static String makeId(String userId, int shard) {
+        return userId + ":" + shard;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void add(long delta) {
+        count += delta;
+    }
+}
@@ -0,0 +1,39 @@
+package com.google.sps.model.user;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The parts of a UserObject that anyone may see, for listing other users.
+ * Leaves out the email address, so it never has to be blanked out on a loaded UserObject.
+ */
+public class PublicUserObject {
+
+    @JsonProperty
+    private String id;
+
+    @JsonProperty
+    private String username;
+
+    @JsonProperty
+    private String profilePicUrl;
+
+    public PublicUserObject() {}
+
+    public PublicUserObject(UserObject user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.profilePicUrl = user.getProfilePicUrl();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getProfilePicUrl() {
+        return profilePicUrl;
+    }
+}
@@ -0,0 +1,54 @@
+package com.google.sps.model.user;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Follower and following counts of a user, keyed by the user's id so /follow doesn't
+ * have to count FollowItems on every page load.
+ * Kept up to date by FollowServlet in the same transaction as the follow or unfollow,
+ * and repaired by /jobs/reconcileFollowCounts if they ever drift. Changes to the follower count
+ * are kept in FollowerCountShards instead, see FollowLookups.
+ */
+@Entity
+public class UserStats {
+
+    @Id
+    @JsonProperty
+    private String id;
+
+    @JsonProperty
+    private long followerCount;
+
+    @JsonProperty
+    private long followingCount;
+
+    public UserStats() {} // For Objectify
+
+    public UserStats(String userId, long followerCount, long followingCount) {
+        this.id = userId;
+        this.followerCount = followerCount;
+        this.followingCount = followingCount;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getFollowerCount() {
+        return followerCount;
+    }
+
+    public long getFollowingCount() {
+        return followingCount;
+    }
+
+    public void addFollowers(long delta) {
+        followerCount = Math.max(0, followerCount + delta);
+    }
+
+    public void addFollowing(long delta) {
+        followingCount = Math.max(0, followingCount + delta);
+    }
+}
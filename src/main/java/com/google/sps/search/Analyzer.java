@@ -0,0 +1,53 @@
+package com.google.sps.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns text into the terms stored in the search index: lower cases it, splits it
+ * on anything that isn't a letter or digit, drops stop words and stems what's left.
+ * Queries go through the same analyzer so they match the indexed terms.
+ */
+public class Analyzer {
+
+    private static final int MAX_TERM_LENGTH = 40;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into",
+            "is", "it", "its", "of", "on", "or", "so", "such", "that", "the", "their", "then",
+            "there", "these", "they", "this", "to", "was", "were", "will", "with"));
+
+    private Analyzer() {}
+
+    /**
+     * @param text: text to analyze, may be null
+     * @return: the terms of the text in order, including repeats
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+")) {
+            if (token.isEmpty() || token.length() > MAX_TERM_LENGTH || STOP_WORDS.contains(token)) {
+                continue;
+            }
+            terms.add(isAsciiWord(token) ? PorterStemmer.stem(token) : token);
+        }
+        return terms;
+    }
+
+    // The stemmer only understands English, so leave anything else as is
+    private static boolean isAsciiWord(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c < 'a' || c > 'z') return false;
+        }
+        return true;
+    }
+}
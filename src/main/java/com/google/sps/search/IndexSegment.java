@@ -0,0 +1,160 @@
+package com.google.sps.search;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An inverted index over a bounded set of documents: for every term, the documents
+ * containing it and how often. The full index is split into several of these so
+ * that adding or removing a document only rewrites one segment.
+ * Segments are stored as compressed bytes, see toBytes() and fromBytes().
+ */
+public class IndexSegment {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Map<Long, Integer> docLengths = new HashMap<>();
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private long totalLength = 0;
+
+    public boolean contains(long docId) {
+        return docLengths.containsKey(docId);
+    }
+
+    public int getDocCount() {
+        return docLengths.size();
+    }
+
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    public int getDocLength(long docId) {
+        return docLengths.getOrDefault(docId, 0);
+    }
+
+    public Iterable<Long> getDocIds() {
+        return docLengths.keySet();
+    }
+
+    /**
+     * @param term: an analyzed term
+     * @return: document id -> term frequency of every document containing the term
+     */
+    public Map<Long, Integer> getPostings(String term) {
+        return postings.getOrDefault(term, Collections.emptyMap());
+    }
+
+    /**
+     * Adds a document, replacing it if it is already in this segment
+     * @param docId: id of the document
+     * @param terms: analyzed terms of the document, including repeats
+     */
+    public void add(long docId, List<String> terms) {
+        remove(docId);
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> new HashMap<>()).merge(docId, 1, Integer::sum);
+        }
+        docLengths.put(docId, terms.size());
+        totalLength += terms.size();
+    }
+
+    /**
+     * @param docId: id of the document to remove
+     * @return: true if the document was in this segment
+     */
+    public boolean remove(long docId) {
+        Integer length = docLengths.remove(docId);
+        if (length == null) {
+            return false;
+        }
+        totalLength -= length;
+
+        Iterator<Map<Long, Integer>> iterator = postings.values().iterator();
+        while (iterator.hasNext()) {
+            Map<Long, Integer> termPostings = iterator.next();
+            if (termPostings.remove(docId) != null && termPostings.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serializes the segment as a deflated stream of
+     * version, document count, (id, length)*, term count, (term, posting count, (id, frequency)*)*
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(docLengths.size());
+            for (Map.Entry<Long, Integer> doc : docLengths.entrySet()) {
+                out.writeLong(doc.getKey());
+                out.writeInt(doc.getValue());
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<String, Map<Long, Integer>> term : postings.entrySet()) {
+                out.writeUTF(term.getKey());
+                out.writeInt(term.getValue().size());
+                for (Map.Entry<Long, Integer> posting : term.getValue().entrySet()) {
+                    out.writeLong(posting.getKey());
+                    out.writeInt(posting.getValue());
+                }
+            }
+        } catch (IOException e) {
+            // Only thrown by the underlying stream, which is in memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param data: bytes produced by toBytes(), may be null for an empty segment
+     * @return: the decoded segment
+     * @throws IllegalArgumentException: if the bytes are not a valid segment
+     */
+    public static IndexSegment fromBytes(byte[] data) {
+        IndexSegment segment = new IndexSegment();
+        if (data == null || data.length == 0) {
+            return segment;
+        }
+
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown segment format " + version);
+            }
+            int docCount = in.readInt();
+            for (int i = 0; i < docCount; i++) {
+                long docId = in.readLong();
+                int length = in.readInt();
+                segment.docLengths.put(docId, length);
+                segment.totalLength += length;
+            }
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                int postingCount = in.readInt();
+                Map<Long, Integer> termPostings = new HashMap<>(postingCount * 2);
+                for (int p = 0; p < postingCount; p++) {
+                    termPostings.put(in.readLong(), in.readInt());
+                }
+                segment.postings.put(term, termPostings);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt segment", e);
+        }
+        return segment;
+    }
+}
@@ -0,0 +1,283 @@
+package com.google.sps.search;
+
+/**
+ * Implementation of the Porter stemming algorithm (M.F. Porter, 1980), which strips
+ * common English suffixes so that e.g. "soundtracks" and "soundtrack" share a term.
+ * See https://tartarus.org/martin/PorterStemmer/ for the reference implementation.
+ */
+public class PorterStemmer {
+
+    private final char[] b;
+    private int k;
+    private int j;
+
+    private PorterStemmer(String word) {
+        this.b = word.toCharArray();
+        this.k = b.length - 1;
+    }
+
+    /**
+     * Stems a single lower case word
+     * @param word: the word to stem, expected to only contain lower case letters
+     * @return: the stem of the word
+     */
+    public static String stem(String word) {
+        if (word.length() <= 2) {
+            return word;
+        }
+        PorterStemmer stemmer = new PorterStemmer(word);
+        stemmer.step1();
+        stemmer.step2();
+        stemmer.step3();
+        stemmer.step4();
+        stemmer.step5();
+        stemmer.step6();
+        return new String(stemmer.b, 0, stemmer.k + 1);
+    }
+
+    // True if b[i] is a consonant
+    private boolean cons(int i) {
+        switch (b[i]) {
+            case 'a': case 'e': case 'i': case 'o': case 'u':
+                return false;
+            case 'y':
+                return (i == 0) || !cons(i - 1);
+            default:
+                return true;
+        }
+    }
+
+    // Measures the number of consonant sequences between 0 and j
+    private int m() {
+        int n = 0;
+        int i = 0;
+        while (true) {
+            if (i > j) return n;
+            if (!cons(i)) break;
+            i++;
+        }
+        i++;
+        while (true) {
+            while (true) {
+                if (i > j) return n;
+                if (cons(i)) break;
+                i++;
+            }
+            i++;
+            n++;
+            while (true) {
+                if (i > j) return n;
+                if (!cons(i)) break;
+                i++;
+            }
+            i++;
+        }
+    }
+
+    // True if 0..j contains a vowel
+    private boolean vowelInStem() {
+        for (int i = 0; i <= j; i++) {
+            if (!cons(i)) return true;
+        }
+        return false;
+    }
+
+    // True if i, i-1 are the same consonant
+    private boolean doubleC(int i) {
+        if (i < 1) return false;
+        if (b[i] != b[i - 1]) return false;
+        return cons(i);
+    }
+
+    // True if i-2, i-1, i is consonant - vowel - consonant and the last is not w, x or y
+    private boolean cvc(int i) {
+        if (i < 2 || !cons(i) || cons(i - 1) || !cons(i - 2)) return false;
+        char ch = b[i];
+        return ch != 'w' && ch != 'x' && ch != 'y';
+    }
+
+    private boolean ends(String s) {
+        int length = s.length();
+        int offset = k - length + 1;
+        if (offset < 0) return false;
+        for (int i = 0; i < length; i++) {
+            if (b[offset + i] != s.charAt(i)) return false;
+        }
+        j = k - length;
+        return true;
+    }
+
+    // Sets j+1..k to s, the buffer never grows since every replacement is shorter than its suffix
+    private void setTo(String s) {
+        int length = s.length();
+        int offset = j + 1;
+        for (int i = 0; i < length; i++) {
+            b[offset + i] = s.charAt(i);
+        }
+        k = j + length;
+    }
+
+    private void r(String s) {
+        if (m() > 0) setTo(s);
+    }
+
+    // Removes plurals and -ed or -ing
+    private void step1() {
+        if (b[k] == 's') {
+            if (ends("sses")) k -= 2;
+            else if (ends("ies")) setTo("i");
+            else if (b[k - 1] != 's') k--;
+        }
+        if (ends("eed")) {
+            if (m() > 0) k--;
+        } else if ((ends("ed") || ends("ing")) && vowelInStem()) {
+            k = j;
+            if (ends("at")) setTo("ate");
+            else if (ends("bl")) setTo("ble");
+            else if (ends("iz")) setTo("ize");
+            else if (doubleC(k)) {
+                k--;
+                char ch = b[k];
+                if (ch == 'l' || ch == 's' || ch == 'z') k++;
+            }
+            else if (m() == 1 && cvc(k)) setTo("e");
+        }
+    }
+
+    // Turns terminal y to i when there is another vowel in the stem
+    private void step2() {
+        if (ends("y") && vowelInStem()) b[k] = 'i';
+    }
+
+    // Maps double suffixes to single ones
+    private void step3() {
+        if (k == 0) return;
+        switch (b[k - 1]) {
+            case 'a':
+                if (ends("ational")) { r("ate"); break; }
+                if (ends("tional")) { r("tion"); break; }
+                break;
+            case 'c':
+                if (ends("enci")) { r("ence"); break; }
+                if (ends("anci")) { r("ance"); break; }
+                break;
+            case 'e':
+                if (ends("izer")) { r("ize"); break; }
+                break;
+            case 'l':
+                if (ends("bli")) { r("ble"); break; }
+                if (ends("alli")) { r("al"); break; }
+                if (ends("entli")) { r("ent"); break; }
+                if (ends("eli")) { r("e"); break; }
+                if (ends("ousli")) { r("ous"); break; }
+                break;
+            case 'o':
+                if (ends("ization")) { r("ize"); break; }
+                if (ends("ation")) { r("ate"); break; }
+                if (ends("ator")) { r("ate"); break; }
+                break;
+            case 's':
+                if (ends("alism")) { r("al"); break; }
+                if (ends("iveness")) { r("ive"); break; }
+                if (ends("fulness")) { r("ful"); break; }
+                if (ends("ousness")) { r("ous"); break; }
+                break;
+            case 't':
+                if (ends("aliti")) { r("al"); break; }
+                if (ends("iviti")) { r("ive"); break; }
+                if (ends("biliti")) { r("ble"); break; }
+                break;
+            case 'g':
+                if (ends("logi")) { r("log"); break; }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Deals with -ic-, -full, -ness etc.
+    private void step4() {
+        switch (b[k]) {
+            case 'e':
+                if (ends("icate")) { r("ic"); break; }
+                if (ends("ative")) { r(""); break; }
+                if (ends("alize")) { r("al"); break; }
+                break;
+            case 'i':
+                if (ends("iciti")) { r("ic"); break; }
+                break;
+            case 'l':
+                if (ends("ical")) { r("ic"); break; }
+                if (ends("ful")) { r(""); break; }
+                break;
+            case 's':
+                if (ends("ness")) { r(""); break; }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Removes -ant, -ence etc. when the stem is long enough
+    private void step5() {
+        if (k == 0) return;
+        switch (b[k - 1]) {
+            case 'a':
+                if (ends("al")) break;
+                return;
+            case 'c':
+                if (ends("ance")) break;
+                if (ends("ence")) break;
+                return;
+            case 'e':
+                if (ends("er")) break;
+                return;
+            case 'i':
+                if (ends("ic")) break;
+                return;
+            case 'l':
+                if (ends("able")) break;
+                if (ends("ible")) break;
+                return;
+            case 'n':
+                if (ends("ant")) break;
+                if (ends("ement")) break;
+                if (ends("ment")) break;
+                if (ends("ent")) break;
+                return;
+            case 'o':
+                if (ends("ion") && j >= 0 && (b[j] == 's' || b[j] == 't')) break;
+                if (ends("ou")) break;
+                return;
+            case 's':
+                if (ends("ism")) break;
+                return;
+            case 't':
+                if (ends("ate")) break;
+                if (ends("iti")) break;
+                return;
+            case 'u':
+                if (ends("ous")) break;
+                return;
+            case 'v':
+                if (ends("ive")) break;
+                return;
+            case 'z':
+                if (ends("ize")) break;
+                return;
+            default:
+                return;
+        }
+        if (m() > 1) k = j;
+    }
+
+    // Removes a final -e and turns -ll into -l when the stem is long enough
+    private void step6() {
+        j = k;
+        if (b[k] == 'e') {
+            int a = m();
+            if (a > 1 || a == 1 && !cvc(k - 1)) k--;
+        }
+        if (b[k] == 'l' && doubleC(k) && m() > 1) k--;
+    }
+}
@@ -0,0 +1,381 @@
+package com.google.sps.search;
+
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.search.SearchSegment;
+import com.google.sps.model.search.SearchSegmentVersion;
+import com.googlecode.objectify.Work;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Full-text search over review titles and bodies, ranked with BM25.
+ *
+ * The inverted index is split into segments of at most MAX_DOCS_PER_SEGMENT reviews which are
+ * persisted in the Datastore, and kept in memory on each instance. Adding or removing a review
+ * rewrites a single segment and its SearchSegmentVersion in a transaction on that segment alone,
+ * and new reviews are spread over OPEN_SEGMENTS segments with room left, so concurrent posts
+ * rarely contend. At most once every refreshMillis(), an instance lists the segment versions and
+ * reloads the segments whose version changed, so it sees writes made by other instances without
+ * rebuilding the index. Datastore calls are made outside of the lock on the in-memory segments.
+ */
+public class ReviewSearchIndex {
+
+    static final int MAX_DOCS_PER_SEGMENT = 250;
+    static final int OPEN_SEGMENTS = 8;
+    public static final String REFRESH_MILLIS_PROPERTY = "mediaphile.search.refreshMillis";
+    static final long DEFAULT_REFRESH_MILLIS = 5000;
+    public static final String REPAIR_URL = "/jobs/searchIndex";
+    // Segments written by other instances are listed by every instance well within this delay
+    static final long REPAIR_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // Title terms count more than body terms
+    private static final int TITLE_WEIGHT = 2;
+
+    // Standard BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Logger logger = Logger.getLogger(ReviewSearchIndex.class.getName());
+    private static final ReviewSearchIndex instance = new ReviewSearchIndex();
+
+    private final Map<Long, IndexSegment> segments = new HashMap<>();
+    private final Map<Long, Long> segmentVersions = new HashMap<>();
+    private final Map<Long, Long> docSegments = new HashMap<>();
+    private final Random random = new Random();
+    private volatile long lastRefreshMillis = 0;
+
+    /**
+     * A page of ranked review ids, and how many reviews matched in total
+     */
+    public static class Hits {
+        private final List<Long> reviewIds;
+        private final int total;
+
+        Hits(List<Long> reviewIds, int total) {
+            this.reviewIds = reviewIds;
+            this.total = total;
+        }
+
+        public List<Long> getReviewIds() {
+            return reviewIds;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    // Tests create separate instances to stand in for the copies of the index on other instances
+    ReviewSearchIndex() {}
+
+    public static ReviewSearchIndex get() {
+        return instance;
+    }
+
+    /**
+     * Adds a review to the index, or re-indexes it if it is already there
+     * @param review: the review, already saved so that it has an id
+     */
+    public void add(ReviewObject review) {
+        refreshIfDue();
+        long docId = review.getId();
+        List<String> terms = termsOf(review);
+
+        Long segmentId;
+        boolean reindex;
+        synchronized (this) {
+            Long currentSegment = docSegments.get(docId);
+            reindex = currentSegment != null;
+            segmentId = reindex ? currentSegment : pickOpenSegment();
+        }
+
+        SearchSegment saved = (segmentId == null) ? null : addToSegment(segmentId, docId, terms, reindex);
+        if (saved == null) {
+            // No open segment was known or it filled up meanwhile, start a new one
+            long newSegmentId = ofy().factory().allocateId(SearchSegment.class).getId();
+            saved = addToSegment(newSegmentId, docId, terms, true);
+        }
+        apply(saved);
+    }
+
+    /**
+     * Removes a review from the index. A review this instance doesn't know may have been indexed
+     * by another one since the last refresh, so the segments are refreshed before giving up
+     * @param reviewId: id of the review
+     * @return: true if it was removed, false if it isn't in any segment that could be listed,
+     * e.g. as it was never indexed, or its segment was written too recently to be listed yet
+     */
+    public boolean remove(long reviewId) {
+        refreshIfDue();
+        Long segmentId = segmentOf(reviewId);
+        if (segmentId == null) {
+            refresh();
+            segmentId = segmentOf(reviewId);
+        }
+        if (segmentId == null) {
+            return false;
+        }
+        long removedFrom = segmentId;
+
+        SearchSegment saved = ofy().transact((Work<SearchSegment>) () -> {
+            SearchSegment entity = ofy().load().type(SearchSegment.class).id(removedFrom).now();
+            if (entity == null) return null;
+
+            IndexSegment segment = IndexSegment.fromBytes(entity.getData());
+            if (!segment.remove(reviewId)) return null;
+            return saveSegment(entity, segment);
+        });
+        if (saved != null) {
+            apply(saved);
+        }
+        return true;
+    }
+
+    private synchronized Long segmentOf(long reviewId) {
+        return docSegments.get(reviewId);
+    }
+
+    /**
+     * @param reviewId: id of a review
+     * @return: whether the review is in this instance's copy of the index, as of its last refresh
+     */
+    public synchronized boolean contains(long reviewId) {
+        return docSegments.containsKey(reviewId);
+    }
+
+    /**
+     * Enqueues a task that brings a review's entry in the index in line with the review,
+     * for when updating the index along with the review failed
+     * @param reviewId: id of the review, added or deleted
+     */
+    public static void enqueueRepair(long reviewId) {
+        enqueueRepair(reviewId, 0);
+    }
+
+    /**
+     * Enqueues the repair of a review's entry once it can be seen by every instance,
+     * for when remove() didn't find a review that was indexed moments ago
+     * @param reviewId: id of the deleted review
+     */
+    public static void enqueueDelayedRepair(long reviewId) {
+        enqueueRepair(reviewId, REPAIR_DELAY_MILLIS);
+    }
+
+    private static void enqueueRepair(long reviewId, long delayMillis) {
+        try {
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(REPAIR_URL)
+                    .param("reviewId", String.valueOf(reviewId))
+                    .countdownMillis(delayMillis));
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Could not enqueue the search index repair of review " + reviewId
+                    + ", run " + REPAIR_URL + " to fix the index", e);
+        }
+    }
+
+    /**
+     * Ranks the reviews matching any term of the query with BM25
+     * @param query: free text query
+     * @param offset: number of top hits to skip
+     * @param limit: maximum number of hits to return
+     * @return: the requested page of review ids, best match first
+     */
+    public Hits search(String query, int offset, int limit) {
+        refreshIfDue();
+        return rank(query, offset, limit);
+    }
+
+    private synchronized Hits rank(String query, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(Analyzer.analyze(query));
+        if (terms.isEmpty()) {
+            return new Hits(Collections.emptyList(), 0);
+        }
+
+        long docCount = 0;
+        long totalLength = 0;
+        for (IndexSegment segment : segments.values()) {
+            docCount += segment.getDocCount();
+            totalLength += segment.getTotalLength();
+        }
+        if (docCount == 0) {
+            return new Hits(Collections.emptyList(), 0);
+        }
+        double averageLength = (double) totalLength / docCount;
+
+        Map<Long, Double> scores = new HashMap<>();
+        for (String term : terms) {
+            int documentFrequency = 0;
+            for (IndexSegment segment : segments.values()) {
+                documentFrequency += segment.getPostings(term).size();
+            }
+            if (documentFrequency == 0) continue;
+            double idf = Math.log(1 + (docCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+
+            for (IndexSegment segment : segments.values()) {
+                for (Map.Entry<Long, Integer> posting : segment.getPostings(term).entrySet()) {
+                    int frequency = posting.getValue();
+                    double lengthNorm = 1 - B + B * segment.getDocLength(posting.getKey()) / averageLength;
+                    double score = idf * frequency * (K1 + 1) / (frequency + K1 * lengthNorm);
+                    scores.merge(posting.getKey(), score, Double::sum);
+                }
+            }
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> {
+            int byScore = Double.compare(b.getValue(), a.getValue());
+            return (byScore != 0) ? byScore : Long.compare(b.getKey(), a.getKey());
+        });
+
+        List<Long> page = new ArrayList<>();
+        for (int i = offset; i < ranked.size() && i < offset + limit; i++) {
+            page.add(ranked.get(i).getKey());
+        }
+        return new Hits(page, ranked.size());
+    }
+
+    private static List<String> termsOf(ReviewObject review) {
+        List<String> terms = new ArrayList<>();
+        List<String> titleTerms = Analyzer.analyze(review.getReviewTitle());
+        for (int i = 0; i < TITLE_WEIGHT; i++) {
+            terms.addAll(titleTerms);
+        }
+        terms.addAll(Analyzer.analyze(review.getReviewBody()));
+        return terms;
+    }
+
+    /**
+     * @return: how long instances may serve their in-memory index before checking the Datastore
+     * for changes, set in appengine-web.xml
+     */
+    static long refreshMillis() {
+        return Long.getLong(REFRESH_MILLIS_PROPERTY, DEFAULT_REFRESH_MILLIS);
+    }
+
+    /**
+     * Brings the in-memory segments up to date with the Datastore, only loading the segments
+     * whose version changed. Segments that no longer exist are dropped
+     */
+    public void refresh() {
+        lastRefreshMillis = System.currentTimeMillis();
+        List<SearchSegmentVersion> versions = ofy().load().type(SearchSegmentVersion.class).list();
+
+        List<Long> stale = new ArrayList<>();
+        synchronized (this) {
+            Set<Long> existing = new HashSet<>();
+            for (SearchSegmentVersion version : versions) {
+                existing.add(version.getSegmentId());
+                if (!Long.valueOf(version.getVersion()).equals(segmentVersions.get(version.getSegmentId()))) {
+                    stale.add(version.getSegmentId());
+                }
+            }
+
+            Iterator<Long> loaded = segments.keySet().iterator();
+            while (loaded.hasNext()) {
+                Long segmentId = loaded.next();
+                if (!existing.contains(segmentId)) {
+                    forgetDocs(segmentId);
+                    segmentVersions.remove(segmentId);
+                    loaded.remove();
+                }
+            }
+        }
+        if (stale.isEmpty()) {
+            return;
+        }
+
+        for (SearchSegment entity : ofy().load().type(SearchSegment.class).ids(stale).values()) {
+            apply(entity);
+        }
+    }
+
+    private void refreshIfDue() {
+        if (System.currentTimeMillis() - lastRefreshMillis >= refreshMillis()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Picks a random segment with room left, spreading concurrent adds over OPEN_SEGMENTS segments
+     * @return: the segment id, or null if fewer than OPEN_SEGMENTS have room and a new one should be started
+     */
+    private Long pickOpenSegment() {
+        List<Long> open = new ArrayList<>();
+        for (Map.Entry<Long, IndexSegment> segment : segments.entrySet()) {
+            if (segment.getValue().getDocCount() < MAX_DOCS_PER_SEGMENT) {
+                open.add(segment.getKey());
+            }
+        }
+        if (open.size() < OPEN_SEGMENTS) {
+            return null;
+        }
+        return open.get(random.nextInt(open.size()));
+    }
+
+    /**
+     * Adds a document to a segment in a transaction on that segment, creating the segment if needed
+     * @param force: whether to add the document even if the segment is full, e.g. to re-index it
+     * @return: the saved segment, or null if it is full
+     */
+    private static SearchSegment addToSegment(long segmentId, long docId, List<String> terms, boolean force) {
+        return ofy().transact((Work<SearchSegment>) () -> {
+            SearchSegment entity = ofy().load().type(SearchSegment.class).id(segmentId).now();
+            IndexSegment segment = (entity == null) ? new IndexSegment() : IndexSegment.fromBytes(entity.getData());
+            if (!force && segment.getDocCount() >= MAX_DOCS_PER_SEGMENT && !segment.contains(docId)) {
+                return null;
+            }
+            if (entity == null) {
+                entity = new SearchSegment(segmentId);
+            }
+            segment.add(docId, terms);
+            return saveSegment(entity, segment);
+        });
+    }
+
+    // Saves the segment and its version entity with a new version, must be called within a transaction
+    private static SearchSegment saveSegment(SearchSegment entity, IndexSegment segment) {
+        entity.setData(segment.toBytes());
+        entity.setVersion(entity.getVersion() + 1);
+        ofy().save().entities(entity, new SearchSegmentVersion(entity));
+        return entity;
+    }
+
+    // Replaces the in-memory copy of a segment
+    private synchronized void apply(SearchSegment entity) {
+        Long previousVersion = segmentVersions.get(entity.getId());
+        if (previousVersion != null && previousVersion >= entity.getVersion()) {
+            return;
+        }
+
+        forgetDocs(entity.getId());
+        IndexSegment segment = IndexSegment.fromBytes(entity.getData());
+        segments.put(entity.getId(), segment);
+        segmentVersions.put(entity.getId(), entity.getVersion());
+        for (Long docId : segment.getDocIds()) {
+            docSegments.put(docId, entity.getId());
+        }
+    }
+
+    private void forgetDocs(Long segmentId) {
+        IndexSegment previous = segments.get(segmentId);
+        if (previous == null) return;
+        for (Long docId : previous.getDocIds()) {
+            docSegments.remove(docId, segmentId);
+        }
+    }
+}
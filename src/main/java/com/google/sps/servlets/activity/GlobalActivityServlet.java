@@ -0,0 +1,63 @@
+package com.google.sps.servlets.activity;
+
+import com.google.gson.Gson;
+import com.google.sps.util.GlobalActivityBuffer;
+import com.google.sps.util.Metrics;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves the latest activity of the whole site, e.g. for logged out visitors and dashboards.
+ * The JSON is only built again once new activity was recorded, and may be cached by browsers
+ * and the edge cache for MAX_AGE_SECONDS, as every viewer gets the same response.
+ */
+@WebServlet("/activity/global")
+public class GlobalActivityServlet extends HttpServlet {
+
+    static final int MAX_AGE_SECONDS = 10;
+
+    private static final String HIT_METRIC = "activity.global.hit";
+    private static final String MISS_METRIC = "activity.global.miss";
+
+    private final Gson gson = new Gson();
+
+    // The last response and the GlobalActivityBuffer version it was built from
+    private static class Cached {
+        final long version;
+        final String json;
+
+        Cached(long version, String json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+
+    private volatile Cached cached = new Cached(-1, null);
+
+    /**
+     * doGet() returns the latest reviews, list additions and follows of all users
+     * @param request: no parameters
+     * @param response: returns a JSON list of Activity, newest first, at most GlobalActivityBuffer.CAPACITY
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+        response.setHeader("Cache-Control", "public, max-age=" + MAX_AGE_SECONDS);
+
+        Cached current = cached;
+        long version = GlobalActivityBuffer.get().getVersion();
+        if (current.version != version) {
+            Metrics.increment(MISS_METRIC);
+            current = new Cached(version, gson.toJson(GlobalActivityBuffer.get().getLatest()));
+            cached = current;
+        } else {
+            Metrics.increment(HIT_METRIC);
+        }
+        response.getWriter().println(current.json);
+    }
+}
@@ -0,0 +1,45 @@
+package com.google.sps.servlets.activity;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.HttpUtils;
+import com.google.sps.util.Utils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@WebServlet("/activity/newer")
+public class NewActivityServlet extends HttpServlet {
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() tells whether a user's feed has activity newer than what the page shows, so that
+     * pages can poll it cheaply and only read the feed (see RecentActivityServlet) when it does.
+     * It only runs keys-only queries, see FeedInboxes.hasNewer()
+     * Expects ?userId={id}&since={timestamp}, the timestamp of the newest activity shown
+     * Returns error 400 if userId is missing or since is not a number
+     * @param request: expects userId and since
+     * @param response: returns a JSON object whose newer field is true if there is newer activity
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        String userId = request.getParameter("userId");
+        Long since = Utils.parseLong(request.getParameter("since"));
+        if (userId == null || userId.isEmpty() || since == null) {
+            HttpUtils.setInvalidGetResponse(response);
+            return;
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("newer", FeedInboxes.hasNewer(userId, since));
+        response.getWriter().println(gson.toJson(result));
+    }
+}
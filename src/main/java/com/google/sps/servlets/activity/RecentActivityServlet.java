@@ -3,8 +3,15 @@ package com.google.sps.servlets.activity;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
 import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.FeedEntry;
 import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.results.CursorResultsObject;
+import com.google.sps.util.FeedCache;
+import com.google.sps.util.FeedCursor;
+import com.google.sps.util.FeedInboxes;
 import com.google.sps.util.HttpUtils;
+import com.google.sps.util.PageCursors;
+import com.google.sps.util.TimelineMerge;
 import com.google.sps.util.Utils;
 
 import javax.servlet.ServletException;
@@ -13,7 +20,6 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -24,39 +30,71 @@ public class RecentActivityServlet extends HttpServlet {
 
     private final Gson gson = new Gson();
     private final int ACTIVITY_LIMIT = 10;
+    private static final int MAX_FOLLOWED_TIMELINES = 200;
 
     /**
      * doGet() is an endpoint that takes in two params, a userId to check, and an offset (how many pages the user is in)
      * The doGet() will return a 400 error if the user is missing any query params, if not, then it'll return an empty
      * arraylist if there is no activity, or an arraylist of activity objects if there is activity
-     * @param request: request coming in from user with userId and offset
-     * @param response: an arraylist of Activity objects
+     * Activity is read from the user's feed inbox merged with the activity of the celebrities they
+     * follow (see FeedInboxes), or merged from the users they follow if their feed is still empty.
+     * The first pages of recently read feeds are served from memory (see FeedCache)
+     * The feed is paged with either pageNumber or cursor. If cursor is given (empty for the first page),
+     * the response is a CursorResultsObject whose cursor should be passed back to get the next page.
+     * The cursor is the position of the last activity read, so each page only reads its own
+     * activity, and activity posted in the meantime doesn't shift the pages that follow.
+     * pageNumber is the number of activities to skip, it starts from the position the previous
+     * page ended at when that is remembered (see PageCursors)
+     * Returns error 400 if the cursor is invalid
+     * @param request: request coming in from user with userId and offset, or cursor
+     * @param response: an arraylist of Activity objects, or a CursorResultsObject in cursor mode
      * @throws ServletException
      * @throws IOException
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        int pageNumber;
-
         String userId = request.getParameter("userId");
-        if (userId == null) {
+        String cursor = request.getParameter("cursor");
+        Integer pageNumber = Utils.parseInt(request.getParameter("pageNumber"));
+        if (userId == null || (pageNumber == null && cursor == null)) {
             HttpUtils.setInvalidGetResponse(response);
             return;
         }
 
+        String queryKey = "activity:" + userId;
+        FeedCursor after;
         try {
-            pageNumber = Utils.parseInt(request.getParameter("pageNumber"));
-        } catch (NullPointerException e){
+            after = FeedCursor.decode((cursor != null) ? cursor : PageCursors.lookupToken(queryKey, pageNumber));
+        } catch (IllegalArgumentException e) {
             HttpUtils.setInvalidGetResponse(response);
             return;
         }
+        // Without a remembered position, a page number still has to be skipped to
+        int offset = (cursor != null || after != null) ? 0 : pageNumber;
 
-        // grabs list of "following" related to a user, this is a list of user id (as string
-        List<String> following = getFollowingList(userId);
+        CursorResultsObject<Activity> page = FeedCache.get().read(userId, after, offset, ACTIVITY_LIMIT,
+                (from, skip, limit) -> loadFeed(userId, from, skip, limit));
 
-        List<Activity> reviews = getActivity(following, pageNumber);
+        if (cursor != null) {
+            response.getWriter().println(gson.toJson(page));
+        } else {
+            PageCursors.rememberToken(queryKey, pageNumber + ACTIVITY_LIMIT, page.getCursor());
+            response.getWriter().println(gson.toJsonTree(page.getResults()));
+        }
+    }
 
-        response.getWriter().println(gson.toJsonTree(reviews));
+    /**
+     * Reads a page of a user's feed from the Datastore
+     * @return: the activities and the cursor of the next page
+     */
+    private CursorResultsObject<Activity> loadFeed(String userId, FeedCursor after, int offset, int limit) {
+        CursorResultsObject<Activity> page = FeedInboxes.loadPage(userId, after, offset, limit);
+        if (page == null) {
+            // grabs list of "following" related to a user, this is a list of user id (as string
+            List<String> following = getFollowingList(userId);
+            page = getActivity(userId, following, after, offset, limit);
+        }
+        return page;
     }
 
     /**
@@ -71,20 +109,23 @@ public class RecentActivityServlet extends HttpServlet {
     }
 
     /**
-     * A function to get a following activity (could be list activity or reviews)
+     * A function to get a following activity (could be list activity or reviews) at read time,
+     * for users whose feed inbox is still empty, by merging the timelines of the users they follow
+     * (see TimelineMerge). Only the first MAX_FOLLOWED_TIMELINES followings are looked at.
+     * @param userId: the user whose feed is read
      * @param following: an arraylist of following userIds
-     * @param offset: number to offset by, goes in 10s
-     * @return: an arraylist of activity given the list of following
+     * @param after: position to start after, or null for the start of the feed
+     * @param offset: number of activities to skip
+     * @param limit: maximum number of activities to read
+     * @return: a page of activity given the list of following, and the cursor of the next page
      */
-    private List<Activity> getActivity(List<String> following, int offset) {
-        if(following.size() == 0) {
-            return new ArrayList<Activity>();
+    private CursorResultsObject<Activity> getActivity(String userId, List<String> following, FeedCursor after,
+                                                      int offset, int limit) {
+        TimelineMerge merge = new TimelineMerge(userId);
+        for (String followingId : following.subList(0, Math.min(following.size(), MAX_FOLLOWED_TIMELINES))) {
+            merge.addTimeline(followingId);
         }
-        return ofy().load().type(Activity.class)
-                .filter("userId IN", following)
-                .order("-timestamp")
-                .limit(ACTIVITY_LIMIT)
-                .offset(offset)
-                .list();
+        CursorResultsObject<List<FeedEntry>> page = merge.read(after, offset, limit);
+        return new CursorResultsObject<>(FeedInboxes.hydrate(userId, page.getResults(), merge.getLoaded()), page.getCursor());
     }
 }
@@ -0,0 +1,29 @@
+package com.google.sps.servlets.admin;
+
+import com.google.gson.Gson;
+import com.google.sps.util.Metrics;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@WebServlet("/admin/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() returns the metrics collected by this instance since it started
+     * Only reachable by admins (see web.xml)
+     * @param request: no parameters
+     * @param response: returns a JSON object of metric name to value
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+        response.getWriter().println(gson.toJson(Metrics.snapshot()));
+    }
+}
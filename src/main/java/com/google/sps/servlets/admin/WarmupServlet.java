@@ -0,0 +1,27 @@
+package com.google.sps.servlets.admin;
+
+import com.google.sps.graph.SocialGraphService;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@WebServlet("/_ah/warmup")
+public class WarmupServlet extends HttpServlet {
+
+    /**
+     * doGet() loads what an instance keeps in memory before App Engine sends it user requests,
+     * i.e. the follow graph (see SocialGraphService)
+     * Only sent by App Engine, when it starts an instance (see appengine-web.xml)
+     * @param request: no parameters
+     * @param response: returns OK code once loaded
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        SocialGraphService.get().reload();
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+}
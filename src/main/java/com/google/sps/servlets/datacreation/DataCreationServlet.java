@@ -16,6 +16,7 @@ import com.google.sps.model.queue.QueueListItemObject;
 import com.google.sps.model.queue.ViewedListItemObject;
 import com.google.sps.model.review.ReviewObject;
 import com.google.sps.model.user.UserObject;
+import com.google.sps.util.ListLookups;
 import com.thedeanda.lorem.Lorem;
 import com.thedeanda.lorem.LoremIpsum;
 import info.movito.themoviedbapi.TmdbApi;
@@ -154,12 +155,10 @@ public class DataCreationServlet extends HttpServlet {
             if(follower == followee) {
                 continue;
             }
-            if(ofy().load().type(FollowItem.class).filter("userId", follower.getId()).filter("targetId", followee.getId()).list().size() != 0) {
+            if(ofy().load().type(FollowItem.class).id(FollowItem.makeId(follower.getId(), followee.getId())).now() != null) {
                 continue;
             }
-            FollowItem follow = new FollowItem();
-            follow.setUserId(follower.getId());
-            follow.setTargetId(followee.getId());
+            FollowItem follow = new FollowItem(follower.getId(), followee.getId());
             ofy().save().entity(follow);
         }
     }
@@ -194,7 +193,7 @@ public class DataCreationServlet extends HttpServlet {
                     list.setArtUrl("https://image.tmdb.org/t/p/w500/"+movie.getPosterPath());
                 }
 
-                ofy().save().entity(list).now();
+                ListLookups.insertIfAbsent(list);
             }
         }
     }
@@ -0,0 +1,79 @@
+package com.google.sps.servlets.follow;
+
+import com.google.gson.Gson;
+import com.google.sps.model.follow.FollowItem;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+@WebServlet("/follow/bulk")
+public class BulkFollowServlet extends HttpServlet {
+
+    static final int MAX_TARGETS = 100;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() returns whether a user follows each of many users at once, with a single batch get,
+     * e.g. for the follow buttons on a grid of search results
+     * Expects ?userId={viewer id}&targetIds={id},{id},...
+     * Returns error 400 if userId is empty, or targetIds is missing, has an empty id
+     * or has more than MAX_TARGETS ids
+     * @param request: expects userId and targetIds
+     * @param response: returns a JSON list of booleans, true where userId follows the target,
+     * in the order the targets were given
+     * @throws IOException
+     */
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        String userId = request.getParameter("userId");
+        List<String> targetIds = parseIds(request.getParameter("targetIds"));
+        if (userId == null || userId.isEmpty() || targetIds == null || targetIds.size() > MAX_TARGETS) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Set<String> followIds = new LinkedHashSet<>();
+        for (String targetId : targetIds) {
+            followIds.add(FollowItem.makeId(userId, targetId));
+        }
+        Map<String, FollowItem> follows = ofy().load().type(FollowItem.class).ids(followIds);
+
+        List<Boolean> following = new ArrayList<>();
+        for (String targetId : targetIds) {
+            following.add(follows.containsKey(FollowItem.makeId(userId, targetId)));
+        }
+        response.getWriter().println(gson.toJson(following));
+    }
+
+    /**
+     * Parses a comma separated list of ids
+     * @return: the ids, or null if the list is missing or has an empty id
+     */
+    private List<String> parseIds(String ids) {
+        if (ids == null || ids.isEmpty()) {
+            return null;
+        }
+
+        List<String> result = new ArrayList<>();
+        for (String id : ids.split(",", -1)) {
+            if (id.trim().isEmpty()) {
+                return null;
+            }
+            result.add(id.trim());
+        }
+        return result;
+    }
+}
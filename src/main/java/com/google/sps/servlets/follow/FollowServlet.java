@@ -2,21 +2,32 @@ package com.google.sps.servlets.follow;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.googlecode.objectify.cmd.QueryKeys;
+import com.googlecode.objectify.Work;
+import com.googlecode.objectify.cmd.Query;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.users.User;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
-import com.google.common.collect.Iterables;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.sps.graph.SocialGraphService;
+import com.google.sps.model.activity.FollowActivity;
+import com.google.sps.model.follow.FollowChange;
 import com.google.sps.model.follow.FollowItem;
 import com.google.sps.model.follow.FollowResponse;
 import com.google.sps.model.follow.FollowListObject;
+import com.google.sps.model.results.CursorResultsObject;
+import com.google.sps.model.user.PublicUserObject;
 import com.google.sps.model.user.UserObject;
+import com.google.sps.model.user.UserStats;
+import com.google.sps.util.FeedCache;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.GlobalActivityBuffer;
+import com.google.sps.util.FollowLookups;
+import com.google.sps.util.PageCursors;
+import com.google.sps.util.UserLookups;
 import com.google.sps.util.Utils;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -25,9 +36,13 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator; 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.lang.Iterable;
 
 import static com.google.sps.util.HttpUtils.*;
@@ -45,10 +60,13 @@ public class FollowServlet extends HttpServlet {
      * the other will be a following list by a given user or of a given media item
      * if followingId is provided it returns if the user is following that user or not
      * Expects either ?userId={id} or ?userId={id}&pageNumber{pageNumber}
+     * Lists are ordered by follow time, newest first. Instead of pageNumber, each list can be paged
+     * with followersCursor / followingCursor, passing back the cursor returned for that list
+     * If list={followers | following} is given, only that list is fetched and the other is null
      * Returns error 400 if the query parameters are not in either of these formats
-     * Returns error 400 if a parameter is empty
+     * Returns error 400 if a parameter is empty, or the page number, list or a cursor is invalid
      * Simply returns an empty list if the given media ID does not exist to avoid API call
-     * @param request: expects userId, pageNumber and followingId is optional
+     * @param request: expects userId, pageNumber or cursors, list, and followingId is optional
      * @param response: returns a JSON object of FollowListObject
      * @throws IOException
      */
@@ -59,7 +77,8 @@ public class FollowServlet extends HttpServlet {
         String userId = request.getParameter("userId");
         String pageNumber = request.getParameter("pageNumber");
         String targetId = request.getParameter("targetId");
-        int startIndex;
+        String list = request.getParameter("list");
+        int page;
 
         if(userId == null || userId.isEmpty()) {
             setInvalidGetResponse(response);
@@ -67,9 +86,7 @@ public class FollowServlet extends HttpServlet {
         }
 
         if(targetId != null) {
-            QueryKeys<?> targetKey = getUserItems(userId, targetId);
-            
-            if(Iterables.size(targetKey) != 0) {
+            if(getFollowItem(userId, targetId) != null) {
                 response.getWriter().append("true");
                 return;
             } 
@@ -79,22 +96,55 @@ public class FollowServlet extends HttpServlet {
 
         //page start at 0
         if(pageNumber == null || pageNumber.isEmpty()) {
-            startIndex = 0;
+            page = 0;
+        } else if (Utils.parseInt(pageNumber) == null || Utils.parseInt(pageNumber) < 0) {
+            setInvalidGetResponse(response);
+            return;
         } else {
-            startIndex = RESULSTS_PER_PAGE * Integer.parseInt(pageNumber);
+            page = Utils.parseInt(pageNumber);
         }
 
-        List<FollowItem> followers = getList(userId, FollowItem.TYPE_FOLLOWERS, startIndex);
-        List<FollowItem> following = getList(userId, FollowItem.TYPE_FOLLOWING, startIndex);
+        if(list != null && !list.equals(FollowItem.TYPE_FOLLOWERS) && !list.equals(FollowItem.TYPE_FOLLOWING)) {
+            setInvalidGetResponse(response);
+            return;
+        }
 
-        List<UserObject> followerUserObjects = convertToUserObject(gson.toJsonTree(followers), "userId");
-        List<UserObject> targetUserObjects = convertToUserObject(gson.toJsonTree(following), "targetId");
+        CursorResultsObject<FollowItem> followers = null;
+        CursorResultsObject<FollowItem> following = null;
+        try {
+            if(list == null || list.equals(FollowItem.TYPE_FOLLOWERS)) {
+                followers = getList(userId, FollowItem.TYPE_FOLLOWERS, page,
+                        request.getParameter("followersCursor"));
+            }
+            if(list == null || list.equals(FollowItem.TYPE_FOLLOWING)) {
+                following = getList(userId, FollowItem.TYPE_FOLLOWING, page,
+                        request.getParameter("followingCursor"));
+            }
+        } catch (IllegalArgumentException e) {
+            setInvalidGetResponse(response);
+            return;
+        }
+
+        List<String> followerIds = (followers == null) ? new ArrayList<>() : followers.getResults().stream()
+                .map(FollowItem::getUserId).collect(Collectors.toList());
+        List<String> targetIds = (following == null) ? new ArrayList<>() : following.getResults().stream()
+                .map(FollowItem::getTargetId).collect(Collectors.toList());
+
+        // Both lists are hydrated with one batch get
+        Set<String> userIds = new HashSet<>(followerIds);
+        userIds.addAll(targetIds);
+        Map<String, PublicUserObject> profiles = UserLookups.loadPublicProfiles(userIds);
+        List<PublicUserObject> followerUserObjects =
+                (followers == null) ? null : UserLookups.inOrder(followerIds, profiles);
+        List<PublicUserObject> targetUserObjects =
+                (following == null) ? null : UserLookups.inOrder(targetIds, profiles);
 
-        int numFollowers = getListCount(userId, "targetId");
-        int numFollowing = getListCount(userId, "userId");
+        UserStats stats = FollowLookups.loadStats(userId);
 
         FollowListObject result = new FollowListObject(followerUserObjects, targetUserObjects,
-            numFollowers, numFollowing);
+            (int) stats.getFollowerCount(), (int) stats.getFollowingCount(),
+            (followers == null) ? null : followers.getCursor(),
+            (following == null) ? null : following.getCursor());
 
         response.getWriter().println(gson.toJsonTree(result));
     }
@@ -143,19 +193,25 @@ public class FollowServlet extends HttpServlet {
             return;
         }
 
-        if(Iterables.size(getUserItems(newFollowItem.getUserId(), newFollowItem.getTargetId())) != 0) {
-            response.sendError(HttpServletResponse.SC_CONFLICT);
-            return;
-        }
-
+        FollowItem followItem = new FollowItem(newFollowItem.getUserId(), newFollowItem.getTargetId());
+        boolean created;
         try {
-            ofy().save().entity(newFollowItem).now();
+            created = insertIfAbsent(followItem);
         } catch(Exception e) {
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             return;
         }
+        if(!created) {
+            response.sendError(HttpServletResponse.SC_CONFLICT);
+            return;
+        }
+        SocialGraphService.get().applyFollow(followItem);
+        FeedInboxes.enqueueBackfill(followItem);
+        FeedInboxes.forgetPulledAuthors(followItem.getUserId());
+        FeedCache.get().evict(followItem.getUserId());
+        GlobalActivityBuffer.get().record(new FollowActivity(followItem));
         newResponse.setSuccess(true);
-        newResponse.setEntity(newFollowItem);
+        newResponse.setEntity(followItem);
         response.getWriter().println(gson.toJsonTree(newResponse));
     }
 
@@ -186,76 +242,116 @@ public class FollowServlet extends HttpServlet {
             return;
         }
 
-        QueryKeys<?> targetKey = getUserItems(userId, targetId);
-
-        if(Iterables.size(targetKey) == 0) {
+        if(!deleteIfPresent(userId, targetId)) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
 
-        ofy().delete().keys(targetKey).now();
         response.sendError(HttpServletResponse.SC_OK);
     }
 
 
     /**
-     * A helper function to get entity data from database
-     * @param followType: what list type should it look for (followers / following)
+     * A helper function to get a page of one of a user's follow lists, newest first
+     * Starts from the cursor if one is given, otherwise from the cursor an earlier request
+     * remembered for the page, and only falls back to an offset if there is none
      * @param userId: userId to look for
-     * @param startIndex: from wich index to return the list from
-     * @return: a list of abstracted type EntityDbQueue
+     * @param followType: what list type should it look for (followers / following)
+     * @param pageNumber: zero-indexed page, used if cursor is null
+     * @param cursor: token returned for the previous page of this list, may be null
+     * @return: the page of FollowItems, and the cursor of the next page or null if this is the last one
+     * @throws IllegalArgumentException: if the cursor is invalid
      */
-    private List<FollowItem> getList(String userId, String followType, int startIndex) {
-        if(followType.equals(FollowItem.TYPE_FOLLOWERS)) {
-            //Sets user as target to retrieve followers.
-            return ofy().load().type(FollowItem.class)
-                .limit(RESULSTS_PER_PAGE)
-                .offset(startIndex)
-                .filter("targetId", userId).list();
-        } else {
-            //Sets user as follower to retrieve following.
-            return ofy().load().type(FollowItem.class)
-                .limit(RESULSTS_PER_PAGE)
-                .offset(startIndex)
-                .filter("userId", userId).list();
+    private CursorResultsObject<FollowItem> getList(String userId, String followType, int pageNumber, String cursor) {
+        //Sets user as target to retrieve followers, or as follower to retrieve following.
+        String field = followType.equals(FollowItem.TYPE_FOLLOWERS) ? "targetId" : "userId";
+        String queryKey = "follow:" + followType + ":" + userId;
+
+        Cursor startCursor = (cursor != null)
+                ? PageCursors.decode(cursor)
+                : PageCursors.lookup(queryKey, pageNumber);
+
+        Query<FollowItem> query = ofy().load().type(FollowItem.class)
+                .filter(field, userId)
+                .order("-timestamp")
+                .limit(RESULSTS_PER_PAGE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+        else if (cursor == null) {
+            query = query.offset(RESULSTS_PER_PAGE * pageNumber);
+        }
+
+        List<FollowItem> items = new ArrayList<>();
+        QueryResultIterator<FollowItem> iterator = query.iterator();
+        while (iterator.hasNext()) {
+            items.add(iterator.next());
+        }
+        Cursor nextCursor = (items.size() == RESULSTS_PER_PAGE) ? iterator.getCursor() : null;
+
+        if (cursor == null) {
+            PageCursors.remember(queryKey, pageNumber + 1, nextCursor);
         }
+        return new CursorResultsObject<>(items, PageCursors.encode(nextCursor));
     }
 
     /**
-     * Converts FollowItems id list to UserObject list
-     * @param followList: the list to be converted to UserObject
-     * @param type: userId or targetId to look for
-     * @return: a list of UserObject
+     * A helper function to get the follow relationship between two users
+     * @param userId: id of the follower
+     * @param targetId: id of the user being followed
+     * @return: the FollowItem, or null if userId doesn't follow targetId
      */
-    private List<UserObject> convertToUserObject(JsonElement followList, String type) {
-        JsonArray arrayList = followList.getAsJsonArray();
-        List<UserObject> userObject = new ArrayList<UserObject>();
-
-        for(int i=0; i < arrayList.size(); i++) {
-            String userId = (((JsonObject)arrayList.get(i)).get(type)).toString();
-            //removes "quotes" from user id (ex. "123" => 123)
-            String id = userId.substring(1, userId.length()-1);
-            UserObject user = ofy().load().type(UserObject.class).id(id).now();
-            user.setEmail("");
-            userObject.add(user);
-        }
-        return userObject;
+    private FollowItem getFollowItem(String userId, String targetId) {
+        return ofy().load().type(FollowItem.class).id(FollowItem.makeId(userId, targetId)).now();
     }
 
-    public int getListCount(String userId, String type) {
-        return 
-            ofy().load().type(FollowItem.class).filter(type, userId).count();
+    /**
+     * Saves a follow relationship unless it already exists, its FollowChange, and updates both users' counts,
+     * in a transaction so that two concurrent requests can't both create it
+     * @param followItem: the relationship to save
+     * @return: true if it was saved, false if it already existed
+     */
+    private boolean insertIfAbsent(FollowItem followItem) {
+        boolean inserted = ofy().transact((Work<Boolean>) () -> {
+            if (ofy().load().entity(followItem).now() != null) {
+                return false;
+            }
+            ofy().save().entities(followItem, new FollowChange(followItem, true));
+            FollowLookups.adjustCounts(followItem, 1);
+            return true;
+        });
+        if (inserted) {
+            FollowLookups.countFollowerChange(followItem, 1);
+        }
+        return inserted;
     }
 
     /**
-     * A helper function to return a list of keys from FollowItem list
-     * @param userId: userId to look for
-     * @param targetId: targetId to look for
-     * @return: a set of QueryKeys
+     * Deletes a follow relationship if it exists, saves its FollowChange, and updates both users' counts,
+     * in a transaction
+     * @param userId: id of the follower
+     * @param targetId: id of the user being followed
+     * @return: true if it was deleted, false if it didn't exist
      */
-    private QueryKeys<?> getUserItems(String userId, String targetId) {
-        return ofy().load().type(FollowItem.class)
-            .filter("userId", userId)
-            .filter("targetId", targetId).keys();
+    private boolean deleteIfPresent(String userId, String targetId) {
+        FollowItem deleted = ofy().transact((Work<FollowItem>) () -> {
+            FollowItem followItem = getFollowItem(userId, targetId);
+            if (followItem == null) {
+                return null;
+            }
+            ofy().delete().entity(followItem);
+            ofy().save().entity(new FollowChange(followItem, false));
+            FollowLookups.adjustCounts(followItem, -1);
+            return followItem;
+        });
+        if (deleted == null) {
+            return false;
+        }
+        FollowLookups.countFollowerChange(deleted, -1);
+        SocialGraphService.get().applyUnfollow(deleted);
+        FeedInboxes.enqueueRetraction(deleted);
+        FeedInboxes.forgetPulledAuthors(deleted.getUserId());
+        FeedCache.get().evict(deleted.getUserId());
+        return true;
     }
 }
\ No newline at end of file
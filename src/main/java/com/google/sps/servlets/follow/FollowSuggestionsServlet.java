@@ -0,0 +1,67 @@
+package com.google.sps.servlets.follow;
+
+import com.google.gson.Gson;
+import com.google.sps.graph.FollowSuggestions;
+import com.google.sps.model.follow.FollowSuggestion;
+import com.google.sps.model.user.PublicUserObject;
+import com.google.sps.util.UserLookups;
+import com.google.sps.util.Utils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.google.sps.util.HttpUtils.*;
+
+@WebServlet("/follow/suggestions")
+public class FollowSuggestionsServlet extends HttpServlet {
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() returns users a user might want to follow, ranked by how many of the users they follow
+     * follow them, and by how alike they rated the same movies and books
+     * Expects ?userId={id} and optionally &limit={count}, at most FollowSuggestions.MAX_SUGGESTIONS
+     * Returns error 400 if userId is empty or the limit is not a positive number
+     * Simply returns an empty list for users who follow no one and reviewed nothing
+     * @param request: expects userId, and optionally limit
+     * @param response: returns a JSON list of FollowSuggestion, best first
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        String userId = request.getParameter("userId");
+        Integer limit = Utils.parseInt(request.getParameter("limit"));
+        if (request.getParameter("limit") == null) {
+            limit = DEFAULT_LIMIT;
+        }
+        if (userId == null || userId.isEmpty() || limit == null || limit < 1) {
+            setInvalidGetResponse(response);
+            return;
+        }
+
+        List<FollowSuggestion> suggestions = FollowSuggestions.get()
+                .suggest(userId, Math.min(limit, FollowSuggestions.MAX_SUGGESTIONS));
+        Map<String, PublicUserObject> profiles = UserLookups.loadPublicProfiles(
+                suggestions.stream().map(FollowSuggestion::getUserId).collect(Collectors.toList()));
+
+        List<FollowSuggestion> results = new ArrayList<>();
+        for (FollowSuggestion suggestion : suggestions) {
+            PublicUserObject profile = profiles.get(suggestion.getUserId());
+            if (profile != null) {
+                results.add(suggestion.withUser(profile));
+            }
+        }
+        response.getWriter().println(gson.toJson(results));
+    }
+}
@@ -0,0 +1,71 @@
+package com.google.sps.servlets.follow;
+
+import com.google.gson.Gson;
+import com.google.sps.graph.SocialGraph;
+import com.google.sps.graph.SocialGraphService;
+import com.google.sps.model.follow.FollowRelationship;
+import com.google.sps.util.UserLookups;
+import com.google.sps.util.Utils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.sps.util.HttpUtils.*;
+
+@WebServlet("/follow/mutual")
+public class MutualFollowServlet extends HttpServlet {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() answers follow graph queries from the in-memory graph, without querying FollowItems
+     * Expects either ?userId={id}, optionally with &limit={count} up to 100, to get the users that
+     * userId follows and that follow them back, or ?userId={id}&otherId={id} to get whether userId
+     * follows otherId and whether otherId follows userId
+     * Returns error 400 if userId or otherId is empty, or the limit is not a positive number
+     * Returns error 503 if this instance hasn't loaded the graph yet (see SocialGraphService)
+     * @param request: expects userId, and either otherId or optionally limit
+     * @param response: returns a JSON FollowRelationship, or a JSON list of PublicUserObject
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        String userId = request.getParameter("userId");
+        String otherId = request.getParameter("otherId");
+        Integer limit = Utils.parseInt(request.getParameter("limit"));
+        if (request.getParameter("limit") == null) {
+            limit = DEFAULT_LIMIT;
+        }
+        if (userId == null || userId.isEmpty() || (otherId != null && otherId.isEmpty())
+                || limit == null || limit < 1) {
+            setInvalidGetResponse(response);
+            return;
+        }
+
+        SocialGraph graph = SocialGraphService.get().getGraphIfLoaded();
+        if (graph == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        if (otherId != null) {
+            FollowRelationship relationship = new FollowRelationship(
+                    graph.isFollowing(userId, otherId), graph.followsBack(userId, otherId));
+            response.getWriter().println(gson.toJson(relationship));
+            return;
+        }
+
+        List<String> mutual = graph.getMutual(userId);
+        List<String> page = mutual.subList(0, Math.min(mutual.size(), Math.min(limit, MAX_LIMIT)));
+        response.getWriter().println(gson.toJson(
+                UserLookups.inOrder(page, UserLookups.loadPublicProfiles(page))));
+    }
+}
@@ -0,0 +1,109 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.review.ReviewPointer;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.PageCursors;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Background job that re-saves every Activity entity (reviews and list items) so it is
+ * written with the current index configuration. Datastore only drops index rows for
+ * properties that are no longer @Index'ed when an entity is written again, so this has
+ * to be run once after slimming down the indexed fields.
+ * It also writes the ReviewPointer of every review, for reviews posted before pointers existed,
+ * and fans out every activity to the feed inboxes, for activity posted before inboxes existed.
+ * The job works in batches, each batch enqueues the next one with its cursor.
+ */
+@WebServlet("/jobs/reindex")
+public class ActivityReindexServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 100;
+    private static final String JOB_URL = "/jobs/reindex";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() starts the job, or continues it from the given cursor
+     * Only reachable by admins (see web.xml)
+     * Returns error 400 if the cursor is invalid
+     * @param request: optional parameter cursor
+     * @param response: returns the number of entities re-saved and the cursor of the next batch
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue to run the next batch, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Query<Activity> query = ofy().load().type(Activity.class).limit(BATCH_SIZE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+
+        List<Activity> batch = new ArrayList<>();
+        QueryResultIterator<Activity> iterator = query.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+        }
+
+        ofy().save().entities(batch).now();
+
+        List<ReviewPointer> pointers = new ArrayList<>();
+        for (Activity activity : batch) {
+            if (activity instanceof ReviewObject) {
+                pointers.add(new ReviewPointer((ReviewObject) activity));
+            }
+        }
+        ofy().save().entities(pointers).now();
+        FeedInboxes.enqueueFanOut(batch);
+
+        String nextCursor = null;
+        if (batch.size() == BATCH_SIZE) {
+            nextCursor = PageCursors.encode(iterator.getCursor());
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(JOB_URL)
+                    .param("cursor", nextCursor));
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("resaved", batch.size());
+        result.addProperty("cursor", nextCursor);
+        response.getWriter().println(gson.toJson(result));
+    }
+}
@@ -0,0 +1,92 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.util.FeedCache;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.FollowLookups;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Task that copies the BACKFILL_SIZE latest activities of a newly followed user into the follower's
+ * feed inbox (see FeedInboxes), as fan-out only delivers what the user posts from then on.
+ * Entries have deterministic keys, so a retried task is harmless. Activity of celebrities isn't
+ * copied, readers pull it from their timeline instead.
+ */
+@WebServlet(FeedInboxes.BACKFILL_URL)
+public class FeedBackfillServlet extends HttpServlet {
+
+    static final int BACKFILL_SIZE = 20;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() copies the latest activities of targetId into the inbox of userId
+     * Only reachable by admins (see web.xml)
+     * Returns error 400 if userId or targetId is missing
+     * Simply delivers nothing if userId no longer follows targetId, or targetId is a celebrity
+     * @param request: expects userId and targetId
+     * @param response: returns the number of entries written, and whether the activity is left to
+     * be pulled by the reader
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        backfill(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        backfill(request, response);
+    }
+
+    private void backfill(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        String userId = request.getParameter("userId");
+        String targetId = request.getParameter("targetId");
+        if (userId == null || userId.isEmpty() || targetId == null || targetId.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        boolean following = ofy().load().type(FollowItem.class).id(FollowItem.makeId(userId, targetId)).now() != null;
+        boolean pulled = following
+                && FollowLookups.loadStats(targetId).getFollowerCount() >= FeedInboxes.celebrityThreshold();
+
+        List<FeedEntry> entries = new ArrayList<>();
+        if (following && !pulled) {
+            List<Activity> activities = ofy().load().type(Activity.class)
+                    .filter("userId", targetId)
+                    .order("-timestamp")
+                    .limit(BACKFILL_SIZE)
+                    .list();
+            for (Activity activity : activities) {
+                entries.add(new FeedEntry(userId, activity.getId(), targetId,
+                        FeedInboxes.actionOf(activity), FeedInboxes.timestampOf(activity)));
+            }
+            ofy().save().entities(entries).now();
+            FeedCache.get().evict(userId);
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("delivered", entries.size());
+        result.addProperty("pulled", pulled);
+        response.getWriter().println(gson.toJson(result));
+    }
+}
@@ -0,0 +1,190 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.util.Metrics;
+import com.google.sps.util.PageCursors;
+import com.google.sps.util.Utils;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Background job that keeps the feed inboxes (see FeedInboxes) from growing without bound.
+ * It deletes the FeedEntries older than the retention window, set in appengine-web.xml, which
+ * are only copies: their activities stay on their authors' timelines and profiles. Expired entries
+ * are found with a keys-only range query on their timestamp and deleted by key, so a run only
+ * reads what it deletes. Entries of deleted activities and of users the owner no longer follows
+ * are deleted when that happens (see FeedRetractionServlet). The index rows freed by each batch
+ * are estimated, and added up in the feed.compaction.indexBytes metric.
+ *
+ * The job runs daily (see cron.xml) and works in batches, each batch enqueues the next one with
+ * its cursor and the cutoff of the run, which identifies the run. A run holds a lease in memcache
+ * that every batch renews, and a run started while another one holds it does nothing, so a run
+ * that takes longer than a day doesn't start a second chain of batches. Pausing the queue pauses
+ * the job, and running it with the cursor and cutoff of the last batch resumes it once the lease
+ * expired after LEASE_SECONDS.
+ */
+@WebServlet("/jobs/compactFeeds")
+public class FeedCompactionServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 500;
+    public static final String RETENTION_DAYS_PROPERTY = "mediaphile.feed.retentionDays";
+    static final int DEFAULT_RETENTION_DAYS = 90;
+    static final int LEASE_SECONDS = 10 * 60;
+    private static final String JOB_URL = "/jobs/compactFeeds";
+    private static final String LEASE_NAMESPACE = "jobLeases";
+
+    private static final String EXPIRED_METRIC = "feed.compaction.expired";
+    private static final String INDEX_BYTES_METRIC = "feed.compaction.indexBytes";
+
+    // Each index row holds the entity's key, the indexed values and some fixed overhead
+    private static final int INDEX_ROW_OVERHEAD_BYTES = 32;
+    private static final int KIND_BYTES = "FeedEntry".length();
+    private static final int LONG_BYTES = 8;
+
+    private final Gson gson = new Gson();
+    private final MemcacheService leases = MemcacheServiceFactory.getMemcacheService(LEASE_NAMESPACE);
+
+    /**
+     * doGet() starts the job, or continues it from the given cursor
+     * Only reachable by admins and cron (see web.xml)
+     * Returns error 400 if the cursor or the cutoff is invalid
+     * Simply does nothing if another run holds the lease
+     * @param request: optional parameters cursor and before, the time in milliseconds before
+     *                 which entries are expired, by default the start of the retention window
+     * @param response: returns the number of entries deleted, the estimated index bytes freed,
+     * and the cursor and cutoff of the next batch, or the cutoff of the run holding the lease
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue to run the next batch, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        Long before = Utils.parseLong(request.getParameter("before"));
+        if (request.getParameter("before") == null) {
+            before = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays());
+        }
+        if (before == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Long running = acquireLease(before);
+        if (running != null) {
+            JsonObject result = new JsonObject();
+            result.addProperty("running", running);
+            response.getWriter().println(gson.toJson(result));
+            return;
+        }
+
+        Query<FeedEntry> query = ofy().load().type(FeedEntry.class)
+                .filter("timestamp <", before)
+                .limit(BATCH_SIZE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+        List<Key<FeedEntry>> expired = new ArrayList<>();
+        QueryResultIterator<Key<FeedEntry>> iterator = query.keys().iterator();
+        while (iterator.hasNext()) {
+            expired.add(iterator.next());
+        }
+
+        long indexBytes = 0;
+        for (Key<FeedEntry> key : expired) {
+            indexBytes += indexBytes(key.getName());
+        }
+        ofy().delete().keys(expired).now();
+        Metrics.add(EXPIRED_METRIC, expired.size());
+        Metrics.add(INDEX_BYTES_METRIC, indexBytes);
+
+        String nextCursor = null;
+        if (expired.size() == BATCH_SIZE) {
+            nextCursor = PageCursors.encode(iterator.getCursor());
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(JOB_URL)
+                    .param("cursor", nextCursor)
+                    .param("before", String.valueOf(before)));
+        } else {
+            leases.delete(JOB_URL);
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("expired", expired.size());
+        result.addProperty("indexBytes", indexBytes);
+        result.addProperty("cursor", nextCursor);
+        result.addProperty("before", before);
+        response.getWriter().println(gson.toJson(result));
+    }
+
+    /**
+     * Takes or renews the lease of the run with the given cutoff
+     * @return: null if the run holds the lease now, otherwise the cutoff of the run that holds it
+     */
+    private Long acquireLease(long before) {
+        Expiration expiration = Expiration.byDeltaSeconds(LEASE_SECONDS);
+        if (leases.put(JOB_URL, before, expiration, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT)) {
+            return null;
+        }
+        Object holder = leases.get(JOB_URL);
+        if (holder instanceof Long && (Long) holder != before) {
+            return (Long) holder;
+        }
+        leases.put(JOB_URL, before, expiration);
+        return null;
+    }
+
+    /**
+     * @return: the estimated size of the index rows of an entry: the kind index, ownerId and
+     * timestamp ascending and descending, and the composite (ownerId, -timestamp) index
+     * @param entryId: the name of the entry's key, "ownerId:activityId"
+     */
+    static long indexBytes(String entryId) {
+        int keyBytes = KIND_BYTES + entryId.length();
+        int ownerBytes = Math.max(0, entryId.lastIndexOf(':'));
+        return (keyBytes + INDEX_ROW_OVERHEAD_BYTES)
+                + 2L * (keyBytes + ownerBytes + INDEX_ROW_OVERHEAD_BYTES)
+                + 2L * (keyBytes + LONG_BYTES + INDEX_ROW_OVERHEAD_BYTES)
+                + (keyBytes + ownerBytes + LONG_BYTES + INDEX_ROW_OVERHEAD_BYTES);
+    }
+
+    static int retentionDays() {
+        return Integer.getInteger(RETENTION_DAYS_PROPERTY, DEFAULT_RETENTION_DAYS);
+    }
+}
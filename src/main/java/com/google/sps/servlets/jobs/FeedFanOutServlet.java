@@ -0,0 +1,128 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.FollowLookups;
+import com.google.sps.util.PageCursors;
+import com.google.sps.util.Utils;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Task that delivers an activity to the feed inbox of each follower of its author (see FeedInboxes).
+ * Followers are read from the keys of the author's FollowItems in batches, each batch enqueues
+ * the next one with its cursor. Entries have deterministic keys, so a retried batch is harmless.
+ * Activity of authors with at least FeedInboxes.celebrityThreshold() followers isn't delivered,
+ * readers pull it from the author's timeline instead.
+ */
+@WebServlet(FeedInboxes.FAN_OUT_URL)
+public class FeedFanOutServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 500;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() fans out an activity, or continues from the given cursor
+     * Only reachable by admins (see web.xml)
+     * Returns error 400 if activityId is missing or invalid, or the cursor is invalid
+     * Simply delivers nothing if the activity was deleted in the meantime, or its author is a celebrity
+     * @param request: expects activityId, and optionally cursor
+     * @param response: returns the number of inboxes written, whether the activity is left to be
+     * pulled by readers, and the cursor of the next batch
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        Long activityId = Utils.parseLong(request.getParameter("activityId"));
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (activityId == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Activity activity = ofy().load().type(Activity.class).id(activityId).now();
+        String authorId = (activity == null) ? null : FeedInboxes.authorOf(activity);
+
+        // Whether an activity is pulled is decided before its first batch, and sticks for the rest
+        boolean pulled = authorId != null && startCursor == null
+                && FollowLookups.loadStats(authorId).getFollowerCount() >= FeedInboxes.celebrityThreshold();
+
+        List<FeedEntry> entries = new ArrayList<>();
+        String nextCursor = null;
+        if (authorId != null && !pulled) {
+            long timestamp = FeedInboxes.timestampOf(activity);
+            String action = FeedInboxes.actionOf(activity);
+            Query<FollowItem> query = ofy().load().type(FollowItem.class)
+                    .filter("targetId", authorId)
+                    .limit(BATCH_SIZE);
+            if (startCursor != null) {
+                query = query.startAt(startCursor);
+            }
+
+            int read = 0;
+            QueryResultIterator<Key<FollowItem>> iterator = query.keys().iterator();
+            while (iterator.hasNext()) {
+                String followId = iterator.next().getName();
+                read++;
+                // Follows that haven't been moved to named keys yet are skipped
+                int separator = (followId == null) ? -1 : followId.indexOf(':');
+                if (separator > 0) {
+                    entries.add(new FeedEntry(followId.substring(0, separator), activityId, authorId, action, timestamp));
+                }
+            }
+            ofy().save().entities(entries).now();
+
+            if (read == BATCH_SIZE) {
+                nextCursor = PageCursors.encode(iterator.getCursor());
+                QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(FeedInboxes.FAN_OUT_URL)
+                        .param("activityId", String.valueOf(activityId))
+                        .param("cursor", nextCursor));
+            }
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("delivered", entries.size());
+        result.addProperty("pulled", pulled);
+        result.addProperty("cursor", nextCursor);
+        response.getWriter().println(gson.toJson(result));
+    }
+}
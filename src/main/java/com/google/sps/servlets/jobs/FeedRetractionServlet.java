@@ -0,0 +1,194 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.util.FeedCache;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.FollowLookups;
+import com.google.sps.util.Metrics;
+import com.google.sps.util.PageCursors;
+import com.google.sps.util.Utils;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Task that deletes feed inbox entries (see FeedInboxes) as soon as feeds no longer show them:
+ * - with activityIds, the entries of deleted activities, from the inboxes of their author's followers
+ * - with ownerId, the entries of a user the owner unfollowed, from the owner's inbox
+ * Entries are keyed by "ownerId:activityId", so they are deleted by key without being read: the
+ * followers come from the keys of the author's FollowItems, and the activities from the keys of
+ * the author's timeline. The task works in batches, each batch enqueues the next one with its
+ * cursor, and deleting a missing entry does nothing, so a retried batch is harmless.
+ */
+@WebServlet(FeedInboxes.RETRACT_URL)
+public class FeedRetractionServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final String RETRACTED_METRIC = "feed.retraction.deleted";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() deletes a batch of entries, starting from the given cursor
+     * Only reachable by admins (see web.xml)
+     * Returns error 400 if authorId is missing, if neither ownerId nor activityIds is given,
+     * or if the activityIds or the cursor are invalid
+     * Simply deletes nothing if ownerId follows authorId again, or authorId is a celebrity whose
+     * activity isn't delivered to inboxes
+     * @param request: expects authorId, and either ownerId or a comma separated list of activityIds,
+     *                 optional parameter cursor
+     * @param response: returns the number of entries deleted, and the cursor of the next batch
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        String authorId = request.getParameter("authorId");
+        String ownerId = request.getParameter("ownerId");
+        String activityIdsParam = request.getParameter("activityIds");
+        List<Long> activityIds = parseIds(activityIdsParam);
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (authorId == null || authorId.isEmpty()
+                || (ownerId == null || ownerId.isEmpty()) == (activityIdsParam == null)
+                || activityIds == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        List<Key<FeedEntry>> retracted = new ArrayList<>();
+        String nextCursor = null;
+        if (ownerId != null) {
+            if (!following(ownerId, authorId)) {
+                nextCursor = retractAuthor(ownerId, authorId, startCursor, retracted);
+                FeedCache.get().evict(ownerId);
+            }
+        } else if (FollowLookups.loadStats(authorId).getFollowerCount() < FeedInboxes.celebrityThreshold()) {
+            nextCursor = retractActivities(authorId, activityIds, startCursor, retracted);
+        }
+        ofy().delete().keys(retracted).now();
+        Metrics.add(RETRACTED_METRIC, retracted.size());
+
+        if (nextCursor != null) {
+            TaskOptions task = TaskOptions.Builder.withUrl(FeedInboxes.RETRACT_URL)
+                    .param("authorId", authorId)
+                    .param("cursor", nextCursor);
+            if (ownerId != null) {
+                task.param("ownerId", ownerId);
+            } else {
+                task.param("activityIds", activityIdsParam);
+            }
+            QueueFactory.getDefaultQueue().add(task);
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("deleted", retracted.size());
+        result.addProperty("cursor", nextCursor);
+        response.getWriter().println(gson.toJson(result));
+    }
+
+    /**
+     * Adds the keys of the entries of a batch of authorId's activities in ownerId's inbox
+     * @return: the cursor of the next batch, or null if this is the last one
+     */
+    private String retractAuthor(String ownerId, String authorId, Cursor startCursor, List<Key<FeedEntry>> retracted) {
+        Query<Activity> query = ofy().load().type(Activity.class)
+                .filter("userId", authorId)
+                .limit(BATCH_SIZE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+        QueryResultIterator<Key<Activity>> iterator = query.keys().iterator();
+        while (iterator.hasNext()) {
+            retracted.add(Key.create(FeedEntry.class, FeedEntry.makeId(ownerId, iterator.next().getId())));
+        }
+        return retracted.size() == BATCH_SIZE ? PageCursors.encode(iterator.getCursor()) : null;
+    }
+
+    /**
+     * Adds the keys of the entries of the activities in the inboxes of a batch of authorId's followers
+     * @return: the cursor of the next batch, or null if this is the last one
+     */
+    private String retractActivities(String authorId, List<Long> activityIds, Cursor startCursor,
+                                     List<Key<FeedEntry>> retracted) {
+        Query<FollowItem> query = ofy().load().type(FollowItem.class)
+                .filter("targetId", authorId)
+                .limit(BATCH_SIZE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+        int followers = 0;
+        QueryResultIterator<Key<FollowItem>> iterator = query.keys().iterator();
+        while (iterator.hasNext()) {
+            String followId = iterator.next().getName();
+            followers++;
+            // Follows that haven't been moved to named keys yet are skipped
+            if (followId == null || !followId.endsWith(":" + authorId)) {
+                continue;
+            }
+            String followerId = followId.substring(0, followId.length() - authorId.length() - 1);
+            for (Long activityId : activityIds) {
+                retracted.add(Key.create(FeedEntry.class, FeedEntry.makeId(followerId, activityId)));
+            }
+        }
+        return followers == BATCH_SIZE ? PageCursors.encode(iterator.getCursor()) : null;
+    }
+
+    private boolean following(String userId, String targetId) {
+        return ofy().load().type(FollowItem.class).id(FollowItem.makeId(userId, targetId)).now() != null;
+    }
+
+    /**
+     * @return: the ids of a comma separated list, an empty list if it is null, or null if one is invalid
+     */
+    private List<Long> parseIds(String ids) {
+        List<Long> parsed = new ArrayList<>();
+        if (ids == null) {
+            return parsed;
+        }
+        for (String id : ids.split(",", -1)) {
+            Long activityId = Utils.parseLong(id);
+            if (activityId == null) {
+                return null;
+            }
+            parsed.add(activityId);
+        }
+        return parsed;
+    }
+}
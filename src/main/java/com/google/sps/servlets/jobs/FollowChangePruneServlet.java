@@ -0,0 +1,108 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.graph.SocialGraphService;
+import com.google.sps.model.follow.FollowChange;
+import com.google.sps.util.PageCursors;
+import com.google.sps.util.Utils;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Background job that deletes the FollowChanges older than SocialGraphService.CHANGE_RETENTION_MILLIS,
+ * which every running instance has applied to its follow graph by then.
+ * The job runs daily (see cron.xml) and works in batches, each batch enqueues the next one with
+ * its cursor and the cutoff of the run.
+ */
+@WebServlet("/jobs/pruneFollowChanges")
+public class FollowChangePruneServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 500;
+    private static final String JOB_URL = "/jobs/pruneFollowChanges";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() starts the job, or continues it from the given cursor
+     * Only reachable by admins and cron (see web.xml)
+     * Returns error 400 if the cursor or the cutoff is invalid
+     * @param request: optional parameters cursor and before, the time in milliseconds before
+     *                 which changes are deleted, by default the start of the retention window
+     * @param response: returns the number of changes deleted, and the cursor and cutoff of the next batch
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue to run the next batch, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        Long before = Utils.parseLong(request.getParameter("before"));
+        if (request.getParameter("before") == null) {
+            before = System.currentTimeMillis() - SocialGraphService.CHANGE_RETENTION_MILLIS;
+        }
+        if (before == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Query<FollowChange> query = ofy().load().type(FollowChange.class)
+                .filter("timestamp <", before)
+                .limit(BATCH_SIZE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+        List<Key<FollowChange>> keys = new ArrayList<>();
+        QueryResultIterator<Key<FollowChange>> iterator = query.keys().iterator();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        ofy().delete().keys(keys).now();
+
+        String nextCursor = null;
+        if (keys.size() == BATCH_SIZE) {
+            nextCursor = PageCursors.encode(iterator.getCursor());
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(JOB_URL)
+                    .param("cursor", nextCursor)
+                    .param("before", String.valueOf(before)));
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("deleted", keys.size());
+        result.addProperty("cursor", nextCursor);
+        result.addProperty("before", before);
+        response.getWriter().println(gson.toJson(result));
+    }
+}
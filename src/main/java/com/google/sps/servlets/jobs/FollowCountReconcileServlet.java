@@ -0,0 +1,127 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.model.user.UserStats;
+import com.google.sps.util.FollowLookups;
+import com.google.sps.util.PageCursors;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Background job that recounts every user's followers and followings from the FollowItems
+ * and repairs their UserStats where they drifted, e.g. from follows written outside of
+ * FollowServlet. A user whose stats change while being recounted is skipped, as the count
+ * may already be out of date, and is picked up by the next run.
+ * The job works in batches, each batch enqueues the next one with its cursor.
+ */
+@WebServlet("/jobs/reconcileFollowCounts")
+public class FollowCountReconcileServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 50;
+    private static final String JOB_URL = "/jobs/reconcileFollowCounts";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() starts the job, or continues it from the given cursor
+     * Only reachable by admins (see web.xml)
+     * Returns error 400 if the cursor is invalid
+     * @param request: optional parameter cursor
+     * @param response: returns the number of users checked and repaired, and the cursor of the next batch
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue to run the next batch, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Query<UserObject> query = ofy().load().type(UserObject.class).limit(BATCH_SIZE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+
+        List<String> userIds = new ArrayList<>();
+        QueryResultIterator<Key<UserObject>> iterator = query.keys().iterator();
+        while (iterator.hasNext()) {
+            userIds.add(iterator.next().getName());
+        }
+
+        int repaired = 0;
+        for (String userId : userIds) {
+            if (repair(userId)) {
+                repaired++;
+            }
+        }
+
+        String nextCursor = null;
+        if (userIds.size() == BATCH_SIZE) {
+            nextCursor = PageCursors.encode(iterator.getCursor());
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(JOB_URL)
+                    .param("cursor", nextCursor));
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("checked", userIds.size());
+        result.addProperty("repaired", repaired);
+        result.addProperty("cursor", nextCursor);
+        response.getWriter().println(gson.toJson(result));
+    }
+
+    // Returns whether the user's stats were missing or wrong and have been replaced
+    private boolean repair(String userId) {
+        UserStats before = FollowLookups.loadExactStats(userId);
+        UserStats counted = FollowLookups.countStats(userId);
+        return ofy().transact((Work<Boolean>) () -> {
+            // Reads the follower shards too, so a follow committed meanwhile fails the transaction
+            UserStats current = FollowLookups.loadExactStats(userId);
+            if (!sameCounts(current, before) || sameCounts(current, counted)) {
+                return false;
+            }
+            FollowLookups.replaceStats(counted);
+            return true;
+        });
+    }
+
+    private static boolean sameCounts(UserStats a, UserStats b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getFollowerCount() == b.getFollowerCount() && a.getFollowingCount() == b.getFollowingCount();
+    }
+}
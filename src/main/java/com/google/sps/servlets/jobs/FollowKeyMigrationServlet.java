@@ -0,0 +1,119 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.util.PageCursors;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Background job that moves FollowItems saved with auto-allocated numeric ids to their
+ * "userId:targetId" keys. Duplicate follows of the same pair collapse into one entity.
+ * Objectify can't load the old entities into FollowItem, as its id is now a String,
+ * so they are read through the low-level Datastore API.
+ * Follows saved without a timestamp are given timestamp 0, as follow lists are ordered by it
+ * and the Datastore leaves entities without the property out of the ordered queries.
+ * The job works in batches, each batch enqueues the next one with its cursor.
+ */
+@WebServlet("/jobs/migrateFollows")
+public class FollowKeyMigrationServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 100;
+    private static final String JOB_URL = "/jobs/migrateFollows";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() starts the job, or continues it from the given cursor
+     * Only reachable by admins (see web.xml)
+     * Returns error 400 if the cursor is invalid
+     * @param request: optional parameter cursor
+     * @param response: returns the number of follows rewritten and the cursor of the next batch
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue to run the next batch, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        FetchOptions options = FetchOptions.Builder.withLimit(BATCH_SIZE);
+        if (startCursor != null) {
+            options.startCursor(startCursor);
+        }
+
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        QueryResultList<Entity> batch = datastore.prepare(new Query("FollowItem")).asQueryResultList(options);
+
+        List<FollowItem> migrated = new ArrayList<>();
+        List<Key> legacyKeys = new ArrayList<>();
+        for (Entity entity : batch) {
+            boolean keyedByName = entity.getKey().getName() != null;
+            if (keyedByName && entity.hasProperty("timestamp")) continue;
+
+            Object userId = entity.getProperty("userId");
+            Object targetId = entity.getProperty("targetId");
+            if (userId != null && targetId != null) {
+                // The follow time of older follows is unknown, so they are listed last
+                FollowItem followItem = new FollowItem(userId.toString(), targetId.toString());
+                followItem.setTimestamp(0);
+                migrated.add(followItem);
+            }
+            if (!keyedByName) {
+                legacyKeys.add(entity.getKey());
+            }
+        }
+
+        ofy().save().entities(migrated).now();
+        datastore.delete(legacyKeys);
+
+        String nextCursor = null;
+        if (batch.size() == BATCH_SIZE) {
+            nextCursor = PageCursors.encode(batch.getCursor());
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(JOB_URL)
+                    .param("cursor", nextCursor));
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("migrated", migrated.size());
+        result.addProperty("cursor", nextCursor);
+        response.getWriter().println(gson.toJson(result));
+    }
+}
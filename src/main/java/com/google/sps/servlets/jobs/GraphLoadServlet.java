@@ -0,0 +1,50 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.graph.SocialGraphService;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Task that builds the follow graph on the instance that serves it, if it doesn't have one yet.
+ * Enqueued by instances that didn't get a warmup request and can't build it in a background
+ * thread (see SocialGraphService).
+ */
+@WebServlet(SocialGraphService.LOAD_URL)
+public class GraphLoadServlet extends HttpServlet {
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() builds the follow graph of this instance if it isn't built yet
+     * Only reachable by admins (see web.xml)
+     * @param request: no parameters
+     * @param response: returns whether the graph was built by this request
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        load(response);
+    }
+
+    /**
+     * doPost() is called by the task queue, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        load(response);
+    }
+
+    private void load(HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        JsonObject result = new JsonObject();
+        result.addProperty("built", SocialGraphService.get().loadIfMissing());
+        response.getWriter().println(gson.toJson(result));
+    }
+}
@@ -0,0 +1,143 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.queue.ListItemPointer;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.util.FeedCache;
+import com.google.sps.util.GlobalActivityBuffer;
+import com.google.sps.util.PageCursors;
+import com.googlecode.objectify.Work;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Background job that writes the ListItemPointer of every list item, for items added before
+ * pointers existed, as list membership is now only checked through them. If a user's list
+ * holds the same media item more than once, the pointer goes to one of them and the others
+ * are deleted, as they could no longer be found or removed.
+ * The job works in batches, each batch enqueues the next one with its cursor.
+ */
+@WebServlet("/jobs/migrateListItems")
+public class ListItemPointerMigrationServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 100;
+    private static final String JOB_URL = "/jobs/migrateListItems";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() starts the job, or continues it from the given cursor
+     * Only reachable by admins (see web.xml)
+     * Returns error 400 if the cursor is invalid
+     * @param request: optional parameter cursor
+     * @param response: returns the number of pointers written and duplicates deleted, and the cursor of the next batch
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue to run the next batch, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Query<MediaListItem> query = ofy().load().type(MediaListItem.class).limit(BATCH_SIZE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+        List<MediaListItem> batch = new ArrayList<>();
+        QueryResultIterator<MediaListItem> iterator = query.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+        }
+
+        // Items that already have their pointer, e.g. on a rerun, only cost this one batch get
+        Set<String> pointerIds = new LinkedHashSet<>();
+        for (MediaListItem item : batch) {
+            pointerIds.add(new ListItemPointer(item).getId());
+        }
+        Map<String, ListItemPointer> pointers = ofy().load().type(ListItemPointer.class).ids(pointerIds);
+
+        int pointed = 0;
+        List<Long> duplicateIds = new ArrayList<>();
+        for (MediaListItem item : batch) {
+            ListItemPointer pointer = pointers.get(new ListItemPointer(item).getId());
+            if (pointer != null && pointer.getItemId().equals(item.getId())) {
+                continue;
+            }
+            Long pointedId = pointTo(item);
+            if (pointedId.equals(item.getId())) {
+                pointed++;
+            } else {
+                duplicateIds.add(item.getId());
+            }
+        }
+        ofy().delete().type(Activity.class).ids(duplicateIds).now();
+        FeedCache.get().remove(duplicateIds);
+        GlobalActivityBuffer.get().remove(duplicateIds);
+
+        String nextCursor = null;
+        if (batch.size() == BATCH_SIZE) {
+            nextCursor = PageCursors.encode(iterator.getCursor());
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(JOB_URL)
+                    .param("cursor", nextCursor));
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("pointed", pointed);
+        result.addProperty("duplicates", duplicateIds.size());
+        result.addProperty("cursor", nextCursor);
+        response.getWriter().println(gson.toJson(result));
+    }
+
+    /**
+     * Points the item's pointer at it in a transaction, unless it points at another item that exists
+     * @return: the id of the item the pointer points at
+     */
+    private Long pointTo(MediaListItem item) {
+        ListItemPointer itemPointer = new ListItemPointer(item);
+        return ofy().transact((Work<Long>) () -> {
+            ListItemPointer pointer = ofy().load().type(ListItemPointer.class).id(itemPointer.getId()).now();
+            if (pointer != null && !pointer.getItemId().equals(item.getId())
+                    && ofy().load().type(Activity.class).id(pointer.getItemId()).now() != null) {
+                return pointer.getItemId();
+            }
+            ofy().save().entity(itemPointer);
+            return item.getId();
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.review.ReviewStats;
+import com.google.sps.util.PageCursors;
+import com.google.sps.util.ReviewLookups;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Background job that recounts the ratings of every item with stored ReviewStats from its reviews
+ * and repairs the stats where they drifted, e.g. from a review posted while the stats were first
+ * being computed. Stats that change while being recounted are skipped, as the count may already
+ * be out of date, and are picked up by the next run.
+ * The job runs weekly (see cron.xml) and works in batches, each batch enqueues the next one with its cursor.
+ */
+@WebServlet("/jobs/reconcileReviewStats")
+public class ReviewStatsReconcileServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 50;
+    private static final String JOB_URL = "/jobs/reconcileReviewStats";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() starts the job, or continues it from the given cursor
+     * Only reachable by admins and cron (see web.xml)
+     * Returns error 400 if the cursor is invalid
+     * @param request: optional parameter cursor
+     * @param response: returns the number of items checked and repaired, and the cursor of the next batch
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue to run the next batch, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Query<ReviewStats> query = ofy().load().type(ReviewStats.class).limit(BATCH_SIZE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+
+        List<String> statsIds = new ArrayList<>();
+        QueryResultIterator<Key<ReviewStats>> iterator = query.keys().iterator();
+        while (iterator.hasNext()) {
+            statsIds.add(iterator.next().getName());
+        }
+
+        Map<String, ReviewStats> before = ofy().load().type(ReviewStats.class).ids(statsIds);
+        int repaired = 0;
+        for (String statsId : statsIds) {
+            if (repair(statsId, before.get(statsId))) {
+                repaired++;
+            }
+        }
+
+        String nextCursor = null;
+        if (statsIds.size() == BATCH_SIZE) {
+            nextCursor = PageCursors.encode(iterator.getCursor());
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(JOB_URL)
+                    .param("cursor", nextCursor));
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("checked", statsIds.size());
+        result.addProperty("repaired", repaired);
+        result.addProperty("cursor", nextCursor);
+        response.getWriter().println(gson.toJson(result));
+    }
+
+    // Returns whether the item's stats were wrong and have been replaced
+    private boolean repair(String statsId, ReviewStats before) {
+        if (before == null) {
+            // Deleted since the query ran
+            return false;
+        }
+        String[] parts = statsId.split(":", 2);
+        ReviewStats counted = ReviewLookups.countStats(parts[0], (parts.length > 1) ? parts[1] : "");
+        return ofy().transact((Work<Boolean>) () -> {
+            ReviewStats current = ofy().load().type(ReviewStats.class).id(statsId).now();
+            if (!sameCounts(current, before) || sameCounts(current, counted)) {
+                return false;
+            }
+            ofy().save().entity(counted);
+            return true;
+        });
+    }
+
+    private static boolean sameCounts(ReviewStats a, ReviewStats b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getRatingCount() == b.getRatingCount() && a.getRatingSum() == b.getRatingSum();
+    }
+}
@@ -0,0 +1,132 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.search.ReviewSearchIndex;
+import com.google.sps.util.PageCursors;
+import com.google.sps.util.Utils;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Background job that adds every review that isn't in the search index yet, e.g. reviews
+ * posted before search existed. ReviewServlet keeps the index up to date after that.
+ * The job works in batches, each batch enqueues the next one with its cursor.
+ * Given a reviewId, it instead repairs the index entry of that review, for when ReviewServlet
+ * failed to update the index (see ReviewSearchIndex.enqueueRepair()). An error response makes
+ * the task queue retry the repair.
+ */
+@WebServlet("/jobs/searchIndex")
+public class SearchIndexBuildServlet extends HttpServlet {
+
+    static final int BATCH_SIZE = 50;
+    private static final String JOB_URL = "/jobs/searchIndex";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() starts the job, or continues it from the given cursor
+     * Only reachable by admins (see web.xml)
+     * Returns error 400 if the cursor or the review id is invalid
+     * @param request: optional parameter cursor, or reviewId to repair a single review
+     * @param response: returns the number of reviews indexed and the cursor of the next batch,
+     *                  or the id of the repaired review
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    /**
+     * doPost() is called by the task queue to run the next batch, see doGet()
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        runBatch(request, response);
+    }
+
+    private void runBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        if (request.getParameter("reviewId") != null) {
+            repair(request, response);
+            return;
+        }
+
+        Cursor startCursor;
+        try {
+            startCursor = PageCursors.decode(request.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Query<ReviewObject> query = ofy().load().type(ReviewObject.class).limit(BATCH_SIZE);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+
+        ReviewSearchIndex index = ReviewSearchIndex.get();
+        // Once per batch, so contains() below answers from memory
+        index.refresh();
+        int scanned = 0;
+        int indexed = 0;
+        QueryResultIterator<ReviewObject> iterator = query.iterator();
+        while (iterator.hasNext()) {
+            ReviewObject review = iterator.next();
+            scanned++;
+            if (!index.contains(review.getId())) {
+                index.add(review);
+                indexed++;
+            }
+        }
+
+        String nextCursor = null;
+        if (scanned == BATCH_SIZE) {
+            nextCursor = PageCursors.encode(iterator.getCursor());
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(JOB_URL)
+                    .param("cursor", nextCursor));
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("indexed", indexed);
+        result.addProperty("cursor", nextCursor);
+        response.getWriter().println(gson.toJson(result));
+    }
+
+    // Indexes the review if it exists, or removes it from the index if it was deleted
+    private void repair(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Long reviewId = Utils.parseLong(request.getParameter("reviewId"));
+        if (reviewId == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        ReviewSearchIndex index = ReviewSearchIndex.get();
+        index.refresh();
+        ReviewObject review = ofy().load().type(ReviewObject.class).id(reviewId).now();
+        if (review != null) {
+            index.add(review);
+        } else {
+            index.remove(reviewId);
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("repaired", reviewId);
+        result.addProperty("indexed", review != null);
+        response.getWriter().println(gson.toJson(result));
+    }
+}
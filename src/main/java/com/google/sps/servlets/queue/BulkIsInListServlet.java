@@ -0,0 +1,88 @@
+package com.google.sps.servlets.queue;
+
+import com.google.gson.Gson;
+import com.google.sps.model.queue.IsInListResponseObject;
+import com.google.sps.model.queue.ListItemPointer;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.util.ListLookups;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.sps.util.Utils.ContentType.isType;
+
+@WebServlet("/list/bulk")
+public class BulkIsInListServlet extends HttpServlet {
+
+    static final int MAX_ITEMS = 100;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() returns whether each of many media items is in a user's queue and viewed lists at once,
+     * with a single batch get of their ListItemPointers, e.g. for the badges on a grid of search results
+     * Expects ?userId={user id}&items={type}:{id},{type}:{id},...
+     * Returns error 400 if userId is empty, or items is missing, has more than MAX_ITEMS entries
+     * or an entry is invalid
+     * @param request: expects userId and items
+     * @param response: returns a JSON list of isInQueue and isInViewed, in the order the items were given
+     * @throws IOException
+     */
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        String userId = request.getParameter("userId");
+        List<String[]> items = parseItems(request.getParameter("items"));
+        if (userId == null || userId.isEmpty() || items == null || items.size() > MAX_ITEMS) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Set<String> pointerIds = new LinkedHashSet<>();
+        for (String[] item : items) {
+            pointerIds.add(ListItemPointer.makeId(MediaListItem.TYPE_QUEUE, userId, item[0], item[1]));
+            pointerIds.add(ListItemPointer.makeId(MediaListItem.TYPE_VIEWED, userId, item[0], item[1]));
+        }
+        Set<String> inLists = ListLookups.loadMemberships(pointerIds);
+
+        List<IsInListResponseObject> results = new ArrayList<>();
+        for (String[] item : items) {
+            IsInListResponseObject result = new IsInListResponseObject();
+            result.setInQueue(inLists.contains(
+                    ListItemPointer.makeId(MediaListItem.TYPE_QUEUE, userId, item[0], item[1])));
+            result.setInViewed(inLists.contains(
+                    ListItemPointer.makeId(MediaListItem.TYPE_VIEWED, userId, item[0], item[1])));
+            results.add(result);
+        }
+
+        response.getWriter().println(gson.toJson(results));
+    }
+
+    /**
+     * Parses a comma separated list of {type}:{id} pairs
+     * @return: a list of {type, id} arrays, or null if the list is missing or invalid
+     */
+    private List<String[]> parseItems(String items) {
+        if (items == null || items.isEmpty()) {
+            return null;
+        }
+
+        List<String[]> result = new ArrayList<>();
+        for (String item : items.split(",", -1)) {
+            String[] parts = item.trim().split(":", 2);
+            if (parts.length != 2 || parts[1].isEmpty() || !isType(parts[0])) {
+                return null;
+            }
+            result.add(parts);
+        }
+        return result;
+    }
+}
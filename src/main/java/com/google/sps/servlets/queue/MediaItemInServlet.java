@@ -4,18 +4,23 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.sps.model.queue.IsInListResponseObject;
-import com.google.sps.model.queue.QueueListItemObject;
-import com.google.sps.model.queue.ViewedListItemObject;
+import com.google.sps.model.queue.ListItemPointer;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.util.ListLookups;
+import com.google.sps.util.Utils.ContentType;
 
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import static com.google.sps.util.HttpUtils.setInvalidGetResponse;
-import static com.google.sps.util.Utils.isCorrectListType;
-import static com.googlecode.objectify.ObjectifyService.ofy;
 
 @WebServlet("/list/isInList")
 public class MediaItemInServlet extends HttpServlet {
@@ -24,7 +29,10 @@ public class MediaItemInServlet extends HttpServlet {
     /**
      * doGet() returns a two field response that has a boolean if a media item is in a queue
      * or a previously watched list. useful for front end buttons
-     * @param request: two query params: userId and mediaId. If any of these are null, if throws a 400
+     * Both lists are checked with a single batch get of their ListItemPointers
+     * @param request: query params userId and mediaId, and optionally mediaType, without which
+     *                 books and movies with that id are both checked. If userId or mediaId is null,
+     *                 or mediaType is invalid, it throws a 400
      * @param response: a 200 showing isInQueue and isInWatched
      * @throws IOException
      */
@@ -34,28 +42,33 @@ public class MediaItemInServlet extends HttpServlet {
 
         String userId = request.getParameter("userId");
         String mediaId = request.getParameter("mediaId");
+        String mediaType = request.getParameter("mediaType");
 
-        if(userId == null || userId.isEmpty() || mediaId == null) {
+        if(userId == null || userId.isEmpty() || mediaId == null
+                || (mediaType != null && !ContentType.isType(mediaType))) {
             setInvalidGetResponse(response);
             return;
         }
-        listResponse.setInQueue(isInQueue(userId, mediaId));
-        listResponse.setInViewed(isInViewed(userId, mediaId));
+        List<String> mediaTypes = (mediaType != null)
+                ? Collections.singletonList(mediaType)
+                : Arrays.asList(ContentType.BOOK, ContentType.MOVIE);
 
-        response.getWriter().println(gson.toJsonTree(listResponse));
-    }
+        List<String> pointerIds = new ArrayList<>();
+        for (String type : mediaTypes) {
+            pointerIds.add(ListItemPointer.makeId(MediaListItem.TYPE_QUEUE, userId, type, mediaId));
+            pointerIds.add(ListItemPointer.makeId(MediaListItem.TYPE_VIEWED, userId, type, mediaId));
+        }
+        Set<String> inLists = ListLookups.loadMemberships(pointerIds);
 
-    private boolean isInQueue(String userId, String mediaId) {
-        return ofy().load().type(QueueListItemObject.class)
-                .filter("userId", userId)
-                .filter("mediaId", mediaId)
-                .first().now() != null;
-    }
+        for (String type : mediaTypes) {
+            if (inLists.contains(ListItemPointer.makeId(MediaListItem.TYPE_QUEUE, userId, type, mediaId))) {
+                listResponse.setInQueue(true);
+            }
+            if (inLists.contains(ListItemPointer.makeId(MediaListItem.TYPE_VIEWED, userId, type, mediaId))) {
+                listResponse.setInViewed(true);
+            }
+        }
 
-    private boolean isInViewed(String userId, String mediaId) {
-        return ofy().load().type(ViewedListItemObject.class)
-                .filter("userId", userId)
-                .filter("mediaId", mediaId)
-                .first().now() != null;
+        response.getWriter().println(gson.toJsonTree(listResponse));
     }
 }
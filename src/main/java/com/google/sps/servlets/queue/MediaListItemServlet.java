@@ -5,7 +5,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.appengine.api.users.User;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
-import com.google.common.collect.Iterables;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.sps.model.queue.MediaListItem;
@@ -13,15 +12,20 @@ import com.google.sps.model.queue.MediaListResponse;
 import com.google.sps.model.queue.QueueListItemObject;
 import com.google.sps.model.queue.ViewedListItemObject;
 import com.google.sps.model.user.UserObject;
+import com.google.sps.trending.TrendingTracker;
+import com.google.sps.util.FeedCache;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.GlobalActivityBuffer;
 import com.google.sps.util.HttpUtils;
+import com.google.sps.util.ListLookups;
 import com.google.sps.util.Utils;
-import com.googlecode.objectify.cmd.QueryKeys;
 
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 import static com.google.sps.util.HttpUtils.*;
@@ -119,21 +123,22 @@ public class MediaListItemServlet extends HttpServlet {
             return;
         }
 
-        // Check if the posted object already exists
-        if (Iterables.size(getMatchingListItems(
-                newListItem.getListType(), user,
-                newListItem.getMediaType(), newListItem.getMediaId())) != 0) {
-            sendInvalidPostResponse(HttpServletResponse.SC_CONFLICT, response, newResponse);
-            return;
-        }
-
+        boolean created;
         try {
-            // Entry being saved to the datastore instance
-            ofy().save().entity(newListItem).now();
+            // Entry being saved to the datastore instance, unless the media item is already in the list
+            created = ListLookups.insertIfAbsent(newListItem);
         } catch(Exception e) {
             sendInvalidPostResponse(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response, newResponse);
             return;
         }
+        if (!created) {
+            sendInvalidPostResponse(HttpServletResponse.SC_CONFLICT, response, newResponse);
+            return;
+        }
+        TrendingTracker.get().recordListItem(newListItem);
+        FeedInboxes.enqueueFanOut(newListItem);
+        FeedCache.get().insert(newListItem);
+        GlobalActivityBuffer.get().record(newListItem);
         newResponse.setSuccess(true);
         newResponse.setEntity(newListItem);
         response.getWriter().println(gson.toJsonTree(newResponse));
@@ -169,18 +174,18 @@ public class MediaListItemServlet extends HttpServlet {
             return;
         }
 
-        // gather keys related to list
-        QueryKeys<?> allKeys = getMatchingListItems(listType, user, mediaType, mediaId);
+        Long itemId = ListLookups.deleteIfPresent(listType, user.getUserId(), mediaType, mediaId);
 
-        // if no entities are found, we should throw a 404 to notate
+        // if the item is not in the list, we should throw a 404 to notate
         // nothing was found to delete
-        if(Iterables.size(allKeys) == 0) {
+        if(itemId == null) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
-        // delete from db, will delete ANY instance of that id from the user
-        // ie. if somehow multiple of the same movie / book get saved in the list
-        ofy().delete().keys(allKeys).now();
+        List<Long> itemIds = Collections.singletonList(itemId);
+        FeedCache.get().remove(itemIds);
+        FeedInboxes.enqueueRetraction(user.getUserId(), itemIds);
+        GlobalActivityBuffer.get().remove(itemIds);
     }
 
     /**
@@ -223,19 +228,4 @@ public class MediaListItemServlet extends HttpServlet {
             throw new NoSuchFieldException();
         }
     }
-
-    private QueryKeys<?> getMatchingListItems(String listType, User user, String mediaType, String mediaId) {
-        if(listType.equals("queue")) {
-            return ofy().load().type(QueueListItemObject.class)
-                    .filter("userId", user.getUserId())
-                    .filter("mediaType", mediaType)
-                    .filter("mediaId", mediaId).keys();
-        } else {
-            return ofy().load().type(ViewedListItemObject.class)
-                    .filter("userId", user.getUserId())
-                    .filter("mediaType", mediaType)
-                    .filter("mediaId", mediaId).keys();
-
-        }
-    }
 }
\ No newline at end of file
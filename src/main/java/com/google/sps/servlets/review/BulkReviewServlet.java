@@ -0,0 +1,92 @@
+package com.google.sps.servlets.review;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.sps.model.review.BulkReviewObject;
+import com.google.sps.model.review.ReviewPointer;
+import com.google.sps.model.review.ReviewStats;
+import com.google.sps.model.review.ReviewSummaryObject;
+import com.google.sps.util.ReviewLookups;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.sps.util.Utils.ContentType.isType;
+
+@WebServlet("/reviews/bulk")
+public class BulkReviewServlet extends HttpServlet {
+
+    static final int MAX_ITEMS = 100;
+
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+
+    /**
+     * doGet() returns the viewer's review and the aggregate rating of many media items at once,
+     * e.g. for "you reviewed this" and rating badges on a grid of search results
+     * Expects ?items={type}:{id},{type}:{id},... and optionally &userId={viewer id}
+     * Returns error 400 if items is missing, has more than MAX_ITEMS entries, or an entry is invalid
+     * @param request: expects items, and optionally userId
+     * @param response: returns a JSON list of BulkReviewObject, in the order the items were given
+     * @throws IOException
+     */
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        String userId = request.getParameter("userId");
+        List<String[]> items = parseItems(request.getParameter("items"));
+        if (items == null || items.size() > MAX_ITEMS) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Set<String> statsIds = new LinkedHashSet<>();
+        Set<String> pointerIds = new LinkedHashSet<>();
+        for (String[] item : items) {
+            statsIds.add(ReviewStats.makeId(item[0], item[1]));
+            if (userId != null && !userId.isEmpty()) {
+                pointerIds.add(ReviewPointer.makeId(userId, item[0], item[1]));
+            }
+        }
+
+        Map<String, ReviewStats> stats = ReviewLookups.loadStats(statsIds);
+        Map<String, ReviewSummaryObject> viewerReviews = ReviewLookups.loadSummariesByPointer(pointerIds);
+
+        List<BulkReviewObject> results = new ArrayList<>();
+        for (String[] item : items) {
+            results.add(new BulkReviewObject(item[0], item[1],
+                    viewerReviews.get(ReviewPointer.makeId(userId, item[0], item[1])),
+                    stats.get(ReviewStats.makeId(item[0], item[1]))));
+        }
+
+        response.getWriter().println(gson.toJson(results));
+    }
+
+    /**
+     * Parses a comma separated list of {type}:{id} pairs
+     * @return: a list of {type, id} arrays, or null if the list is missing or invalid
+     */
+    private List<String[]> parseItems(String items) {
+        if (items == null || items.isEmpty()) {
+            return null;
+        }
+
+        List<String[]> result = new ArrayList<>();
+        for (String item : items.split(",")) {
+            String[] parts = item.trim().split(":", 2);
+            if (parts.length != 2 || parts[1].isEmpty() || !isType(parts[0])) {
+                return null;
+            }
+            result.add(parts);
+        }
+        return result;
+    }
+}
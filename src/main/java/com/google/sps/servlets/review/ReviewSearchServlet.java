@@ -0,0 +1,69 @@
+package com.google.sps.servlets.review;
+
+import com.google.gson.Gson;
+import com.google.sps.model.review.ReviewSummaryObject;
+import com.google.sps.model.search.SearchResultsObject;
+import com.google.sps.search.ReviewSearchIndex;
+import com.google.sps.util.Metrics;
+import com.google.sps.util.ReviewLookups;
+import com.google.sps.util.Utils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@WebServlet("/reviews/search")
+public class ReviewSearchServlet extends HttpServlet {
+
+    private static final int RESULTS_PER_PAGE = 10;
+    private static final String LATENCY_METRIC = "reviews.search";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() searches review titles and bodies, best match first
+     * Expects ?query={text} and optionally &pageNumber={page}, starting at 1
+     * Returns error 400 if the query is missing or empty, or the page number is invalid
+     * @param request: expects query, and optionally pageNumber
+     * @param response: returns a SearchResultsObject of ReviewSummaryObject
+     * @throws IOException
+     */
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+        long start = System.nanoTime();
+
+        String query = request.getParameter("query");
+        Integer pageNumber = Utils.parseInt(request.getParameter("pageNumber"));
+        if (request.getParameter("pageNumber") == null) {
+            pageNumber = 1;
+        }
+        if (query == null || query.trim().isEmpty() || pageNumber == null || pageNumber < 1) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        ReviewSearchIndex.Hits hits = ReviewSearchIndex.get()
+                .search(query, (pageNumber - 1) * RESULTS_PER_PAGE, RESULTS_PER_PAGE);
+
+        // Read from the summaries so the review bodies are never loaded
+        Map<Long, ReviewSummaryObject> summaries = ReviewLookups.loadSummaries(hits.getReviewIds());
+
+        List<ReviewSummaryObject> results = new ArrayList<>();
+        for (Long reviewId : hits.getReviewIds()) {
+            if (summaries.containsKey(reviewId)) {
+                results.add(summaries.get(reviewId));
+            }
+        }
+
+        int totalPages = (hits.getTotal() + RESULTS_PER_PAGE - 1) / RESULTS_PER_PAGE;
+        double tookMs = Metrics.recordLatency(LATENCY_METRIC, start);
+        response.getWriter().println(gson.toJson(
+                new SearchResultsObject<>(results, hits.getTotal(), totalPages, pageNumber, tookMs)));
+    }
+}
@@ -12,11 +12,28 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.sps.model.results.CursorResultsObject;
 import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.review.ReviewSummaryObject;
 import com.google.sps.model.user.UserObject;
+import com.google.sps.search.ReviewSearchIndex;
+import com.google.sps.trending.TrendingTracker;
+import com.google.sps.util.PageCursors;
+import com.google.sps.util.FeedCache;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.GlobalActivityBuffer;
+import com.google.sps.util.ReviewLookups;
 import com.google.sps.util.Utils;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
 import com.googlecode.objectify.cmd.QueryKeys;
 
 import static com.google.sps.util.Utils.ContentType.isType;
@@ -26,6 +43,8 @@ import static com.googlecode.objectify.ObjectifyService.ofy;
 @WebServlet("/reviews")
 public class ReviewServlet extends HttpServlet {
 
+    private static final Logger logger = Logger.getLogger(ReviewServlet.class.getName());
+
     private final Gson gson = new Gson();
     private final ObjectMapper mapper = new ObjectMapper();
     private final int REVIEW_LIMIT = 10;
@@ -33,13 +52,20 @@ public class ReviewServlet extends HttpServlet {
     /**
      * doGet() returns details of the reviews by a given user, on a given media item, or of a particular review
      * Expects ?contentType={book | movie}&contentId={id}  OR ?userId={id} OR all three of these parameters
+     * Lists are paged with either pageNumber or cursor. If cursor is given (empty for the first page),
+     * the response is a CursorResultsObject whose cursor should be passed back to get the next page
+     * If summary=1 is given, lists contain ReviewSummaryObjects with an excerpt instead of the full body,
+     * read without loading the full reviews
+     * A single full review can be fetched with ?id={reviewId}
      * Returns error 400 if the query parameters are not in either of these formats
      * Returns error 400 if a parameter is empty or invalid (e.g. "bok")
      * Returns error 404 if the given user is not found
      * Returns error 404 if a specific review is requested but not found
+     * Returns error 404 if a review id is requested but not found
      * Simply returns an empty list if the given media ID does not exist to avoid API call
-     * @param request: expects contentType&contentId OR userId
-     * @param response: returns a JSON list of ReviewObject
+     * @param request: expects contentType&contentId OR userId, and pageNumber or cursor for lists, OR id
+     * @param response: returns a JSON list of ReviewObject (or ReviewSummaryObject),
+     *                  or a CursorResultsObject in cursor mode
      * @throws IOException
      */
     @Override
@@ -50,19 +76,26 @@ public class ReviewServlet extends HttpServlet {
         String contentType = request.getParameter("contentType");
         String contentId = request.getParameter("contentId");
         Integer pageNumber = Utils.parseInt(request.getParameter("pageNumber"));
+        String cursor = request.getParameter("cursor");
+        boolean isPaged = pageNumber != null || cursor != null;
+        boolean summary = "1".equals(request.getParameter("summary"));
+        String reviewId = request.getParameter("id");
 
         // to correctly translate pages, we need to subtract by 1 to get starting position
         if(pageNumber != null) {
             pageNumber--;
         }
-        if (userId != null && contentType != null && contentId != null) {
+        if (reviewId != null) {
+            sendReviewById(reviewId, response);
+        }
+        else if (userId != null && contentType != null && contentId != null) {
             sendSpecificReview(userId, contentType, contentId, response);
         }
-        else if (userId != null && pageNumber != null && contentType == null && contentId == null) {
-            sendUserReviews(userId, pageNumber, response);
+        else if (userId != null && isPaged && contentType == null && contentId == null) {
+            sendUserReviews(userId, pageNumber, cursor, summary, response);
         }
-        else if (userId == null && pageNumber != null && contentType != null && contentId != null) {
-            sendContentReviews(contentType, contentId, pageNumber, response);
+        else if (userId == null && isPaged && contentType != null && contentId != null) {
+            sendContentReviews(contentType, contentId, pageNumber, cursor, summary, response);
         }
         else {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST);
@@ -127,6 +160,12 @@ public class ReviewServlet extends HttpServlet {
         }
 
         ofy().save().entity(reviewObject).now();
+        ReviewLookups.recordReview(reviewObject);
+        updateSearchIndex(reviewObject, true);
+        TrendingTracker.get().recordReview(reviewObject);
+        FeedInboxes.enqueueFanOut(reviewObject);
+        FeedCache.get().insert(reviewObject);
+        GlobalActivityBuffer.get().record(reviewObject);
 
         try {
             response.getWriter().println(gson.toJsonTree(reviewObject));
@@ -173,17 +212,50 @@ public class ReviewServlet extends HttpServlet {
 
     private void tryDelete(String userId, String contentType, String contentId, HttpServletResponse response)
             throws IOException {
-        QueryKeys<ReviewObject> keys =  getMatchingReviews(userId, contentType, contentId);
+        List<ReviewObject> reviews = ofy().load().type(ReviewObject.class)
+                .filter("userId", userId)
+                .filter("contentType", contentType)
+                .filter("contentId", contentId)
+                .list();
 
-        if(Iterables.size(keys) == 0) {
+        if(reviews.isEmpty()) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
         else {
-            ofy().delete().keys(keys).now();
+            ofy().delete().entities(reviews).now();
+            List<Long> reviewIds = new ArrayList<>();
+            for (ReviewObject review : reviews) {
+                ReviewLookups.removeReview(review);
+                updateSearchIndex(review, false);
+                reviewIds.add(review.getId());
+            }
+            FeedCache.get().remove(reviewIds);
+            FeedInboxes.enqueueRetraction(userId, reviewIds);
+            GlobalActivityBuffer.get().remove(reviewIds);
             response.sendError(HttpServletResponse.SC_OK);
         }
     }
 
+    /**
+     * Adds or removes a review from the search index
+     * A failure here shouldn't fail the request, as the review itself is already saved or deleted,
+     * so it is logged and the review's index entry is repaired by a task instead
+     */
+    private void updateSearchIndex(ReviewObject review, boolean added) {
+        try {
+            if (added) {
+                ReviewSearchIndex.get().add(review);
+            } else if (!ReviewSearchIndex.get().remove(review.getId())) {
+                // It may have been indexed too recently for its segment to be listed
+                ReviewSearchIndex.enqueueDelayedRepair(review.getId());
+            }
+        }
+        catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not update the search index for review " + review.getId(), e);
+            ReviewSearchIndex.enqueueRepair(review.getId());
+        }
+    }
+
     private QueryKeys<ReviewObject> getMatchingReviews(String userId, String contentType, String contentId) {
         return ofy().load().type(ReviewObject.class)
                 .filter("userId", userId)
@@ -191,7 +263,8 @@ public class ReviewServlet extends HttpServlet {
                 .filter("contentId", contentId).keys();
     }
 
-    private void sendUserReviews(String userId, Integer pageNumber,HttpServletResponse response) throws IOException {
+    private void sendUserReviews(String userId, Integer pageNumber, String cursor,
+                                 boolean summary, HttpServletResponse response) throws IOException {
         if (userId.equals("")) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST);
         }
@@ -199,30 +272,122 @@ public class ReviewServlet extends HttpServlet {
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
         else {
-            List<ReviewObject> reviews = ofy().load().type(ReviewObject.class)
+            Query<ReviewObject> query = ofy().load().type(ReviewObject.class)
                     .filter("userId", userId)
-                    .limit(REVIEW_LIMIT)
-                    .offset(pageNumber * REVIEW_LIMIT)
-                    .order("-timestamp")
-                    .list();
-            response.getWriter().println(gson.toJson(reviews));
+                    .order("-timestamp");
+            sendReviewPage(query, "reviews:user:" + userId, pageNumber, cursor, summary, response);
         }
     }
 
-    private void sendContentReviews(String contentType, String contentId,
-                                    Integer pageNumber, HttpServletResponse response) throws IOException {
+    private void sendContentReviews(String contentType, String contentId, Integer pageNumber,
+                                    String cursor, boolean summary,
+                                    HttpServletResponse response) throws IOException {
         if (contentId.equals("") || !isType(contentType)) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST);
         }
         else {
-            List<ReviewObject> reviews = ofy().load().type(ReviewObject.class)
+            Query<ReviewObject> query = ofy().load().type(ReviewObject.class)
                     .filter("contentType", contentType)
                     .filter("contentId", contentId)
-                    .limit(REVIEW_LIMIT)
-                    .offset(pageNumber * REVIEW_LIMIT)
-                    .order("-timestamp")
-                    .list();
-            response.getWriter().println(gson.toJson(reviews));
+                    .order("-timestamp");
+            sendReviewPage(query, "reviews:content:" + contentType + ":" + contentId,
+                    pageNumber, cursor, summary, response);
+        }
+    }
+
+    /**
+     * Sends a single page of the given review query
+     * If a cursor token is given, the page starts there and a CursorResultsObject is sent
+     * Otherwise the page number is used, starting from a remembered cursor when one is known,
+     * so paging through with "load more" never has to skip over earlier pages
+     * Returns error 400 if the cursor token is invalid
+     * @param query: the ordered review query to page through
+     * @param queryKey: uniquely identifies the query, used to remember page cursors
+     * @param pageNumber: zero-indexed page number, only used if cursor is null
+     * @param cursor: opaque token from a previous response, empty for the first page
+     * @param summary: whether to send ReviewSummaryObjects instead of full reviews
+     * @param response: returns the page of reviews
+     * @throws IOException
+     */
+    private void sendReviewPage(Query<ReviewObject> query, String queryKey, Integer pageNumber,
+                                String cursor, boolean summary,
+                                HttpServletResponse response) throws IOException {
+        Cursor startCursor;
+        try {
+            startCursor = (cursor != null)
+                    ? PageCursors.decode(cursor)
+                    : PageCursors.lookup(queryKey, pageNumber);
+        }
+        catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        query = query.limit(REVIEW_LIMIT);
+        if (startCursor != null) {
+            query = query.startAt(startCursor);
+        }
+        else if (cursor == null) {
+            // Nothing remembered for this page (e.g. it was requested directly), fall back to an offset
+            query = query.offset(pageNumber * REVIEW_LIMIT);
+        }
+
+        List<?> results;
+        Cursor nextCursor;
+        if (summary) {
+            // Keys only, the page is then read from the summaries so the bodies are never loaded
+            List<Long> reviewIds = new ArrayList<>();
+            QueryResultIterator<Key<ReviewObject>> iterator = query.keys().iterator();
+            while (iterator.hasNext()) {
+                reviewIds.add(iterator.next().getId());
+            }
+            nextCursor = (reviewIds.size() == REVIEW_LIMIT) ? iterator.getCursor() : null;
+
+            Map<Long, ReviewSummaryObject> summaries = ReviewLookups.loadSummaries(reviewIds);
+            List<ReviewSummaryObject> page = new ArrayList<>();
+            for (Long reviewId : reviewIds) {
+                if (summaries.containsKey(reviewId)) {
+                    page.add(summaries.get(reviewId));
+                }
+            }
+            results = page;
+        }
+        else {
+            List<ReviewObject> reviews = new ArrayList<>();
+            QueryResultIterator<ReviewObject> iterator = query.iterator();
+            while (iterator.hasNext()) {
+                reviews.add(iterator.next());
+            }
+            nextCursor = (reviews.size() == REVIEW_LIMIT) ? iterator.getCursor() : null;
+            results = reviews;
+        }
+
+        if (cursor != null) {
+            String nextToken = PageCursors.encode(nextCursor);
+            response.getWriter().println(gson.toJson(new CursorResultsObject<>(results, nextToken)));
+        }
+        else {
+            PageCursors.remember(queryKey, pageNumber + 1, nextCursor);
+            response.getWriter().println(gson.toJson(results));
+        }
+    }
+
+    private void sendReviewById(String reviewId, HttpServletResponse response) throws IOException {
+        Long id;
+        try {
+            id = Long.parseLong(reviewId);
+        }
+        catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        ReviewObject review = ofy().load().type(ReviewObject.class).id(id).now();
+        if (review == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+        else {
+            response.getWriter().println(gson.toJson(review));
         }
     }
 
@@ -0,0 +1,48 @@
+package com.google.sps.servlets.trending;
+
+import com.google.gson.Gson;
+import com.google.sps.trending.TrendingTracker;
+import com.google.sps.util.Utils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static com.google.sps.util.Utils.ContentType.isType;
+
+@WebServlet("/trending")
+public class TrendingServlet extends HttpServlet {
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * doGet() returns the media items of a type that were reviewed or added to lists the most recently,
+     * with recent activity counting more than older activity
+     * Expects ?contentType={book | movie} and optionally &limit={count}, at most TrendingTracker.MAX_ITEMS
+     * Returns error 400 if the content type is invalid or the limit is not a positive number
+     * @param request: expects contentType, and optionally limit
+     * @param response: returns a JSON list of TrendingItem, best first
+     * @throws IOException
+     */
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json; charset=utf-8");
+
+        String contentType = request.getParameter("contentType");
+        Integer limit = Utils.parseInt(request.getParameter("limit"));
+        if (request.getParameter("limit") == null) {
+            limit = DEFAULT_LIMIT;
+        }
+        if (contentType == null || !isType(contentType) || limit == null || limit < 1) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        int count = Math.min(limit, TrendingTracker.MAX_ITEMS);
+        response.getWriter().println(gson.toJson(TrendingTracker.get().getTrending(contentType, count)));
+    }
+}
@@ -0,0 +1,199 @@
+package com.google.sps.trending;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The scores of the media items of one content type.
+ *
+ * Items are kept in a hash map for lookups and in a min-heap on score, so that once
+ * MAX_TRACKED items are tracked the lowest scoring one can be evicted in O(log n).
+ * The TOP_K best items are kept as an immutable sorted snapshot, which is maintained on
+ * every increment in O(k) and can be read without locking.
+ *
+ * Scores only ever increase, as they are relative to a fixed landmark time (see TrendingTracker),
+ * which is what makes keeping the ranking up to date incrementally possible.
+ */
+class TrendingBoard {
+
+    static final int MAX_TRACKED = 1000;
+    static final int TOP_K = 20;
+
+    private static final Comparator<Entry> BY_SCORE = (a, b) -> {
+        int byScore = Double.compare(b.score, a.score);
+        return (byScore != 0) ? byScore : a.contentId.compareTo(b.contentId);
+    };
+
+    /**
+     * A tracked media item. Entries in the top snapshot are copies and never change.
+     */
+    static class Entry {
+        final String contentType;
+        final String contentId;
+        String title;
+        String artUrl;
+        double score;
+        private int heapIndex = -1;
+
+        Entry(String contentType, String contentId, String title, String artUrl, double score) {
+            this.contentType = contentType;
+            this.contentId = contentId;
+            this.title = title;
+            this.artUrl = artUrl;
+            this.score = score;
+        }
+
+        private Entry copy() {
+            return new Entry(contentType, contentId, title, artUrl, score);
+        }
+    }
+
+    private final String contentType;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<Entry> heap = new ArrayList<>();
+    private volatile List<Entry> top = Collections.emptyList();
+
+    TrendingBoard(String contentType) {
+        this.contentType = contentType;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Adds to the score of an item, tracking it if it isn't tracked yet
+     * @param contentId: id of the media item
+     * @param title: title of the media item, or null to keep the known one
+     * @param artUrl: art of the media item, or null to keep the known one
+     * @param delta: amount to add to the score, relative to the landmark
+     */
+    void add(String contentId, String title, String artUrl, double delta) {
+        Entry entry = entries.get(contentId);
+        if (entry == null) {
+            if (entries.size() >= MAX_TRACKED) {
+                // Not worth evicting anything for an item that would be the lowest anyway
+                if (heap.get(0).score >= delta) return;
+                evictLowest();
+            }
+            entry = new Entry(contentType, contentId, title, artUrl, delta);
+            entries.put(contentId, entry);
+            entry.heapIndex = heap.size();
+            heap.add(entry);
+            siftUp(entry.heapIndex);
+        }
+        else {
+            entry.score += delta;
+            if (title != null) entry.title = title;
+            if (artUrl != null) entry.artUrl = artUrl;
+            siftDown(entry.heapIndex);
+        }
+        offerTop(entry);
+    }
+
+    /**
+     * @return: the best TOP_K items, best first. The list never changes once returned.
+     */
+    List<Entry> getTop() {
+        return top;
+    }
+
+    Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    // Updates the top snapshot after the score of entry increased
+    private void offerTop(Entry entry) {
+        List<Entry> current = top;
+        boolean listed = false;
+        for (Entry ranked : current) {
+            if (ranked.contentId.equals(entry.contentId)) {
+                listed = true;
+                break;
+            }
+        }
+        if (!listed && current.size() >= TOP_K && BY_SCORE.compare(entry, current.get(current.size() - 1)) > 0) {
+            return;
+        }
+
+        List<Entry> next = new ArrayList<>(current.size() + 1);
+        for (Entry ranked : current) {
+            if (!ranked.contentId.equals(entry.contentId)) {
+                next.add(ranked);
+            }
+        }
+        next.add(entry.copy());
+        next.sort(BY_SCORE);
+        if (next.size() > TOP_K) {
+            next.remove(TOP_K);
+        }
+        top = Collections.unmodifiableList(next);
+    }
+
+    private void evictLowest() {
+        Entry lowest = heap.get(0);
+        Entry last = heap.remove(heap.size() - 1);
+        if (last != lowest) {
+            last.heapIndex = 0;
+            heap.set(0, last);
+            siftDown(0);
+        }
+        entries.remove(lowest.contentId);
+
+        // Only possible when scores tie, as the board holds more than TOP_K items
+        for (Entry ranked : top) {
+            if (ranked.contentId.equals(lowest.contentId)) {
+                rebuildTop();
+                return;
+            }
+        }
+    }
+
+    private void rebuildTop() {
+        List<Entry> all = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            all.add(entry.copy());
+        }
+        all.sort(BY_SCORE);
+        top = Collections.unmodifiableList(new ArrayList<>(all.subList(0, Math.min(TOP_K, all.size()))));
+    }
+
+    private void siftUp(int index) {
+        Entry entry = heap.get(index);
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            Entry parentEntry = heap.get(parent);
+            if (parentEntry.score <= entry.score) break;
+            place(parentEntry, index);
+            index = parent;
+        }
+        place(entry, index);
+    }
+
+    private void siftDown(int index) {
+        Entry entry = heap.get(index);
+        int size = heap.size();
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap.get(child + 1).score < heap.get(child).score) {
+                child++;
+            }
+            Entry childEntry = heap.get(child);
+            if (entry.score <= childEntry.score) break;
+            place(childEntry, index);
+            index = child;
+        }
+        place(entry, index);
+    }
+
+    private void place(Entry entry, int index) {
+        heap.set(index, entry);
+        entry.heapIndex = index;
+    }
+}
@@ -0,0 +1,349 @@
+package com.google.sps.trending;
+
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.trending.TrendingCheckpoint;
+import com.google.sps.model.trending.TrendingItem;
+import com.google.sps.util.Utils.ContentType;
+import com.googlecode.objectify.Work;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Keeps an exponentially time-decayed score per media item from reviews and list additions,
+ * for the "trending this week" leaderboard.
+ *
+ * Rather than decaying every score as time passes, an event at time t adds
+ * weight * 2^((t - landmark) / HALF_LIFE) to the score of its item, and scores are only decayed
+ * when they are read. This ranks items exactly as decaying all scores would, while an update only
+ * touches one item, so each content type keeps its top items up to date incrementally
+ * (see TrendingBoard) and reading them never scans anything.
+ *
+ * Each instance keeps the boards in memory. Every SYNC_INTERVAL_MILLIS it merges the scores it
+ * recorded since into the TrendingCheckpoint in a transaction and loads the merged boards back,
+ * so instances converge on the same leaderboard and a restart loses at most one interval of events.
+ * The transaction runs outside of the lock on the boards, so a slow commit doesn't hold up the
+ * requests recording events meanwhile.
+ */
+public class TrendingTracker {
+
+    static final long HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(3);
+    static final long SYNC_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    public static final double REVIEW_WEIGHT = 3;
+    public static final double VIEWED_WEIGHT = 2;
+    public static final double QUEUE_WEIGHT = 1;
+
+    private static final double DECAY_RATE = Math.log(2) / HALF_LIFE_MILLIS;
+
+    // Scores grow by 2^(age / HALF_LIFE) past the landmark, so it is moved forward well before they overflow
+    private static final long REBASE_AFTER_MILLIS = HALF_LIFE_MILLIS * 64;
+
+    // Items whose decayed score falls below this are dropped from the checkpoint
+    private static final double MIN_SCORE = 0.01;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_TEXT_LENGTH = 500;
+    private static final String CHECKPOINT_ID = "global";
+
+    public static final int MAX_ITEMS = TrendingBoard.TOP_K;
+
+    private static final Logger logger = Logger.getLogger(TrendingTracker.class.getName());
+    private static final TrendingTracker instance = new TrendingTracker();
+
+    /**
+     * The boards and the landmark their scores are relative to, replaced together during a sync
+     */
+    private static class State {
+        final Map<String, TrendingBoard> boards;
+        final long landmark;
+
+        State(Map<String, TrendingBoard> boards, long landmark) {
+            this.boards = boards;
+            this.landmark = landmark;
+        }
+    }
+
+    private volatile State state = new State(emptyBoards(), System.currentTimeMillis());
+    private long checkpointVersion = -1;
+    private volatile long lastSync;
+    // Whether a request is writing the checkpoint, guarded by the tracker's lock
+    private boolean syncing;
+
+    // Deltas recorded since the last sync, relative to the current landmark
+    private Map<String, TrendingBoard> pending = emptyBoards();
+
+    private TrendingTracker() {}
+
+    public static TrendingTracker get() {
+        return instance;
+    }
+
+    public void recordReview(ReviewObject review) {
+        record(review.getContentType(), review.getContentId(), review.getContentTitle(),
+                review.getArtUrl(), REVIEW_WEIGHT, review.getTimestamp());
+    }
+
+    public void recordListItem(MediaListItem item) {
+        double weight = MediaListItem.TYPE_VIEWED.equals(item.getListType()) ? VIEWED_WEIGHT : QUEUE_WEIGHT;
+        record(item.getMediaType(), item.getMediaId(), item.getTitle(),
+                item.getArtUrl(), weight, item.getTimestamp());
+    }
+
+    /**
+     * Adds an event to the score of a media item, ignored if the content type is unknown
+     * @param contentType: type of the media item, book or movie
+     * @param contentId: id of the media item
+     * @param title: title to show for the media item
+     * @param artUrl: art to show for the media item
+     * @param weight: how much the event counts for at the time it happened
+     * @param timeMillis: when the event happened
+     */
+    public void record(String contentType, String contentId, String title, String artUrl,
+                       double weight, long timeMillis) {
+        if (!ContentType.isType(contentType) || contentId == null) {
+            return;
+        }
+        syncIfStale();
+
+        synchronized (this) {
+            double delta = weight * Math.exp(DECAY_RATE * (timeMillis - state.landmark));
+            state.boards.get(contentType).add(contentId, title, artUrl, delta);
+            pending.get(contentType).add(contentId, title, artUrl, delta);
+        }
+    }
+
+    /**
+     * Returns the items of a content type with the highest current score. Apart from a sync
+     * once every SYNC_INTERVAL_MILLIS this only reads a precomputed list.
+     * @param contentType: book or movie
+     * @param limit: maximum number of items, at most MAX_ITEMS are kept
+     * @return: the trending items, best first, or an empty list if the content type is unknown
+     */
+    public List<TrendingItem> getTrending(String contentType, int limit) {
+        if (!ContentType.isType(contentType)) {
+            return Collections.emptyList();
+        }
+        if (System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MILLIS) {
+            syncIfStale();
+        }
+
+        State current = state;
+        List<TrendingBoard.Entry> top = current.boards.get(contentType).getTop();
+        double decay = Math.exp(-DECAY_RATE * (System.currentTimeMillis() - current.landmark));
+
+        List<TrendingItem> items = new ArrayList<>();
+        for (int i = 0; i < top.size() && i < limit; i++) {
+            TrendingBoard.Entry entry = top.get(i);
+            items.add(new TrendingItem(entry.contentType, entry.contentId,
+                    entry.title, entry.artUrl, entry.score * decay));
+        }
+        return items;
+    }
+
+    /**
+     * Merges the pending deltas into the checkpoint and replaces the boards with the result, if
+     * SYNC_INTERVAL_MILLIS passed since the last sync and no other request is syncing.
+     * The deltas are taken under the lock and the checkpoint is written after releasing it, so
+     * events keep being recorded meanwhile. If the Datastore can't be reached the deltas are kept
+     * until the next sync.
+     */
+    private void syncIfStale() {
+        long now = System.currentTimeMillis();
+        Map<String, TrendingBoard> flushed;
+        long flushedLandmark;
+        synchronized (this) {
+            if (syncing || now - lastSync < SYNC_INTERVAL_MILLIS) {
+                return;
+            }
+            syncing = true;
+            lastSync = now;
+            flushed = pending;
+            flushedLandmark = state.landmark;
+            pending = emptyBoards();
+        }
+
+        TrendingCheckpoint checkpoint = null;
+        try {
+            checkpoint = writeCheckpoint(flushed, flushedLandmark, now);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not checkpoint the trending scores, retrying at the next sync", e);
+        }
+
+        synchronized (this) {
+            syncing = false;
+            if (checkpoint == null) {
+                // The landmark only moves in a sync, so the deltas are still relative to it
+                addAll(pending, flushed, 1);
+                return;
+            }
+            if (checkpoint.getVersion() == checkpointVersion) {
+                return;
+            }
+
+            State loaded = new State(fromBytes(checkpoint.getData()), checkpoint.getLandmark());
+            // Events recorded while the checkpoint was written aren't in it yet
+            double rescale = Math.exp(DECAY_RATE * (flushedLandmark - loaded.landmark));
+            addAll(loaded.boards, pending, rescale);
+            if (loaded.landmark != flushedLandmark) {
+                Map<String, TrendingBoard> rebased = emptyBoards();
+                addAll(rebased, pending, rescale);
+                pending = rebased;
+            }
+            state = loaded;
+            checkpointVersion = checkpoint.getVersion();
+        }
+    }
+
+    /**
+     * Merges deltas into the checkpoint in a transaction, moving its landmark forward if it is due
+     * @param flushed: the deltas, relative to flushedLandmark
+     * @return: the checkpoint as saved, or as read if there was nothing to write
+     */
+    private static TrendingCheckpoint writeCheckpoint(Map<String, TrendingBoard> flushed, long flushedLandmark,
+                                                      long now) {
+        return ofy().transact((Work<TrendingCheckpoint>) () -> {
+            TrendingCheckpoint saved = ofy().load().type(TrendingCheckpoint.class).id(CHECKPOINT_ID).now();
+            if (saved == null) {
+                saved = new TrendingCheckpoint(CHECKPOINT_ID, flushedLandmark);
+            }
+            if (isEmpty(flushed) && now - saved.getLandmark() < REBASE_AFTER_MILLIS) {
+                return saved;
+            }
+
+            Map<String, TrendingBoard> merged = fromBytes(saved.getData());
+            addAll(merged, flushed, Math.exp(DECAY_RATE * (flushedLandmark - saved.getLandmark())));
+
+            long newLandmark = saved.getLandmark();
+            if (now - newLandmark >= REBASE_AFTER_MILLIS) {
+                newLandmark = now;
+            }
+            double rescale = Math.exp(-DECAY_RATE * (newLandmark - saved.getLandmark()));
+            double minScore = MIN_SCORE * Math.exp(DECAY_RATE * (now - newLandmark));
+
+            saved.setLandmark(newLandmark);
+            saved.setData(toBytes(merged, rescale, minScore));
+            saved.setVersion(saved.getVersion() + 1);
+            ofy().save().entity(saved);
+            return saved;
+        });
+    }
+
+    private static Map<String, TrendingBoard> emptyBoards() {
+        Map<String, TrendingBoard> boards = new HashMap<>();
+        boards.put(ContentType.BOOK, new TrendingBoard(ContentType.BOOK));
+        boards.put(ContentType.MOVIE, new TrendingBoard(ContentType.MOVIE));
+        return boards;
+    }
+
+    private static boolean isEmpty(Map<String, TrendingBoard> boards) {
+        for (TrendingBoard board : boards.values()) {
+            if (!board.getEntries().isEmpty()) return false;
+        }
+        return true;
+    }
+
+    private static void addAll(Map<String, TrendingBoard> target, Map<String, TrendingBoard> source, double scale) {
+        for (TrendingBoard board : source.values()) {
+            for (TrendingBoard.Entry entry : board.getEntries()) {
+                target.get(board.getContentType())
+                        .add(entry.contentId, entry.title, entry.artUrl, entry.score * scale);
+            }
+        }
+    }
+
+    /**
+     * Serializes the boards as a deflated stream of
+     * version, (content type, entry count, (content id, title?, art url?, score)*)*
+     * @param scale: factor to multiply every score by
+     * @param minScore: entries whose scaled score is lower are left out
+     */
+    static byte[] toBytes(Map<String, TrendingBoard> boards, double scale, double minScore) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(boards.size());
+            for (TrendingBoard board : boards.values()) {
+                List<TrendingBoard.Entry> kept = new ArrayList<>();
+                for (TrendingBoard.Entry entry : board.getEntries()) {
+                    if (entry.score * scale >= minScore) kept.add(entry);
+                }
+                out.writeUTF(board.getContentType());
+                out.writeInt(kept.size());
+                for (TrendingBoard.Entry entry : kept) {
+                    out.writeUTF(entry.contentId);
+                    writeText(out, entry.title);
+                    writeText(out, entry.artUrl);
+                    out.writeDouble(entry.score * scale);
+                }
+            }
+        } catch (IOException e) {
+            // Only thrown by the underlying stream, which is in memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param data: bytes produced by toBytes(), may be null for empty boards
+     * @return: the decoded boards
+     * @throws IllegalArgumentException: if the bytes are not valid boards
+     */
+    static Map<String, TrendingBoard> fromBytes(byte[] data) {
+        Map<String, TrendingBoard> boards = emptyBoards();
+        if (data == null || data.length == 0) {
+            return boards;
+        }
+
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown trending format " + version);
+            }
+            int boardCount = in.readInt();
+            for (int i = 0; i < boardCount; i++) {
+                TrendingBoard board = boards.get(in.readUTF());
+                int entryCount = in.readInt();
+                for (int e = 0; e < entryCount; e++) {
+                    String contentId = in.readUTF();
+                    String title = readText(in);
+                    String artUrl = readText(in);
+                    double score = in.readDouble();
+                    if (board != null) {
+                        board.add(contentId, title, artUrl, score);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt trending checkpoint", e);
+        }
+        return boards;
+    }
+
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        out.writeBoolean(text != null);
+        if (text != null) {
+            out.writeUTF(text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text);
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.google.sps.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Deflate helpers for storing long text fields as compact blobs
+ */
+public class Compression {
+
+    private Compression() {}
+
+    /**
+     * @param text: text to compress
+     * @return: the deflated UTF-8 bytes of the text
+     */
+    public static byte[] deflate(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // Only thrown by the underlying stream, which is in memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param data: bytes produced by deflate()
+     * @return: the original text
+     * @throws IllegalArgumentException: if the bytes are not deflated data
+     */
+    public static String inflate(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt compressed text", e);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
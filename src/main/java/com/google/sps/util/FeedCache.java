@@ -0,0 +1,275 @@
+package com.google.sps.util;
+
+import com.google.sps.graph.SocialGraph;
+import com.google.sps.graph.SocialGraphService;
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.ActivityGroup;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.model.results.CursorResultsObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the first CACHED_ACTIVITIES activities of recently read feeds in memory, so that
+ * refreshing a feed, and scrolling through its first pages, doesn't read the Datastore.
+ *
+ * Cached feeds are kept up to date on this instance: a new activity is inserted into the cached
+ * feed of every follower of its author, deleted activities are removed, and a feed is evicted
+ * when its owner follows or unfollows someone. Followers are looked up in the in-memory follow
+ * graph, and inserts are skipped while this instance hasn't loaded it (see SocialGraphService),
+ * as posting never waits for it. Skipped inserts, and changes made on other instances, are only
+ * seen once a feed expires after CACHE_TTL_MILLIS. List activity is grouped with the newest cached item
+ * the same way TimelineMerge groups it. The feed.cache.hit and feed.cache.miss counters
+ * give the hit rate, and feed.cache.age how long ago the feeds that were served were read.
+ */
+public class FeedCache {
+
+    static final int CACHED_ACTIVITIES = 30;
+    static final long CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    static final int CACHE_SIZE = 1000;
+
+    private static final String HIT_METRIC = "feed.cache.hit";
+    private static final String MISS_METRIC = "feed.cache.miss";
+    // Pages past the cached activities
+    private static final String BYPASS_METRIC = "feed.cache.bypass";
+    private static final String INSERT_METRIC = "feed.cache.insert";
+    // Inserts skipped because the follow graph wasn't loaded
+    private static final String INSERT_SKIPPED_METRIC = "feed.cache.insertSkipped";
+    private static final String EVICT_METRIC = "feed.cache.evict";
+    private static final String AGE_METRIC = "feed.cache.age";
+
+    private static final FeedCache instance = new FeedCache();
+
+    /**
+     * Reads a page of a feed from the Datastore, see FeedInboxes.loadPage()
+     */
+    public interface Loader {
+        CursorResultsObject<Activity> load(FeedCursor after, int offset, int limit);
+    }
+
+    private static class Feed {
+        // Newest first
+        final List<Activity> activities;
+        // Position the activities are complete up to, null if there is nothing after them
+        FeedCursor end;
+        final long loadedAt;
+        final long loadedAtNanos;
+
+        Feed(List<Activity> activities, FeedCursor end) {
+            this.activities = activities;
+            this.end = end;
+            this.loadedAt = System.currentTimeMillis();
+            this.loadedAtNanos = System.nanoTime();
+        }
+
+        /**
+         * @return: the page, or null if it goes past the cached activities
+         */
+        CursorResultsObject<Activity> read(FeedCursor after, int offset, int limit) {
+            List<Activity> page = new ArrayList<>();
+            boolean more = end != null;
+            int skipped = 0;
+            for (Activity activity : activities) {
+                if (after != null && !after.isBefore(FeedCursor.of(activity))) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
+                if (page.size() == limit) {
+                    more = true;
+                    break;
+                }
+                page.add(activity);
+            }
+            if (page.size() < limit && end != null) {
+                return null;
+            }
+            String cursor = (more && !page.isEmpty()) ? FeedCursor.of(page.get(page.size() - 1)).encode() : null;
+            return new CursorResultsObject<>(page, cursor);
+        }
+
+        /**
+         * @return: true if the activity falls within the cached activities, and was inserted
+         */
+        boolean insert(Activity activity) {
+            FeedCursor position = FeedCursor.of(activity);
+            if (end != null && end.isBefore(position)) {
+                return false;
+            }
+            // A new activity is grouped with the newest item if it is newer still, a group's id and
+            // timestamp being those of its newest activity
+            Activity newest = activities.isEmpty() ? null : activities.get(0);
+            if (newest != null && !newest.getId().equals(activity.getId())
+                    && position.isBefore(new FeedCursor(FeedInboxes.timestampOf(newest), newest.getId()))
+                    && joins(newest, activity)) {
+                activities.set(0, group(newest, activity));
+                return true;
+            }
+            int index = 0;
+            for (Activity cached : activities) {
+                if (cached.getId().equals(activity.getId())) {
+                    return false;
+                }
+                if (FeedCursor.of(cached).isBefore(position)) {
+                    index++;
+                }
+            }
+            activities.add(index, activity);
+            if (activities.size() > CACHED_ACTIVITIES) {
+                activities.remove(activities.size() - 1);
+                end = FeedCursor.of(activities.get(activities.size() - 1));
+            }
+            return true;
+        }
+
+        /**
+         * @return: true if a new activity is grouped with the newest cached item, the way
+         * TimelineMerge would group them when the feed is read again
+         */
+        private static boolean joins(Activity newest, Activity activity) {
+            String action = FeedInboxes.actionOf(activity);
+            if (action == null || action.equals(FeedInboxes.ACTION_REVIEW)
+                    || !FeedInboxes.authorOf(activity).equals(FeedInboxes.authorOf(newest))) {
+                return false;
+            }
+            if (newest instanceof ActivityGroup) {
+                ActivityGroup group = (ActivityGroup) newest;
+                return action.equals(group.getListType()) && group.getCount() < TimelineMerge.MAX_GROUP_SIZE
+                        && FeedInboxes.timestampOf(activity) - group.getEndTimestamp() <= TimelineMerge.GROUP_WINDOW_MILLIS;
+            }
+            return action.equals(FeedInboxes.actionOf(newest))
+                    && FeedInboxes.timestampOf(activity) - FeedInboxes.timestampOf(newest) <= TimelineMerge.GROUP_WINDOW_MILLIS;
+        }
+
+        private static Activity group(Activity newest, Activity activity) {
+            long timestamp = FeedInboxes.timestampOf(activity);
+            if (newest instanceof ActivityGroup) {
+                ((ActivityGroup) newest).addNewest(activity, timestamp);
+                return newest;
+            }
+            MediaListItem item = (MediaListItem) activity;
+            return new ActivityGroup(item.getUserId(), item.getUsername(), item.getListType(),
+                    Arrays.asList(activity, newest), timestamp, 2, FeedInboxes.timestampOf(newest), newest.getId());
+        }
+    }
+
+    // Least recently read feeds are dropped once CACHE_SIZE users are cached
+    private final Map<String, Feed> cache = new LinkedHashMap<String, Feed>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Feed> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private FeedCache() {}
+
+    public static FeedCache get() {
+        return instance;
+    }
+
+    /**
+     * Reads a page of a user's feed from the cache. The first page of a feed that isn't cached
+     * is read with CACHED_ACTIVITIES activities and cached, pages past those are read from the loader
+     * @param ownerId: user whose feed to read
+     * @param after: position to start after, or null for the start of the feed
+     * @param offset: number of activities to skip
+     * @param limit: maximum number of activities to read
+     * @param loader: reads the feed from the Datastore
+     * @return: the activities, newest first, and the cursor of the next page
+     */
+    public CursorResultsObject<Activity> read(String ownerId, FeedCursor after, int offset, int limit, Loader loader) {
+        Feed feed;
+        synchronized (cache) {
+            feed = cache.get(ownerId);
+            if (feed != null && System.currentTimeMillis() - feed.loadedAt >= CACHE_TTL_MILLIS) {
+                cache.remove(ownerId);
+                feed = null;
+            }
+        }
+
+        boolean loaded = feed == null && after == null && offset == 0;
+        if (loaded) {
+            Metrics.increment(MISS_METRIC);
+            CursorResultsObject<Activity> firstPage = loader.load(null, 0, Math.max(limit, CACHED_ACTIVITIES));
+            feed = new Feed(new ArrayList<>(firstPage.getResults()), FeedCursor.decode(firstPage.getCursor()));
+            synchronized (cache) {
+                cache.put(ownerId, feed);
+            }
+        }
+
+        CursorResultsObject<Activity> page = null;
+        if (feed != null) {
+            synchronized (cache) {
+                page = feed.read(after, offset, limit);
+            }
+        }
+        if (page == null) {
+            Metrics.increment(BYPASS_METRIC);
+            return loader.load(after, offset, limit);
+        }
+        if (!loaded) {
+            Metrics.increment(HIT_METRIC);
+            Metrics.recordLatency(AGE_METRIC, feed.loadedAtNanos);
+        }
+        return page;
+    }
+
+    /**
+     * Inserts a new activity into the cached feeds of its author's followers, never waits for
+     * the follow graph to load
+     */
+    public void insert(Activity activity) {
+        String authorId = FeedInboxes.authorOf(activity);
+        synchronized (cache) {
+            if (authorId == null || cache.isEmpty()) {
+                return;
+            }
+        }
+        SocialGraph graph = SocialGraphService.get().getGraphIfLoaded();
+        if (graph == null) {
+            Metrics.increment(INSERT_SKIPPED_METRIC);
+            return;
+        }
+        synchronized (cache) {
+            for (Map.Entry<String, Feed> feed : cache.entrySet()) {
+                if (graph.isFollowing(feed.getKey(), authorId) && feed.getValue().insert(activity)) {
+                    Metrics.increment(INSERT_METRIC);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes deleted activities from every cached feed
+     */
+    public void remove(Collection<Long> activityIds) {
+        synchronized (cache) {
+            // Groups are only partly known, so feeds with a deleted activity in a group are read again
+            cache.values().removeIf(feed -> feed.activities.stream().anyMatch(activity ->
+                    activity instanceof ActivityGroup && ((ActivityGroup) activity).getItems().stream()
+                            .anyMatch(item -> activityIds.contains(item.getId()))));
+            for (Feed feed : cache.values()) {
+                feed.activities.removeIf(activity -> activityIds.contains(activity.getId()));
+            }
+        }
+    }
+
+    /**
+     * Drops a user's cached feed, e.g. because the users they follow changed
+     */
+    public void evict(String ownerId) {
+        synchronized (cache) {
+            if (cache.remove(ownerId) != null) {
+                Metrics.increment(EVICT_METRIC);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.google.sps.util;
+
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.ActivityGroup;
+import com.google.sps.model.activity.FeedEntry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A position in an activity feed: the timestamp and id of the last activity a page ended at.
+ *
+ * Feeds are ordered newest first, and activities with the same timestamp by id, so a position is
+ * well defined however many timelines a feed is merged from, and every one of them can be resumed
+ * from it with a "timestamp <=" filter. Activity posted after a page was read comes before its
+ * position, so following pages never repeat or skip anything.
+ */
+public class FeedCursor {
+
+    public static final Comparator<FeedEntry> FEED_ORDER = (a, b) -> {
+        int byTime = Long.compare(b.getTimestamp(), a.getTimestamp());
+        return (byTime != 0) ? byTime : Long.compare(a.getActivityId(), b.getActivityId());
+    };
+
+    private static final String SEPARATOR = "_";
+
+    private final long timestamp;
+    private final long activityId;
+
+    public FeedCursor(long timestamp, long activityId) {
+        this.timestamp = timestamp;
+        this.activityId = activityId;
+    }
+
+    public static FeedCursor of(FeedEntry entry) {
+        return new FeedCursor(entry.getTimestamp(), entry.getActivityId());
+    }
+
+    /**
+     * @return: the position of the activity, for a group that of its oldest activity,
+     * since the next page starts after all of the group
+     */
+    public static FeedCursor of(Activity activity) {
+        if (activity instanceof ActivityGroup) {
+            ActivityGroup group = (ActivityGroup) activity;
+            return new FeedCursor(group.getEndTimestamp(), group.getEndActivityId());
+        }
+        return new FeedCursor(FeedInboxes.timestampOf(activity), activity.getId());
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getActivityId() {
+        return activityId;
+    }
+
+    /**
+     * @return: true if the entry comes after this position in a feed
+     */
+    public boolean isBefore(FeedEntry entry) {
+        return isBefore(of(entry));
+    }
+
+    /**
+     * @return: true if the other position comes after this one in a feed
+     */
+    public boolean isBefore(FeedCursor other) {
+        return other.timestamp < timestamp || (other.timestamp == timestamp && other.activityId > activityId);
+    }
+
+    /**
+     * @return: an opaque web safe token
+     */
+    public String encode() {
+        return Long.toString(timestamp, Character.MAX_RADIX) + SEPARATOR + Long.toString(activityId, Character.MAX_RADIX);
+    }
+
+    /**
+     * @param token: token returned by encode(), may be null or empty for the start of a feed
+     * @return: the position, or null if the token is empty
+     * @throws IllegalArgumentException: if the token is not a valid position
+     */
+    public static FeedCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String[] parts = token.split(SEPARATOR, -1);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid feed cursor " + token);
+        }
+        // NumberFormatException is an IllegalArgumentException
+        return new FeedCursor(Long.parseLong(parts[0], Character.MAX_RADIX), Long.parseLong(parts[1], Character.MAX_RADIX));
+    }
+
+    /**
+     * Picks the entries after a position out of a batch fetched newest first with
+     * "timestamp <= after.timestamp" and the given limit. If the batch is full its oldest entries
+     * are left out when they share a timestamp, as others with the same timestamp may not have
+     * made it into the batch, and could come before them in feed order.
+     * @param batch: the fetched entries
+     * @param limit: the limit the batch was fetched with
+     * @param after: position the entries must come after, or null for the start of the feed
+     * @return: the entries in feed order, or null if none is usable although the batch is full,
+     * in which case it has to be fetched again with a higher limit
+     */
+    public static List<FeedEntry> entriesAfter(List<FeedEntry> batch, int limit, FeedCursor after) {
+        List<FeedEntry> entries = new ArrayList<>(batch);
+        boolean full = batch.size() >= limit;
+        if (full) {
+            long oldest = batch.get(batch.size() - 1).getTimestamp();
+            entries.removeIf(entry -> entry.getTimestamp() == oldest);
+        }
+        if (after != null) {
+            entries.removeIf(entry -> !after.isBefore(entry));
+        }
+        if (full && entries.isEmpty()) {
+            return null;
+        }
+        entries.sort(FEED_ORDER);
+        return entries;
+    }
+}
@@ -0,0 +1,371 @@
+package com.google.sps.util;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.ActivityGroup;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.model.results.CursorResultsObject;
+import com.google.sps.model.review.ReviewObject;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Maintains the feed inbox of every user: a FeedEntry for each activity of the users they follow.
+ *
+ * Posting an activity enqueues a fan-out task (see FeedFanOutServlet) that writes an entry to the
+ * inbox of each of the author's followers, so reading a feed is a single range scan over the
+ * reader's entries, however many users they follow. Following a user enqueues a backfill task
+ * that copies their latest activity into the follower's inbox. Unfollowing a user or deleting an
+ * activity enqueues a retraction task (see FeedRetractionServlet) that deletes the entries feeds no
+ * longer show.
+ *
+ * Activity of "celebrities", users with at least celebrityThreshold() followers, isn't fanned out,
+ * so a post writes fewer than that many entries. Instead it is pulled from the timelines of the
+ * celebrities the reader follows, at most MAX_PULLED_AUTHORS of them, and merged in when the feed
+ * is read. Readers pull every author they follow with at least half the threshold of followers,
+ * so an author whose count is near the threshold, or lags behind, is pulled rather than missed.
+ * Activity that was also delivered is only shown once. The authors a reader pulls are found from
+ * their FollowItems and the authors' UserStats, and cached in memcache for PULLED_CACHE_TTL_SECONDS,
+ * until the reader follows or unfollows someone.
+ */
+public class FeedInboxes {
+
+    public static final String FAN_OUT_URL = "/jobs/fanOut";
+    public static final String BACKFILL_URL = "/jobs/backfillFeed";
+    public static final String RETRACT_URL = "/jobs/retractFeed";
+    public static final String CELEBRITY_THRESHOLD_PROPERTY = "mediaphile.feed.celebrityThreshold";
+    static final int DEFAULT_CELEBRITY_THRESHOLD = 10000;
+    static final int MAX_PULLED_AUTHORS = 50;
+    private static final String PULLED_NAMESPACE = "pulledAuthors";
+    private static final int PULLED_CACHE_TTL_SECONDS = 10 * 60;
+    public static final String ACTION_REVIEW = "review";
+
+    private static final Logger logger = Logger.getLogger(FeedInboxes.class.getName());
+    private static final MemcacheService pulledCache = MemcacheServiceFactory.getMemcacheService(PULLED_NAMESPACE);
+
+    private FeedInboxes() {}
+
+    /**
+     * Enqueues the fan-out of a newly saved activity. Failing to enqueue doesn't fail the post,
+     * it is logged as an error, and the activity is missing from feeds until it is fanned out
+     * again, e.g. by /jobs/reindex.
+     * @param activity: the activity, already saved so that it has an id
+     */
+    public static void enqueueFanOut(Activity activity) {
+        enqueueFanOut(Collections.singletonList(activity));
+    }
+
+    /**
+     * Enqueues the fan-out of many saved activities at once, at most 100
+     */
+    public static void enqueueFanOut(Collection<? extends Activity> activities) {
+        List<TaskOptions> tasks = new ArrayList<>();
+        for (Activity activity : activities) {
+            tasks.add(TaskOptions.Builder.withUrl(FAN_OUT_URL)
+                    .param("activityId", String.valueOf(activity.getId())));
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+        try {
+            QueueFactory.getDefaultQueue().add(tasks);
+        } catch (RuntimeException e) {
+            List<Long> activityIds = new ArrayList<>();
+            for (Activity activity : activities) {
+                activityIds.add(activity.getId());
+            }
+            logger.log(Level.SEVERE, "Could not enqueue the fan-out of activities " + activityIds, e);
+        }
+    }
+
+    /**
+     * Enqueues copying the latest activity of a newly followed user into the follower's inbox
+     * (see FeedBackfillServlet), so it shows up in their feed right away and not only their next posts.
+     * Failing to enqueue doesn't fail the follow, it is logged as an error.
+     * @param followItem: the follow, already saved
+     */
+    public static void enqueueBackfill(FollowItem followItem) {
+        try {
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(BACKFILL_URL)
+                    .param("userId", followItem.getUserId())
+                    .param("targetId", followItem.getTargetId()));
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Could not enqueue the feed backfill of follow " + followItem.getId(), e);
+        }
+    }
+
+    /**
+     * Enqueues the task that deletes the entries of deleted activities from the inboxes of their
+     * author's followers, see FeedRetractionServlet. Failures are logged, the entries are left
+     * out of feeds as their activities are gone, and expire with the retention window
+     * @param authorId: the author of the activities
+     * @param activityIds: the ids of the deleted activities
+     */
+    public static void enqueueRetraction(String authorId, Collection<Long> activityIds) {
+        if (activityIds.isEmpty()) {
+            return;
+        }
+        StringJoiner ids = new StringJoiner(",");
+        for (Long activityId : activityIds) {
+            ids.add(String.valueOf(activityId));
+        }
+        try {
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(RETRACT_URL)
+                    .param("authorId", authorId)
+                    .param("activityIds", ids.toString()));
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Could not enqueue the feed retraction of activities " + ids, e);
+        }
+    }
+
+    /**
+     * Enqueues the task that deletes the entries of an unfollowed user from the inbox of their
+     * former follower, see FeedRetractionServlet. Failures are logged, the entries expire with the
+     * retention window
+     * @param followItem: the deleted follow
+     */
+    public static void enqueueRetraction(FollowItem followItem) {
+        try {
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl(RETRACT_URL)
+                    .param("authorId", followItem.getTargetId())
+                    .param("ownerId", followItem.getUserId()));
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Could not enqueue the feed retraction of follow " + followItem.getId(), e);
+        }
+    }
+
+    /**
+     * @return: id of the user who did the activity, or null for an unknown kind of activity
+     */
+    public static String authorOf(Activity activity) {
+        if (activity instanceof ActivityGroup) {
+            return ((ActivityGroup) activity).getUserId();
+        }
+        if (activity instanceof ReviewObject) {
+            return ((ReviewObject) activity).getAuthorId();
+        }
+        if (activity instanceof MediaListItem) {
+            return ((MediaListItem) activity).getUserId();
+        }
+        return null;
+    }
+
+    public static long timestampOf(Activity activity) {
+        if (activity instanceof ActivityGroup) {
+            return ((ActivityGroup) activity).getTimestamp();
+        }
+        if (activity instanceof ReviewObject) {
+            return ((ReviewObject) activity).getTimestamp();
+        }
+        if (activity instanceof MediaListItem) {
+            return ((MediaListItem) activity).getTimestamp();
+        }
+        return 0;
+    }
+
+    /**
+     * @return: what the author did, ACTION_REVIEW or the type of list they added to,
+     * or null for an unknown kind of activity
+     */
+    public static String actionOf(Activity activity) {
+        if (activity instanceof ReviewObject) {
+            return ACTION_REVIEW;
+        }
+        if (activity instanceof MediaListItem) {
+            return ((MediaListItem) activity).getListType();
+        }
+        return null;
+    }
+
+    /**
+     * @return: the follower count from which a user's activity is pulled by readers rather than
+     * fanned out, set in appengine-web.xml
+     */
+    public static int celebrityThreshold() {
+        return Integer.getInteger(CELEBRITY_THRESHOLD_PROPERTY, DEFAULT_CELEBRITY_THRESHOLD);
+    }
+
+    /**
+     * @return: the users followed by ownerId whose activity has to be pulled, the most followed first
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> pulledAuthors(String ownerId) {
+        Object cached = pulledCache.get(ownerId);
+        if (cached instanceof List) {
+            return (List<String>) cached;
+        }
+
+        List<String> followingIds = new ArrayList<>();
+        for (Key<FollowItem> key : ofy().load().type(FollowItem.class).filter("userId", ownerId).keys()) {
+            // Follows that haven't been moved to named keys yet are left out until they are
+            String name = key.getName();
+            int separator = (name == null) ? -1 : name.indexOf(':');
+            if (separator > 0) {
+                followingIds.add(name.substring(separator + 1));
+            }
+        }
+        Map<String, Long> followerCounts = FollowLookups.loadFollowerCounts(followingIds);
+        int minFollowers = (celebrityThreshold() + 1) / 2;
+
+        ArrayList<String> authors = new ArrayList<>();
+        for (String followingId : followingIds) {
+            if (followerCounts.get(followingId) >= minFollowers) {
+                authors.add(followingId);
+            }
+        }
+        authors.sort(Comparator.comparing(followerCounts::get, Comparator.reverseOrder()));
+        ArrayList<String> pulled = new ArrayList<>(authors.subList(0, Math.min(authors.size(), MAX_PULLED_AUTHORS)));
+        pulledCache.put(ownerId, pulled, Expiration.byDeltaSeconds(PULLED_CACHE_TTL_SECONDS));
+        return pulled;
+    }
+
+    /**
+     * Drops the cached pulled authors of a user, e.g. because the users they follow changed
+     */
+    public static void forgetPulledAuthors(String ownerId) {
+        pulledCache.delete(ownerId);
+    }
+
+    /**
+     * @return: true if nothing was ever delivered to the user's inbox, e.g. because everything
+     * the users they follow did was posted before inboxes existed
+     */
+    public static boolean isEmpty(String ownerId) {
+        return ofy().load().type(FeedEntry.class).filter("ownerId", ownerId).limit(1).keys().first().now() == null;
+    }
+
+    /**
+     * Checks whether a user's feed has activity newer than what they were shown, with keys-only
+     * queries: one on their inbox, and one on the timeline of each celebrity they follow
+     * @param ownerId: user whose feed to check
+     * @param since: timestamp of the newest activity shown
+     * @return: true if an inbox entry or a pulled activity is newer than since
+     */
+    public static boolean hasNewer(String ownerId, long since) {
+        // Objectify runs the queries of lists asynchronously, so these are all issued before any is read
+        List<List<? extends Key<?>>> newest = new ArrayList<>();
+        newest.add(ofy().load().type(FeedEntry.class)
+                .filter("ownerId", ownerId)
+                .filter("timestamp >", since)
+                .order("-timestamp")
+                .limit(1)
+                .keys().list());
+        for (String authorId : pulledAuthors(ownerId)) {
+            newest.add(ofy().load().type(Activity.class)
+                    .filter("userId", authorId)
+                    .filter("timestamp >", since)
+                    .order("-timestamp")
+                    .limit(1)
+                    .keys().list());
+        }
+
+        for (List<? extends Key<?>> keys : newest) {
+            if (!keys.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a page of a user's feed, newest first: their inbox merged with the timelines of the
+     * celebrities they follow (see TimelineMerge), with bursts of list activity grouped.
+     * Entries of deleted activities and of users no longer followed that weren't retracted yet are
+     * left out, so a page may hold fewer than limit activities
+     * @param ownerId: user whose feed to read
+     * @param after: position to start after, or null for the start of the feed
+     * @param offset: number of items to skip
+     * @param limit: maximum number of items to read
+     * @return: the activities, newest first, and the cursor of the next page, or null if nothing
+     * was ever delivered to the user's inbox and they follow no celebrities, i.e. their feed has
+     * to be read some other way
+     */
+    public static CursorResultsObject<Activity> loadPage(String ownerId, FeedCursor after, int offset, int limit) {
+        TimelineMerge merge = new TimelineMerge(ownerId).addInbox();
+        for (String authorId : pulledAuthors(ownerId)) {
+            merge.addTimeline(authorId);
+        }
+        CursorResultsObject<List<FeedEntry>> page = merge.read(after, offset, limit);
+
+        if (page.getResults().isEmpty() && merge.getSourceCount() == 1 && isEmpty(ownerId)) {
+            return null;
+        }
+        return new CursorResultsObject<>(hydrate(ownerId, page.getResults(), merge.getLoaded()), page.getCursor());
+    }
+
+    /**
+     * Loads the activities of feed items with one batch get for the activities, and one for
+     * whether the owner still follows their authors. An item of many entries (see TimelineMerge)
+     * becomes an ActivityGroup, of which only the first ActivityGroup.PREVIEW_SIZE are loaded
+     * @param items: the entries of each item, newest first
+     * @param preloaded: activities that are already loaded, by id
+     * @return: the activities in the order of the items, leaving out those that can't be shown
+     */
+    public static List<Activity> hydrate(String ownerId, List<List<FeedEntry>> items, Map<Long, Activity> preloaded) {
+        List<Long> activityIds = new ArrayList<>();
+        Set<String> followIds = new LinkedHashSet<>();
+        for (List<FeedEntry> item : items) {
+            for (FeedEntry entry : preview(item)) {
+                if (!preloaded.containsKey(entry.getActivityId())) {
+                    activityIds.add(entry.getActivityId());
+                }
+            }
+            followIds.add(FollowItem.makeId(ownerId, item.get(0).getAuthorId()));
+        }
+        Map<Long, Activity> activities = new HashMap<>(preloaded);
+        activities.putAll(ofy().load().type(Activity.class).ids(activityIds));
+        Map<String, FollowItem> follows = ofy().load().type(FollowItem.class).ids(followIds);
+
+        List<Activity> result = new ArrayList<>();
+        for (List<FeedEntry> item : items) {
+            FeedEntry newest = item.get(0);
+            if (!follows.containsKey(FollowItem.makeId(ownerId, newest.getAuthorId()))) {
+                continue;
+            }
+            List<Activity> preview = new ArrayList<>();
+            for (FeedEntry entry : preview(item)) {
+                Activity activity = activities.get(entry.getActivityId());
+                if (activity != null) {
+                    preview.add(activity);
+                }
+            }
+            if (preview.isEmpty()) {
+                continue;
+            }
+            if (item.size() == 1) {
+                result.add(preview.get(0));
+            } else {
+                FeedEntry oldest = item.get(item.size() - 1);
+                String username = (preview.get(0) instanceof MediaListItem)
+                        ? ((MediaListItem) preview.get(0)).getUsername() : null;
+                result.add(new ActivityGroup(newest.getAuthorId(), username, newest.getAction(), preview,
+                        newest.getTimestamp(), item.size(), oldest.getTimestamp(), oldest.getActivityId()));
+            }
+        }
+        return result;
+    }
+
+    private static List<FeedEntry> preview(List<FeedEntry> item) {
+        return item.subList(0, Math.min(item.size(), ActivityGroup.PREVIEW_SIZE));
+    }
+}
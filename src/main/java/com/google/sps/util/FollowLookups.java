@@ -0,0 +1,202 @@
+package com.google.sps.util;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.user.FollowerCountShard;
+import com.google.sps.model.user.UserStats;
+import com.googlecode.objectify.Work;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Maintains the UserStats entities that hold follower and following counts.
+ * A user's following count only changes when they follow someone, so it is kept on their UserStats.
+ * Followers of a popular user arrive much faster than one entity group can be written, so changes
+ * to follower counts go to one of FOLLOWER_SHARDS FollowerCountShards picked at random, and are
+ * added to the count stored on the UserStats when read. The sum of a user's shards is cached in
+ * memcache, and counts committed follows and unfollows on every instance.
+ */
+public class FollowLookups {
+
+    // At most 25 entity groups can be read in a transaction, see loadExactStats()
+    static final int FOLLOWER_SHARDS = 16;
+    private static final String NAMESPACE = "followerShards";
+    private static final int CACHE_TTL_SECONDS = 10 * 60;
+
+    private static final MemcacheService cache = MemcacheServiceFactory.getMemcacheService(NAMESPACE);
+    private static final Random random = new Random();
+
+    private FollowLookups() {}
+
+    /**
+     * Loads the follow counts of a user
+     * Counts that have never been computed are counted from the FollowItems and stored
+     * @param userId: id of the user
+     * @return: the user's stats, with the followers counted in shards added, only for reading
+     */
+    public static UserStats loadStats(String userId) {
+        UserStats stats = ofy().load().type(UserStats.class).id(userId).now();
+        if (stats == null) {
+            UserStats counted = countStats(userId);
+            // Another request may have created the stats in the meantime, and then its counts win
+            stats = ofy().transact((Work<UserStats>) () -> {
+                UserStats existing = ofy().load().type(UserStats.class).id(userId).now();
+                if (existing != null) return existing;
+                ofy().save().entity(counted);
+                return counted;
+            });
+        }
+
+        Object cached = cache.get(userId);
+        long shardFollowers;
+        if (cached instanceof Long) {
+            shardFollowers = (Long) cached;
+        } else {
+            shardFollowers = sumShards(userId);
+            cache.put(userId, shardFollowers, Expiration.byDeltaSeconds(CACHE_TTL_SECONDS),
+                    MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+        }
+        return withShards(stats, shardFollowers);
+    }
+
+    /**
+     * Loads the follower counts of many users with one batch get of their UserStats, one memcache
+     * call for the sums of their shards, and one batch get of the shards of the users whose sums
+     * aren't cached, so the counts are the ones loadStats() returns.
+     * Counts that have never been computed are counted as in loadStats()
+     * @param userIds: ids of the users
+     * @return: the follower count of each user
+     */
+    public static Map<String, Long> loadFollowerCounts(Collection<String> userIds) {
+        Map<String, UserStats> stats = ofy().load().type(UserStats.class).ids(userIds);
+        Map<String, Object> cached = cache.getAll(userIds);
+
+        Map<String, Long> shardSums = new HashMap<>();
+        List<String> shardIds = new ArrayList<>();
+        for (String userId : userIds) {
+            if (stats.containsKey(userId) && !(cached.get(userId) instanceof Long)) {
+                shardSums.put(userId, 0L);
+                for (int shard = 0; shard < FOLLOWER_SHARDS; shard++) {
+                    shardIds.add(FollowerCountShard.makeId(userId, shard));
+                }
+            }
+        }
+        if (!shardIds.isEmpty()) {
+            for (FollowerCountShard shard : ofy().load().type(FollowerCountShard.class).ids(shardIds).values()) {
+                String userId = shard.getId().substring(0, shard.getId().lastIndexOf(':'));
+                shardSums.put(userId, shardSums.get(userId) + shard.getCount());
+            }
+            cache.putAll(shardSums, Expiration.byDeltaSeconds(CACHE_TTL_SECONDS),
+                    MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+        }
+
+        Map<String, Long> counts = new HashMap<>();
+        for (String userId : userIds) {
+            UserStats userStats = stats.get(userId);
+            if (userStats == null) {
+                counts.put(userId, loadStats(userId).getFollowerCount());
+                continue;
+            }
+            Object shardFollowers = cached.get(userId);
+            long followers = userStats.getFollowerCount()
+                    + ((shardFollowers instanceof Long) ? (Long) shardFollowers : shardSums.get(userId));
+            counts.put(userId, Math.max(0, followers));
+        }
+        return counts;
+    }
+
+    /**
+     * Loads a user's stats and every one of their shards, bypassing the cache,
+     * e.g. to read the counts within a transaction
+     * @return: the stats with the exact follower count, or null if they were never computed
+     */
+    public static UserStats loadExactStats(String userId) {
+        UserStats stats = ofy().load().type(UserStats.class).id(userId).now();
+        return (stats == null) ? null : withShards(stats, sumShards(userId));
+    }
+
+    /**
+     * Counts a user's followers and followings from the FollowItems, which scans their keys
+     * @param userId: id of the user
+     * @return: unsaved stats with the exact counts
+     */
+    public static UserStats countStats(String userId) {
+        int followers = ofy().load().type(FollowItem.class).filter("targetId", userId).count();
+        int following = ofy().load().type(FollowItem.class).filter("userId", userId).count();
+        return new UserStats(userId, followers, following);
+    }
+
+    /**
+     * Stores exact counts of a user, keeping the shards as they are.
+     * Must be called in a transaction that read the shards, see loadExactStats()
+     * @param counted: the exact counts, e.g. from countStats()
+     */
+    public static void replaceStats(UserStats counted) {
+        long shardFollowers = sumShards(counted.getId());
+        ofy().save().entity(new UserStats(counted.getId(),
+                counted.getFollowerCount() - shardFollowers, counted.getFollowingCount()));
+    }
+
+    /**
+     * Updates the counts of both users of a follow that was just created or deleted.
+     * Must be called in the transaction that saves or deletes the FollowItem, and followed by
+     * countFollowerChange() once it committed.
+     * Stats that were never computed are left alone, they will be counted when first read.
+     * @param followItem: the follow
+     * @param delta: 1 for a follow, -1 for an unfollow
+     */
+    public static void adjustCounts(FollowItem followItem, int delta) {
+        Map<String, UserStats> stats = ofy().load().type(UserStats.class)
+                .ids(followItem.getUserId(), followItem.getTargetId());
+
+        UserStats follower = stats.get(followItem.getUserId());
+        if (follower != null) {
+            follower.addFollowing(delta);
+            ofy().save().entity(follower);
+        }
+        if (stats.containsKey(followItem.getTargetId())) {
+            String shardId = FollowerCountShard.makeId(followItem.getTargetId(), random.nextInt(FOLLOWER_SHARDS));
+            FollowerCountShard shard = ofy().load().type(FollowerCountShard.class).id(shardId).now();
+            if (shard == null) {
+                shard = new FollowerCountShard(shardId);
+            }
+            shard.add(delta);
+            ofy().save().entity(shard);
+        }
+    }
+
+    /**
+     * Adds a committed follow or unfollow to the cached sum of the target's shards, if it is cached
+     * @param followItem: the follow
+     * @param delta: 1 for a follow, -1 for an unfollow
+     */
+    public static void countFollowerChange(FollowItem followItem, int delta) {
+        cache.increment(followItem.getTargetId(), delta);
+    }
+
+    private static long sumShards(String userId) {
+        List<String> shardIds = new ArrayList<>();
+        for (int shard = 0; shard < FOLLOWER_SHARDS; shard++) {
+            shardIds.add(FollowerCountShard.makeId(userId, shard));
+        }
+        long sum = 0;
+        for (FollowerCountShard shard : ofy().load().type(FollowerCountShard.class).ids(shardIds).values()) {
+            sum += shard.getCount();
+        }
+        return sum;
+    }
+
+    private static UserStats withShards(UserStats stats, long shardFollowers) {
+        return new UserStats(stats.getId(), Math.max(0, stats.getFollowerCount() + shardFollowers),
+                stats.getFollowingCount());
+    }
+}
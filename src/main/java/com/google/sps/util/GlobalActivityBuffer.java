@@ -0,0 +1,124 @@
+package com.google.sps.util;
+
+import com.google.sps.model.activity.Activity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Keeps the latest CAPACITY activities of the whole site in memory on each instance, for the
+ * "what's happening now" stream at /activity/global, so it never scans the Activity kind.
+ *
+ * Activity is written to a ring of slots without locking: a writer claims the next sequence
+ * number and stores the activity in its slot, overwriting the oldest. Each slot remembers the
+ * sequence number it was written for, so readers skip slots that are overwritten, or not written
+ * yet, while they read. The ring is restored from the newest Activity entities on startup (see
+ * ContextListener), after which it only sees activity posted through this instance.
+ */
+public class GlobalActivityBuffer {
+
+    public static final int CAPACITY = 50;
+
+    private static final String RESTORE_METRIC = "activity.global.restore";
+
+    private static final GlobalActivityBuffer instance = new GlobalActivityBuffer();
+
+    private static class Slot {
+        final long sequence;
+        final Activity activity;
+
+        Slot(long sequence, Activity activity) {
+            this.sequence = sequence;
+            this.activity = activity;
+        }
+    }
+
+    private static class Ring {
+        final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(CAPACITY);
+        // Number of activities ever written, the sequence number of the next one
+        final AtomicLong written = new AtomicLong();
+    }
+
+    private volatile Ring ring = new Ring();
+    private final AtomicLong version = new AtomicLong();
+
+    private GlobalActivityBuffer() {}
+
+    public static GlobalActivityBuffer get() {
+        return instance;
+    }
+
+    /**
+     * Adds a new activity as the latest
+     */
+    public void record(Activity activity) {
+        Ring current = ring;
+        long sequence = current.written.getAndIncrement();
+        current.slots.set(index(sequence), new Slot(sequence, activity));
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return: the latest activities, newest first, at most CAPACITY
+     */
+    public List<Activity> getLatest() {
+        Ring current = ring;
+        long written = current.written.get();
+        List<Activity> latest = new ArrayList<>();
+        for (long sequence = written - 1; sequence >= Math.max(0, written - CAPACITY); sequence--) {
+            Slot slot = current.slots.get(index(sequence));
+            if (slot != null && slot.sequence == sequence && slot.activity != null) {
+                latest.add(slot.activity);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @return: a number that changes whenever the latest activities may have changed
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Drops deleted activities
+     */
+    public void remove(Collection<Long> activityIds) {
+        Ring current = ring;
+        for (int i = 0; i < CAPACITY; i++) {
+            Slot slot = current.slots.get(i);
+            if (slot != null && slot.activity != null && activityIds.contains(slot.activity.getId())) {
+                // Loses to a writer that replaced the slot meanwhile, whose activity isn't deleted
+                if (current.slots.compareAndSet(i, slot, new Slot(slot.sequence, null))) {
+                    version.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the ring with the newest CAPACITY Activity entities. Activity recorded while
+     * they are loaded is lost, so this is only run when the instance starts.
+     */
+    public void restore() {
+        List<Activity> newest = ofy().load().type(Activity.class).order("-timestamp").limit(CAPACITY).list();
+        Ring restored = new Ring();
+        for (int i = newest.size() - 1; i >= 0; i--) {
+            long sequence = restored.written.getAndIncrement();
+            restored.slots.set(index(sequence), new Slot(sequence, newest.get(i)));
+        }
+        ring = restored;
+        version.incrementAndGet();
+        Metrics.increment(RESTORE_METRIC);
+    }
+
+    private static int index(long sequence) {
+        return (int) (sequence % CAPACITY);
+    }
+}
@@ -0,0 +1,67 @@
+package com.google.sps.util;
+
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.queue.ListItemPointer;
+import com.google.sps.model.queue.MediaListItem;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Maintains the ListItemPointer entities that let list membership be checked with key gets
+ * rather than queries. A list item and its pointer are always written and deleted together.
+ */
+public class ListLookups {
+
+    private ListLookups() {}
+
+    /**
+     * Saves a new list item and its pointer in a transaction, unless the media item is already in the list
+     * @param item: the item to add
+     * @return: true if it was saved, false if the user's list already has the media item
+     */
+    public static boolean insertIfAbsent(MediaListItem item) {
+        String pointerId = ListItemPointer.makeId(item.getListType(), item.getUserId(),
+                item.getMediaType(), item.getMediaId());
+        return ofy().transact((Work<Boolean>) () -> {
+            if (ofy().load().type(ListItemPointer.class).id(pointerId).now() != null) {
+                return false;
+            }
+            // Saved first so that the pointer gets its id
+            ofy().save().entity(item).now();
+            ofy().save().entity(new ListItemPointer(item));
+            return true;
+        });
+    }
+
+    /**
+     * Deletes a media item from a user's list, and its pointer, in a transaction
+     * @return: the id of the deleted list item, or null if the media item wasn't in the list
+     */
+    public static Long deleteIfPresent(String listType, String userId, String mediaType, String mediaId) {
+        String pointerId = ListItemPointer.makeId(listType, userId, mediaType, mediaId);
+        return ofy().transact((Work<Long>) () -> {
+            ListItemPointer pointer = ofy().load().type(ListItemPointer.class).id(pointerId).now();
+            if (pointer == null) {
+                return null;
+            }
+            ofy().delete().keys(Key.create(Activity.class, pointer.getItemId()),
+                    Key.create(ListItemPointer.class, pointerId));
+            return pointer.getItemId();
+        });
+    }
+
+    /**
+     * Checks which of many list items exist with one batch get
+     * @param pointerIds: ids made with ListItemPointer.makeId()
+     * @return: the ids of the list items that exist
+     */
+    public static Set<String> loadMemberships(Collection<String> pointerIds) {
+        return new HashSet<>(ofy().load().type(ListItemPointer.class).ids(pointerIds).keySet());
+    }
+}
@@ -0,0 +1,96 @@
+package com.google.sps.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory metrics of this instance, exposed at /admin/metrics.
+ * Counters count events (e.g. cache hits), latencies keep a window of the
+ * most recent samples to report percentiles from.
+ */
+public class Metrics {
+
+    private static final int LATENCY_WINDOW = 1024;
+
+    private static final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Latency> latencies = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long delta) {
+        counters.computeIfAbsent(name, n -> new AtomicLong()).addAndGet(delta);
+    }
+
+    public static long getCount(String name) {
+        AtomicLong counter = counters.get(name);
+        return (counter == null) ? 0 : counter.get();
+    }
+
+    /**
+     * Records how long an operation took
+     * @param name: name of the operation
+     * @param startNanos: System.nanoTime() when the operation started
+     * @return: the elapsed time in milliseconds
+     */
+    public static double recordLatency(String name, long startNanos) {
+        double millis = (System.nanoTime() - startNanos) / 1e6;
+        latencies.computeIfAbsent(name, n -> new Latency()).record(millis);
+        return millis;
+    }
+
+    /**
+     * @return: every counter, and the count, mean and percentiles of every latency, by name
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+            snapshot.put(counter.getKey(), counter.getValue().get());
+        }
+        for (Map.Entry<String, Latency> latency : latencies.entrySet()) {
+            snapshot.put(latency.getKey(), latency.getValue().summarize());
+        }
+        return snapshot;
+    }
+
+    private static class Latency {
+        private final double[] window = new double[LATENCY_WINDOW];
+        private long count = 0;
+        private double total = 0;
+
+        synchronized void record(double millis) {
+            window[(int) (count % LATENCY_WINDOW)] = millis;
+            count++;
+            total += millis;
+        }
+
+        synchronized Map<String, Object> summarize() {
+            int size = (int) Math.min(count, LATENCY_WINDOW);
+            double[] sorted = Arrays.copyOf(window, size);
+            Arrays.sort(sorted);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", count);
+            summary.put("mean_ms", (count == 0) ? 0 : total / count);
+            summary.put("p50_ms", percentile(sorted, 0.50));
+            summary.put("p95_ms", percentile(sorted, 0.95));
+            summary.put("p99_ms", percentile(sorted, 0.99));
+            summary.put("max_ms", (size == 0) ? 0 : sorted[size - 1]);
+            return summary;
+        }
+
+        private static double percentile(double[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, index)];
+        }
+    }
+}
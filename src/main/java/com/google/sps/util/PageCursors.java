@@ -0,0 +1,91 @@
+package com.google.sps.util;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+/**
+ * Helpers for cursor based pagination. Datastore offsets are billed and scanned
+ * linearly, so instead of skipping pageNumber * limit rows we start each page from
+ * the cursor where the previous page ended.
+ * Clients can either pass the opaque token back themselves, or keep using page numbers,
+ * in which case the cursor for the next page is remembered in memcache.
+ */
+public class PageCursors {
+    private static final String NAMESPACE = "pageCursors";
+    private static final int CURSOR_TTL_SECONDS = 10 * 60;
+
+    private static final MemcacheService cache = MemcacheServiceFactory.getMemcacheService(NAMESPACE);
+
+    private PageCursors() {}
+
+    /**
+     * Turns a client supplied token back into a Cursor
+     * @param token: token previously returned by encode(), may be null or empty for the first page
+     * @return: the decoded cursor, or null if the token is empty
+     * @throws IllegalArgumentException: if the token is not a valid cursor
+     */
+    public static Cursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        return Cursor.fromWebSafeString(token);
+    }
+
+    /**
+     * Turns a Cursor into an opaque web safe token
+     * @param cursor: cursor to encode, may be null
+     * @return: the token, or null if there is no cursor (i.e. no further pages)
+     */
+    public static String encode(Cursor cursor) {
+        return (cursor == null) ? null : cursor.toWebSafeString();
+    }
+
+    /**
+     * Looks up the cursor a page starts at, if an earlier request has remembered it
+     * @param queryKey: a key uniquely identifying the query being paged
+     * @param pageNumber: zero-indexed page number
+     * @return: the cursor to start at, or null if unknown
+     */
+    public static Cursor lookup(String queryKey, int pageNumber) {
+        return decode(lookupToken(queryKey, pageNumber));
+    }
+
+    /**
+     * Like lookup(), for pagination whose tokens aren't Datastore cursors, e.g. FeedCursor
+     * @return: the token the page starts at, or null if unknown
+     */
+    public static String lookupToken(String queryKey, int pageNumber) {
+        if (pageNumber <= 0) {
+            return null;
+        }
+        return (String) cache.get(cacheKey(queryKey, pageNumber));
+    }
+
+    /**
+     * Remembers the cursor a page starts at so later page-number requests can skip the offset
+     * @param queryKey: a key uniquely identifying the query being paged
+     * @param pageNumber: zero-indexed page number the cursor starts
+     * @param cursor: the cursor, ignored if null
+     */
+    public static void remember(String queryKey, int pageNumber, Cursor cursor) {
+        rememberToken(queryKey, pageNumber, encode(cursor));
+    }
+
+    /**
+     * Like remember(), for pagination whose tokens aren't Datastore cursors, e.g. FeedCursor
+     * @param token: the token, ignored if null
+     */
+    public static void rememberToken(String queryKey, int pageNumber, String token) {
+        if (token == null || pageNumber <= 0) {
+            return;
+        }
+        cache.put(cacheKey(queryKey, pageNumber), token,
+                Expiration.byDeltaSeconds(CURSOR_TTL_SECONDS));
+    }
+
+    private static String cacheKey(String queryKey, int pageNumber) {
+        return queryKey + ":" + pageNumber;
+    }
+}
@@ -0,0 +1,170 @@
+package com.google.sps.util;
+
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.review.ReviewPointer;
+import com.google.sps.model.review.ReviewStats;
+import com.google.sps.model.review.ReviewSummaryObject;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Maintains the ReviewPointer, ReviewStats and ReviewSummaryObject entities that let reviews
+ * be looked up in bulk with key gets rather than queries.
+ */
+public class ReviewLookups {
+
+    private ReviewLookups() {}
+
+    /**
+     * Records a newly saved review: writes its pointer and summary, and adds its rating to the item's stats
+     * @param review: the review, already saved so that it has an id
+     */
+    public static void recordReview(ReviewObject review) {
+        ofy().save().entities(new ReviewPointer(review), new ReviewSummaryObject(review)).now();
+        updateStats(review, true);
+    }
+
+    /**
+     * Undoes recordReview() for a review that is being deleted
+     * @param review: the deleted review
+     */
+    public static void removeReview(ReviewObject review) {
+        ofy().delete().keys(
+                Key.create(ReviewPointer.class, ReviewPointer.makeId(
+                        review.getAuthorId(), review.getContentType(), review.getContentId())),
+                Key.create(ReviewSummaryObject.class, review.getId())).now();
+        updateStats(review, false);
+    }
+
+    /**
+     * Batch loads the stats of the given items
+     * Items whose stats have never been computed are computed from their reviews and stored
+     * @param statsIds: ids made with ReviewStats.makeId()
+     * @return: the stats of every requested item, keyed by id
+     */
+    public static Map<String, ReviewStats> loadStats(Collection<String> statsIds) {
+        Map<String, ReviewStats> stats = new HashMap<>(ofy().load().type(ReviewStats.class).ids(statsIds));
+        for (String statsId : statsIds) {
+            if (!stats.containsKey(statsId)) {
+                stats.put(statsId, computeStats(statsId));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Batch loads the summaries of the reviews the given user wrote of the given items,
+     * so the review bodies are never loaded
+     * @param pointerIds: ids made with ReviewPointer.makeId()
+     * @return: the summaries of the reviews that exist, keyed by pointer id
+     */
+    public static Map<String, ReviewSummaryObject> loadSummariesByPointer(Collection<String> pointerIds) {
+        Map<String, ReviewPointer> pointers = ofy().load().type(ReviewPointer.class).ids(pointerIds);
+
+        List<Long> reviewIds = new ArrayList<>();
+        for (ReviewPointer pointer : pointers.values()) {
+            reviewIds.add(pointer.getReviewId());
+        }
+        Map<Long, ReviewSummaryObject> summaries = loadSummaries(reviewIds);
+
+        Map<String, ReviewSummaryObject> result = new HashMap<>();
+        for (ReviewPointer pointer : pointers.values()) {
+            ReviewSummaryObject summary = summaries.get(pointer.getReviewId());
+            if (summary != null) {
+                result.put(pointer.getId(), summary);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Batch loads the summaries of the given reviews
+     * Reviews saved before summaries existed get theirs made from the full review and stored
+     * @param reviewIds: ids of existing reviews
+     * @return: the summaries of the reviews that exist, keyed by review id
+     */
+    public static Map<Long, ReviewSummaryObject> loadSummaries(Collection<Long> reviewIds) {
+        Map<Long, ReviewSummaryObject> summaries =
+                new HashMap<>(ofy().load().type(ReviewSummaryObject.class).ids(reviewIds));
+
+        List<Long> missingIds = new ArrayList<>();
+        for (Long reviewId : reviewIds) {
+            if (!summaries.containsKey(reviewId)) {
+                missingIds.add(reviewId);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            List<ReviewSummaryObject> created = new ArrayList<>();
+            for (ReviewObject review : ofy().load().type(ReviewObject.class).ids(missingIds).values()) {
+                ReviewSummaryObject summary = new ReviewSummaryObject(review);
+                summaries.put(review.getId(), summary);
+                created.add(summary);
+            }
+            ofy().save().entities(created);
+        }
+        return summaries;
+    }
+
+    private static void updateStats(ReviewObject review, boolean added) {
+        String statsId = ReviewStats.makeId(review.getContentType(), review.getContentId());
+        ofy().transact((Work<Void>) () -> {
+            ReviewStats stats = ofy().load().type(ReviewStats.class).id(statsId).now();
+            // Stats that were never computed will be computed from the reviews when first read
+            if (stats == null) return null;
+
+            if (added) {
+                stats.addRating(review.getRating());
+            } else {
+                stats.removeRating(review.getRating());
+            }
+            ofy().save().entity(stats);
+            return null;
+        });
+    }
+
+    /**
+     * Counts the ratings of an item from its reviews, with a keys-only query and a batch get
+     * of the reviews' summaries, so the review bodies are never loaded
+     * @return: the stats as they are in the reviews, not saved
+     */
+    public static ReviewStats countStats(String contentType, String contentId) {
+        List<Long> reviewIds = new ArrayList<>();
+        for (Key<ReviewObject> key : ofy().load().type(ReviewObject.class)
+                .filter("contentType", contentType)
+                .filter("contentId", contentId).keys()) {
+            reviewIds.add(key.getId());
+        }
+
+        ReviewStats stats = new ReviewStats(contentType, contentId);
+        for (ReviewSummaryObject summary : loadSummaries(reviewIds).values()) {
+            stats.addRating(summary.getRating());
+        }
+        return stats;
+    }
+
+    private static ReviewStats computeStats(String statsId) {
+        String[] parts = statsId.split(":", 2);
+        String contentType = parts[0];
+        String contentId = (parts.length > 1) ? parts[1] : "";
+
+        ReviewStats counted = countStats(contentType, contentId);
+        // Only stored if still missing, as a concurrent read may have stored them first. A review posted
+        // while counting finds no stats to update and may be left out, /jobs/reconcileReviewStats repairs that
+        return ofy().transact((Work<ReviewStats>) () -> {
+            ReviewStats stored = ofy().load().type(ReviewStats.class).id(statsId).now();
+            if (stored != null) {
+                return stored;
+            }
+            ofy().save().entity(counted);
+            return counted;
+        });
+    }
+}
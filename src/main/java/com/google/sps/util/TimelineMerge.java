@@ -0,0 +1,273 @@
+package com.google.sps.util;
+
+import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.results.CursorResultsObject;
+import com.googlecode.objectify.cmd.Query;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Reads a page of a feed merged from many timelines that are each ordered newest first:
+ * a user's inbox, and the activity of individual authors.
+ *
+ * Every timeline is a source that fetches lazily, in small batches, from a query starting at the
+ * page's FeedCursor. The sources are kept in a priority queue by their newest unread entry, so
+ * reading a page of n entries from k timelines takes one round of k concurrent queries, then
+ * O(n log k) work, and only the timelines the page actually reaches are read further. There is
+ * no limit on k from the Datastore, unlike with an IN filter, so callers cap it themselves.
+ * The returned cursor resumes every timeline at once, and doesn't grow with their number.
+ */
+public class TimelineMerge {
+
+    // The first batch of every source is fetched before anything is merged, so it is kept small
+    static final int FIRST_BATCH = 3;
+    static final int BATCH_SIZE = 10;
+    static final long GROUP_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+    static final int MAX_GROUP_SIZE = 100;
+
+    private final String ownerId;
+    private final List<Source<?>> sources = new ArrayList<>();
+    private final Map<Long, Activity> loaded = new HashMap<>();
+
+    /**
+     * @param ownerId: user whose feed is read
+     */
+    public TimelineMerge(String ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    /**
+     * Adds the owner's feed inbox to the merge
+     */
+    public TimelineMerge addInbox() {
+        sources.add(new InboxSource());
+        return this;
+    }
+
+    /**
+     * Adds the activity of an author to the merge
+     */
+    public TimelineMerge addTimeline(String authorId) {
+        sources.add(new TimelineSource(authorId));
+        return this;
+    }
+
+    public int getSourceCount() {
+        return sources.size();
+    }
+
+    /**
+     * @return: the activities read from author timelines so far, by id, to pass to FeedInboxes.hydrate()
+     */
+    public Map<Long, Activity> getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Reads a page of the merged feed. An activity that is in more than one timeline, e.g. delivered
+     * to the inbox and also pulled from its author's timeline, is only read once.
+     * List activity of an author is grouped into one item with the same kind of list activity
+     * they did up to GROUP_WINDOW_MILLIS before it, up to MAX_GROUP_SIZE entries, so that a burst
+     * of it takes up a single item of the page.
+     * @param after: position to start after, or null for the start of the feed
+     * @param offset: number of items to skip
+     * @param limit: maximum number of items to read
+     * @return: the entries of each item, newest first, in feed order, and the cursor of the next
+     * page, null if there is none
+     */
+    public CursorResultsObject<List<FeedEntry>> read(FeedCursor after, int offset, int limit) {
+        // Objectify runs the queries of lists asynchronously, so these are all issued before any is read
+        for (Source<?> source : sources) {
+            source.start(after, FIRST_BATCH);
+        }
+        PriorityQueue<Source<?>> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> FeedCursor.FEED_ORDER.compare(a.head(), b.head()));
+        for (Source<?> source : sources) {
+            source.fill(FIRST_BATCH);
+            if (source.head() != null) {
+                heads.add(source);
+            }
+        }
+
+        List<List<FeedEntry>> page = new ArrayList<>();
+        // Items of this page, or skipped for it, that later entries can still join, by group key
+        Map<String, List<FeedEntry>> groups = new HashMap<>();
+        Set<Long> seen = new HashSet<>();
+        FeedEntry last = null;
+        int skipped = 0;
+        while (!heads.isEmpty()) {
+            FeedEntry entry = heads.peek().head();
+            if (seen.contains(entry.getActivityId())) {
+                next(heads);
+                continue;
+            }
+            String key = groupKey(entry);
+            List<FeedEntry> group = (key == null) ? null : groups.get(key);
+            boolean joins = group != null && group.size() < MAX_GROUP_SIZE
+                    && group.get(0).getTimestamp() - entry.getTimestamp() <= GROUP_WINDOW_MILLIS;
+            if (!joins && page.size() == limit) {
+                break;
+            }
+
+            next(heads);
+            seen.add(entry.getActivityId());
+            last = entry;
+            if (joins) {
+                group.add(entry);
+                continue;
+            }
+            List<FeedEntry> item = new ArrayList<>();
+            item.add(entry);
+            if (key != null) {
+                groups.put(key, item);
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(item);
+            }
+        }
+        // Copies of the page's last activity mustn't make it look like there is a next page
+        while (!heads.isEmpty() && seen.contains(heads.peek().head().getActivityId())) {
+            next(heads);
+        }
+
+        String cursor = (heads.isEmpty() || page.isEmpty()) ? null : FeedCursor.of(last).encode();
+        return new CursorResultsObject<>(page, cursor);
+    }
+
+    /**
+     * @return: what entries have to share to be grouped, or null if the entry is never grouped
+     */
+    private static String groupKey(FeedEntry entry) {
+        if (entry.getAction() == null || entry.getAction().equals(FeedInboxes.ACTION_REVIEW)) {
+            return null;
+        }
+        return entry.getAuthorId() + ":" + entry.getAction();
+    }
+
+    private static FeedEntry next(PriorityQueue<Source<?>> heads) {
+        Source<?> source = heads.poll();
+        FeedEntry entry = source.next();
+        if (source.head() != null) {
+            heads.add(source);
+        }
+        return entry;
+    }
+
+    /**
+     * A timeline of items that can be queried newest first from a position
+     */
+    private abstract static class Source<T> {
+        private final Deque<FeedEntry> buffer = new ArrayDeque<>();
+        // Position of the last buffered entry, the next batch is fetched from there
+        private FeedCursor after;
+        private boolean exhausted;
+        private List<T> pending;
+
+        /**
+         * @return: up to limit items with "timestamp <= after.timestamp", newest first
+         */
+        abstract List<T> query(FeedCursor after, int limit);
+
+        abstract FeedEntry entryOf(T item);
+
+        void start(FeedCursor after, int limit) {
+            this.after = after;
+            pending = query(after, limit);
+        }
+
+        FeedEntry head() {
+            return buffer.peekFirst();
+        }
+
+        /**
+         * @return: the head, after which the next batch is fetched if the buffer ran out
+         */
+        FeedEntry next() {
+            FeedEntry entry = buffer.pollFirst();
+            if (buffer.isEmpty() && !exhausted) {
+                fill(BATCH_SIZE);
+            }
+            return entry;
+        }
+
+        void fill(int limit) {
+            List<T> batch = (pending != null) ? pending : query(after, limit);
+            pending = null;
+            while (true) {
+                List<FeedEntry> fetched = new ArrayList<>();
+                for (T item : batch) {
+                    fetched.add(entryOf(item));
+                }
+                List<FeedEntry> entries = FeedCursor.entriesAfter(fetched, limit, after);
+                if (entries != null) {
+                    buffer.addAll(entries);
+                    exhausted = fetched.size() < limit;
+                    if (!entries.isEmpty()) {
+                        after = FeedCursor.of(entries.get(entries.size() - 1));
+                    }
+                    return;
+                }
+                limit *= 2;
+                batch = query(after, limit);
+            }
+        }
+    }
+
+    private class InboxSource extends Source<FeedEntry> {
+        @Override
+        List<FeedEntry> query(FeedCursor after, int limit) {
+            Query<FeedEntry> query = ofy().load().type(FeedEntry.class)
+                    .filter("ownerId", ownerId)
+                    .order("-timestamp");
+            if (after != null) {
+                query = query.filter("timestamp <=", after.getTimestamp());
+            }
+            return query.limit(limit).list();
+        }
+
+        @Override
+        FeedEntry entryOf(FeedEntry entry) {
+            return entry;
+        }
+    }
+
+    private class TimelineSource extends Source<Activity> {
+        private final String authorId;
+
+        TimelineSource(String authorId) {
+            this.authorId = authorId;
+        }
+
+        @Override
+        List<Activity> query(FeedCursor after, int limit) {
+            Query<Activity> query = ofy().load().type(Activity.class)
+                    .filter("userId", authorId)
+                    .order("-timestamp");
+            if (after != null) {
+                query = query.filter("timestamp <=", after.getTimestamp());
+            }
+            return query.limit(limit).list();
+        }
+
+        @Override
+        FeedEntry entryOf(Activity activity) {
+            loaded.put(activity.getId(), activity);
+            return new FeedEntry(ownerId, activity.getId(), authorId,
+                    FeedInboxes.actionOf(activity), FeedInboxes.timestampOf(activity));
+        }
+    }
+}
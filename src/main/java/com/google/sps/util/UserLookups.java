@@ -0,0 +1,49 @@
+package com.google.sps.util;
+
+import com.google.sps.model.user.PublicUserObject;
+import com.google.sps.model.user.UserObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+
+/**
+ * Loads users in bulk, for lists that show many users at once
+ */
+public class UserLookups {
+
+    private UserLookups() {}
+
+    /**
+     * Loads the public profiles of the given users with a single batch get
+     * @param userIds: ids of the users, may contain duplicates
+     * @return: user id -> profile, leaving out users that don't exist
+     */
+    public static Map<String, PublicUserObject> loadPublicProfiles(Collection<String> userIds) {
+        Map<String, PublicUserObject> profiles = new HashMap<>();
+        for (UserObject user : ofy().load().type(UserObject.class).ids(userIds).values()) {
+            profiles.put(user.getId(), new PublicUserObject(user));
+        }
+        return profiles;
+    }
+
+    /**
+     * @param userIds: ids of users
+     * @param profiles: profiles returned by loadPublicProfiles()
+     * @return: the profiles of userIds in the same order, leaving out users that don't exist
+     */
+    public static List<PublicUserObject> inOrder(List<String> userIds, Map<String, PublicUserObject> profiles) {
+        List<PublicUserObject> ordered = new ArrayList<>();
+        for (String userId : userIds) {
+            PublicUserObject profile = profiles.get(userId);
+            if (profile != null) {
+                ordered.add(profile);
+            }
+        }
+        return ordered;
+    }
+}
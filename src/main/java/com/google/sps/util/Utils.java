@@ -31,6 +31,14 @@ public class Utils {
         }
     }
 
+    public static Long parseLong(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch(Exception e) {
+            return null;
+        }
+    }
+
     /**
      * Helper function to parse out body data from requests
      * @param request: the request to parse out from
@@ -0,0 +1,93 @@
+package com.google.sps.graph;
+
+import java.util.Random;
+
+/**
+ * Measures building and querying a SocialGraph of USERS users and EDGES follows,
+ * 1M and 50M by default. Targets are skewed towards a few popular users, like real follow graphs.
+ * Not a unit test, it needs about 3GB of heap. Run it with
+ * MAVEN_OPTS=-Xmx3g mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.google.sps.graph.SocialGraphBenchmark [-Dexec.args="users edges"]
+ */
+public class SocialGraphBenchmark {
+
+    private static final int USERS = 1_000_000;
+    private static final int EDGES = 50_000_000;
+    private static final int QUERIES = 1_000_000;
+    private static final int LIST_QUERIES = 100_000;
+    private static final int DELTAS = 200_000;
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static long checksum;
+
+    public static void main(String[] args) {
+        int users = (args.length > 0) ? Integer.parseInt(args[0]) : USERS;
+        int edges = (args.length > 1) ? Integer.parseInt(args[1]) : EDGES;
+        Random random = new Random(42);
+
+        long buildStart = System.nanoTime();
+        SocialGraph.Builder builder = SocialGraph.builder();
+        for (int user = 0; user < users; user++) {
+            builder.addUser(userId(user));
+        }
+        for (int i = 0; i < edges; i++) {
+            builder.addFollow(random.nextInt(users), skewedUser(random, users));
+        }
+        SocialGraph graph = builder.build();
+        double buildSeconds = (System.nanoTime() - buildStart) / 1e9;
+        System.out.printf("build: %d users, %d edges after dropping duplicates, %.1f s%n",
+                graph.getUserCount(), graph.getEdgeCount(), buildSeconds);
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean print = round == WARMUP_ROUNDS;
+            measure("isFollowing", print, QUERIES, () ->
+                    graph.isFollowing(userId(random.nextInt(users)), userId(skewedUser(random, users))) ? 1 : 0);
+            measure("followsBack", print, QUERIES, () ->
+                    graph.followsBack(userId(random.nextInt(users)), userId(random.nextInt(users))) ? 1 : 0);
+            measure("getFollowerCount", print, QUERIES, () ->
+                    graph.getFollowerCount(userId(skewedUser(random, users))));
+            measure("getFollowing", print, LIST_QUERIES, () ->
+                    graph.getFollowing(userId(random.nextInt(users))).size());
+            measure("getFollowers", print, LIST_QUERIES, () ->
+                    graph.getFollowers(userId(random.nextInt(users))).size());
+            measure("getMutual", print, LIST_QUERIES, () ->
+                    graph.getMutual(userId(random.nextInt(users))).size());
+        }
+
+        measure("addFollow / removeFollow", true, DELTAS, () -> {
+            String userId = userId(random.nextInt(users));
+            String targetId = userId(skewedUser(random, users));
+            if (random.nextBoolean()) graph.addFollow(userId, targetId);
+            else graph.removeFollow(userId, targetId);
+            return 1;
+        });
+        measure("isFollowing with deltas", true, QUERIES, () ->
+                graph.isFollowing(userId(random.nextInt(users)), userId(skewedUser(random, users))) ? 1 : 0);
+        measure("getMutual with deltas", true, LIST_QUERIES, () ->
+                graph.getMutual(userId(random.nextInt(users))).size());
+        System.out.println("checksum " + checksum);
+    }
+
+    private interface Query {
+        long run();
+    }
+
+    private static void measure(String name, boolean print, int count, Query query) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            checksum += query.run();
+        }
+        if (print) {
+            System.out.printf("%s: %.2f us/op%n", name, (System.nanoTime() - start) / 1000.0 / count);
+        }
+    }
+
+    // Squaring a uniform number makes low ids, the "popular" users, much more likely
+    private static int skewedUser(Random random, int users) {
+        double uniform = random.nextDouble();
+        return (int) (uniform * uniform * users);
+    }
+
+    private static String userId(int user) {
+        return "user" + user;
+    }
+}
@@ -0,0 +1,78 @@
+package com.google.sps.model.review;
+
+import com.google.sps.util.Compression;
+import com.thedeanda.lorem.Lorem;
+import com.thedeanda.lorem.LoremIpsum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how much storing review bodies compressed saves, and what inflating them costs,
+ * on bodies generated the same way as DataCreationServlet (2 to 4 lorem ipsum paragraphs).
+ * Not a unit test, run it with
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.google.sps.model.review.ReviewBodyCompressionBenchmark
+ */
+public class ReviewBodyCompressionBenchmark {
+
+    private static final int REVIEWS = 2000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 20;
+
+    public static void main(String[] args) {
+        Lorem lorem = LoremIpsum.getInstance();
+        List<String> bodies = new ArrayList<>();
+        for (int i = 0; i < REVIEWS; i++) {
+            bodies.add(lorem.getParagraphs(2, 4));
+        }
+
+        long rawBytes = 0;
+        long storedBytes = 0;
+        int compressedCount = 0;
+        List<byte[]> compressed = new ArrayList<>();
+        for (String body : bodies) {
+            int size = body.getBytes(StandardCharsets.UTF_8).length;
+            rawBytes += size;
+            if (body.length() >= ReviewObject.COMPRESSION_THRESHOLD) {
+                byte[] data = Compression.deflate(body);
+                compressed.add(data);
+                storedBytes += data.length;
+                compressedCount++;
+            } else {
+                storedBytes += size;
+            }
+        }
+
+        long deflateStart = System.nanoTime();
+        for (String body : bodies) {
+            Compression.deflate(body);
+        }
+        double deflateMicros = (System.nanoTime() - deflateStart) / 1000.0 / bodies.size();
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            inflateAll(compressed);
+        }
+        long inflateStart = System.nanoTime();
+        long checksum = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            checksum += inflateAll(compressed);
+        }
+        double inflateMicros = (System.nanoTime() - inflateStart) / 1000.0 / MEASURED_ROUNDS / compressed.size();
+
+        System.out.printf("reviews: %d, compressed: %d (threshold %d chars)%n",
+                REVIEWS, compressedCount, ReviewObject.COMPRESSION_THRESHOLD);
+        System.out.printf("body bytes: %d raw, %d stored, %.1f%% saved%n",
+                rawBytes, storedBytes, 100.0 * (rawBytes - storedBytes) / rawBytes);
+        System.out.printf("deflate on save: %.1f us/review%n", deflateMicros);
+        System.out.printf("inflate on full read: %.1f us/review (checksum %d)%n", inflateMicros, checksum);
+    }
+
+    private static long inflateAll(List<byte[]> compressed) {
+        long length = 0;
+        for (byte[] data : compressed) {
+            length += Compression.inflate(data).length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,63 @@
+package com.google.sps.search;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.ContextListener;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class ReviewSearchIndexTest {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    @Before
+    public void before() {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testRemoveThroughStaleInstance() {
+        // Each index stands in for another instance, and refreshes at most every few seconds
+        ReviewSearchIndex indexing = new ReviewSearchIndex();
+        ReviewSearchIndex stale = new ReviewSearchIndex();
+        stale.refresh();
+
+        ReviewObject review = saveReview();
+        indexing.add(review);
+        assertFalse(stale.contains(review.getId()));
+
+        assertTrue(stale.remove(review.getId()));
+
+        indexing.refresh();
+        assertFalse(indexing.contains(review.getId()));
+        assertEquals(0, indexing.search("popcorn", 0, 10).getTotal());
+    }
+
+    @Test
+    public void testRemoveUnknownReview() {
+        assertFalse(new ReviewSearchIndex().remove(42L));
+    }
+
+    private ReviewObject saveReview() {
+        UserObject user = new UserObject("123", "test", "test@example.com", "");
+        ReviewObject review = new ReviewObject(user, ContentType.MOVIE, "127", "test movie", "",
+                "Popcorn classic", "Bring popcorn", 5);
+        ofy().save().entity(review).now();
+        return review;
+    }
+}
@@ -0,0 +1,120 @@
+package com.google.sps.servlets.activity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.ContextListener;
+import com.google.sps.model.activity.FollowActivity;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.queue.QueueListItemObject;
+import com.google.sps.util.GlobalActivityBuffer;
+import com.google.sps.util.Metrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class GlobalActivityServletTest {
+
+    private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeClass
+    public static void setUpClass() {
+        new ContextListener().initDbObjects();
+    }
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void restoresNewestActivityOnStartup() throws IOException {
+        int saved = GlobalActivityBuffer.CAPACITY + 5;
+        for (int i = 0; i < saved; i++) {
+            listItem("user" + i, 1000 + i);
+        }
+        GlobalActivityBuffer.get().restore();
+
+        JsonNode latest = getLatest();
+
+        assertEquals(GlobalActivityBuffer.CAPACITY, latest.size());
+        assertEquals(1000 + saved - 1, latest.get(0).get("timestamp").asLong());
+        assertEquals(1005, latest.get(latest.size() - 1).get("timestamp").asLong());
+    }
+
+    @Test
+    public void showsRecordedActivityNewestFirst() throws IOException {
+        GlobalActivityBuffer.get().restore();
+        QueueListItemObject item = listItem("poster", 1000);
+        GlobalActivityBuffer.get().record(item);
+        GlobalActivityBuffer.get().record(new FollowActivity(new FollowItem("poster", "followed")));
+
+        JsonNode latest = getLatest();
+
+        assertEquals(2, latest.size());
+        assertEquals("followed", latest.get(0).get("targetId").asText());
+        assertEquals(item.getId().longValue(), latest.get(1).get("id").asLong());
+
+        GlobalActivityBuffer.get().remove(Collections.singletonList(item.getId()));
+        assertEquals(1, getLatest().size());
+    }
+
+    @Test
+    public void reusesResponseUntilNewActivity() throws IOException {
+        GlobalActivityBuffer.get().restore();
+        GlobalActivityServlet servlet = new GlobalActivityServlet();
+
+        long misses = Metrics.getCount("activity.global.miss");
+        getLatest(servlet);
+        getLatest(servlet);
+        assertEquals(misses + 1, Metrics.getCount("activity.global.miss"));
+
+        GlobalActivityBuffer.get().record(listItem("poster", 1000));
+        assertEquals(1, getLatest(servlet).size());
+        assertEquals(misses + 2, Metrics.getCount("activity.global.miss"));
+    }
+
+    private JsonNode getLatest() throws IOException {
+        return getLatest(new GlobalActivityServlet());
+    }
+
+    private JsonNode getLatest(GlobalActivityServlet servlet) throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        StringWriter writer = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(writer, true));
+
+        servlet.doGet(request, response);
+
+        verify(response).setHeader("Cache-Control", "public, max-age=" + GlobalActivityServlet.MAX_AGE_SECONDS);
+        return mapper.readTree(writer.toString());
+    }
+
+    private QueueListItemObject listItem(String userId, long timestamp) {
+        QueueListItemObject item = new QueueListItemObject();
+        item.setUserId(userId);
+        item.setTimestamp(timestamp);
+        ofy().save().entity(item).now();
+        return item;
+    }
+}
@@ -0,0 +1,102 @@
+package com.google.sps.servlets.activity;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.model.queue.QueueListItemObject;
+import com.google.sps.model.user.UserStats;
+import com.google.sps.util.FeedInboxes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class NewActivityServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws IOException {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testNewerInboxEntry() throws IOException {
+        ofy().save().entity(new FeedEntry("0123", 42L, "9876", MediaListItem.TYPE_QUEUE, 2000)).now();
+
+        assertTrue(hasNewer("0123", "1000"));
+        assertFalse(hasNewer("0123", "2000"));
+        assertFalse(hasNewer("3210", "1000"));
+    }
+
+    @Test
+    public void testNewerCelebrityActivity() throws IOException {
+        ofy().save().entities(new FollowItem("0123", "9876"), new UserStats("9876", 1, 0)).now();
+        QueueListItemObject queue = new QueueListItemObject();
+        queue.setUserId("9876");
+        queue.setListType(MediaListItem.TYPE_QUEUE);
+        queue.setTimestamp(2000);
+        ofy().save().entity(queue).now();
+
+        System.setProperty(FeedInboxes.CELEBRITY_THRESHOLD_PROPERTY, "1");
+        try {
+            assertTrue(hasNewer("0123", "1000"));
+            assertFalse(hasNewer("0123", "2000"));
+        } finally {
+            System.clearProperty(FeedInboxes.CELEBRITY_THRESHOLD_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testInvalidSince() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("0123");
+        when(request.getParameter("since")).thenReturn("yesterday");
+
+        new NewActivityServlet().doGet(request, response);
+
+        verify(response, times(1)).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private boolean hasNewer(String userId, String since) throws IOException {
+        stringWriter.getBuffer().setLength(0);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(userId);
+        when(request.getParameter("since")).thenReturn(since);
+
+        new NewActivityServlet().doGet(request, response);
+        writer.flush();
+
+        return JsonParser.parseString(stringWriter.toString()).getAsJsonObject().get("newer").getAsBoolean();
+    }
+}
@@ -1,17 +1,28 @@
 package com.google.sps.servlets.activity;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
 import com.google.sps.ContextListener;
+import com.google.sps.graph.SocialGraphService;
 import com.google.sps.model.activity.Activity;
+import com.google.sps.model.activity.FeedEntry;
 import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.queue.MediaListItem;
 import com.google.sps.model.queue.QueueListItemObject;
 import com.google.sps.model.queue.ViewedListItemObject;
 import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.user.FollowerCountShard;
 import com.google.sps.model.user.UserObject;
+import com.google.sps.model.user.UserStats;
+import com.google.sps.servlets.jobs.FeedFanOutServlet;
+import com.google.sps.util.FeedCache;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.Metrics;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -23,6 +34,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +77,8 @@ public class RecentActivityServletTest {
 
     @After
     public void tearDown() {
+        FeedCache.get().evict("0123");
+        FeedCache.get().evict("9876");
         helper.tearDown();
         ofy().clear();
     }
@@ -112,20 +126,246 @@ public class RecentActivityServletTest {
 
         assertEquals( 0, activityList.size());
     }
+    @Test
+    public void getInboxList() throws ServletException, IOException {
+        addFollowers();
+        QueueListItemObject queue = ofy().load().type(QueueListItemObject.class).first().now();
+        fanOut(queue.getId());
+
+        // charlie isn't followed by bravo any more, so their review is left out
+        UserObject charlie = ofy().load().type(UserObject.class).id("3210").now();
+        ofy().save().entity(new FollowItem("0123", "3210")).now();
+        ReviewObject review = new ReviewObject(charlie, "movie", "127", "title", "", "review", "body", 4);
+        ofy().save().entity(review).now();
+        fanOut(review.getId());
+        ofy().delete().entity(new FollowItem("0123", "3210")).now();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("0123");
+        when(request.getParameter("pageNumber")).thenReturn("0");
+
+        new RecentActivityServlet().doGet(request, response);
+
+        writer.flush();
+
+        List<QueueListItemObject> activityList = mapper.readValue(stringWriter.toString(), new TypeReference<List<QueueListItemObject>>(){});
+
+        assertEquals(1, activityList.size());
+        assertEquals(2, ofy().load().type(FeedEntry.class).filter("ownerId", "0123").count());
+    }
+
+    @Test
+    public void getCelebrityActivityOnce() throws ServletException, IOException {
+        addFollowers();
+        // alpha's queue item was delivered while alpha had few followers, and is now pulled too
+        QueueListItemObject queue = ofy().load().type(QueueListItemObject.class).first().now();
+        fanOut(queue.getId());
+
+        System.setProperty(FeedInboxes.CELEBRITY_THRESHOLD_PROPERTY, "1");
+        try {
+            HttpServletRequest request = mock(HttpServletRequest.class);
+            when(request.getParameter("userId")).thenReturn("0123");
+            when(request.getParameter("pageNumber")).thenReturn("0");
+
+            new RecentActivityServlet().doGet(request, response);
+        } finally {
+            System.clearProperty(FeedInboxes.CELEBRITY_THRESHOLD_PROPERTY);
+        }
+
+        writer.flush();
+
+        List<QueueListItemObject> activityList = mapper.readValue(stringWriter.toString(), new TypeReference<List<QueueListItemObject>>(){});
+
+        assertEquals(1, activityList.size());
+        assertEquals(queue.getId(), activityList.get(0).getId());
+    }
+
+    @Test
+    public void getCelebrityActivityWhenShardSumIsEvicted() throws ServletException, IOException {
+        addFollowers();
+        // alpha's stats were computed before alpha gained followers, which are all in shards
+        FollowerCountShard shard = new FollowerCountShard(FollowerCountShard.makeId("9876", 0));
+        shard.add(2);
+        ofy().save().entities(new UserStats("9876", 0, 1), shard).now();
+        QueueListItemObject queue = ofy().load().type(QueueListItemObject.class).first().now();
+
+        System.setProperty(FeedInboxes.CELEBRITY_THRESHOLD_PROPERTY, "2");
+        try {
+            // The fan-out sees a celebrity and delivers nothing
+            fanOut(queue.getId());
+            assertEquals(0, ofy().load().type(FeedEntry.class).count());
+            MemcacheServiceFactory.getMemcacheService("followerShards").delete("9876");
+
+            HttpServletRequest request = mock(HttpServletRequest.class);
+            when(request.getParameter("userId")).thenReturn("0123");
+            when(request.getParameter("pageNumber")).thenReturn("0");
+
+            new RecentActivityServlet().doGet(request, response);
+        } finally {
+            System.clearProperty(FeedInboxes.CELEBRITY_THRESHOLD_PROPERTY);
+        }
+
+        writer.flush();
+
+        List<QueueListItemObject> activityList = mapper.readValue(stringWriter.toString(), new TypeReference<List<QueueListItemObject>>(){});
+
+        assertEquals(1, activityList.size());
+        assertEquals(queue.getId(), activityList.get(0).getId());
+    }
+
+    @Test
+    public void getActivityOfManyFollowingsByCursor() throws ServletException, IOException {
+        // more followings than an IN filter allows, none of whose activity was delivered
+        int followingCount = 40;
+        for (int i = 0; i < followingCount; i++) {
+            addActivityOfFollowing("user" + i, 1000 + i);
+        }
+
+        List<Long> timestamps = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        while (cursor != null) {
+            JsonNode page = getPage(cursor);
+            for (JsonNode activity : page.get("results")) {
+                timestamps.add(activity.get("timestamp").asLong());
+            }
+            // Gson leaves out the cursor once it is null
+            cursor = page.has("cursor") ? page.get("cursor").asText() : null;
+            pages++;
+        }
+
+        assertEquals(4, pages);
+        assertEquals(followingCount, timestamps.size());
+        for (int i = 0; i < followingCount; i++) {
+            assertEquals(1000 + followingCount - 1 - i, (long) timestamps.get(i));
+        }
+    }
+
+    @Test
+    public void pagesDontShiftWhenActivityArrives() throws ServletException, IOException {
+        for (int i = 0; i < 15; i++) {
+            addActivityOfFollowing("user" + i, 1000 + i);
+        }
+        List<QueueListItemObject> firstPage = getPageByNumber(0);
+
+        // would push the first page's last activity onto the second page, if pages were offsets
+        addActivityOfFollowing("user15", 2000);
+        List<QueueListItemObject> secondPage = getPageByNumber(10);
+
+        assertEquals(10, firstPage.size());
+        assertEquals(5, secondPage.size());
+        assertEquals(1005, secondPage.get(0).getTimestamp());
+    }
+
+    @Test
+    public void refreshIsServedFromCache() throws ServletException, IOException {
+        addFollowers();
+        SocialGraphService.get().reload();
+        assertEquals(1, getPageByNumber(0).size());
+
+        // saved behind the cache's back, so only seen once the feed is read again
+        QueueListItemObject hidden = new QueueListItemObject();
+        hidden.setUserId("9876");
+        ofy().save().entity(hidden).now();
+        long hits = Metrics.getCount("feed.cache.hit");
+        assertEquals(1, getPageByNumber(0).size());
+        assertEquals(hits + 1, Metrics.getCount("feed.cache.hit"));
+
+        QueueListItemObject inserted = new QueueListItemObject();
+        inserted.setUserId("9876");
+        inserted.setTimestamp(hidden.getTimestamp() + 1);
+        ofy().save().entity(inserted).now();
+        FeedCache.get().insert(inserted);
+        List<QueueListItemObject> page = getPageByNumber(0);
+        assertEquals(2, page.size());
+        assertEquals(inserted.getId(), page.get(0).getId());
+
+        FeedCache.get().evict("0123");
+        assertEquals(3, getPageByNumber(0).size());
+    }
+
+    @Test
+    public void burstOfListActivityIsOneItem() throws ServletException, IOException {
+        for (int i = 0; i < 30; i++) {
+            addActivityOfFollowing("user0", 1000 + i);
+        }
+        addActivityOfFollowing("user1", 500);
+
+        JsonNode page = getPage("");
+
+        JsonNode results = page.get("results");
+        assertEquals(2, results.size());
+        assertEquals("user0", results.get(0).get("userId").asText());
+        assertEquals(30, results.get(0).get("count").asInt());
+        assertEquals(1029, results.get(0).get("timestamp").asLong());
+        assertEquals(3, results.get(0).get("items").size());
+        assertEquals("user1", results.get(1).get("userId").asText());
+        assertEquals(false, page.has("cursor"));
+    }
+
+    @Test
+    public void invalidCursor() throws ServletException, IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("0123");
+        when(request.getParameter("cursor")).thenReturn("not a cursor");
+
+        new RecentActivityServlet().doGet(request, response);
+
+        verify(response, times(1)).setStatus(400);
+    }
+
+    private JsonNode getPage(String cursor) throws ServletException, IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("0123");
+        when(request.getParameter("cursor")).thenReturn(cursor);
+        HttpServletResponse pageResponse = mock(HttpServletResponse.class);
+        StringWriter pageWriter = new StringWriter();
+        when(pageResponse.getWriter()).thenReturn(new PrintWriter(pageWriter, true));
+
+        new RecentActivityServlet().doGet(request, pageResponse);
+
+        return mapper.readTree(pageWriter.toString());
+    }
+
+    private List<QueueListItemObject> getPageByNumber(int pageNumber) throws ServletException, IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("0123");
+        when(request.getParameter("pageNumber")).thenReturn(String.valueOf(pageNumber));
+        HttpServletResponse pageResponse = mock(HttpServletResponse.class);
+        StringWriter pageWriter = new StringWriter();
+        when(pageResponse.getWriter()).thenReturn(new PrintWriter(pageWriter, true));
+
+        new RecentActivityServlet().doGet(request, pageResponse);
+
+        return mapper.readValue(pageWriter.toString(), new TypeReference<List<QueueListItemObject>>(){});
+    }
+
+    // bravo follows the user, who queues something at the given time
+    private void addActivityOfFollowing(String userId, long timestamp) {
+        ofy().save().entity(new FollowItem("0123", userId)).now();
+        QueueListItemObject queue = new QueueListItemObject();
+        queue.setUserId(userId);
+        queue.setListType(MediaListItem.TYPE_QUEUE);
+        queue.setTimestamp(timestamp);
+        ofy().save().entity(queue).now();
+    }
+
+    private void fanOut(long activityId) throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("activityId")).thenReturn(String.valueOf(activityId));
+        HttpServletResponse fanOutResponse = mock(HttpServletResponse.class);
+        when(fanOutResponse.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        new FeedFanOutServlet().doPost(request, fanOutResponse);
+    }
+
     private void addFollowers() {
         //bravo follows alpha
-        FollowItem followers = new FollowItem();
-        followers.setId(1234L);
-        followers.setUserId("0123");
-        followers.setTargetId("9876");
+        FollowItem followers = new FollowItem("0123", "9876");
 
         ofy().save().entity(followers).now();
 
         //alpha follows charlie
-        FollowItem following = new FollowItem();
-        following.setId(4321L);
-        following.setUserId("9876");
-        following.setTargetId("3210");
+        FollowItem following = new FollowItem("9876", "3210");
 
         ofy().save().entity(following).now();
 
@@ -139,7 +379,6 @@ public class RecentActivityServletTest {
         ofy().save().entity(charlie).now();
 
         QueueListItemObject queue = new QueueListItemObject();
-        following.setId(4321L);
         queue.setArtUrl("http://fdsa");
         queue.setUserId("9876");
         ofy().save().entity(queue).now();
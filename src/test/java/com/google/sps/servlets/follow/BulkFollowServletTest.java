@@ -0,0 +1,93 @@
+package com.google.sps.servlets.follow;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.ContextListener;
+import com.google.sps.model.follow.FollowItem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class BulkFollowServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @BeforeClass
+    public static void initialize() {
+        new ContextListener().initDbObjects();
+    }
+
+    @Before
+    public void before() throws IOException {
+        helper.setUp();
+        response = mock(HttpServletResponse.class);
+
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+
+        ofy().save().entity(new FollowItem("123", "456")).now();
+        ofy().save().entity(new FollowItem("123", "789")).now();
+        ofy().save().entity(new FollowItem("456", "123")).now();
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testGetStatusInOrder() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("123");
+        when(request.getParameter("targetIds")).thenReturn("789,000,456,789");
+
+        new BulkFollowServlet().doGet(request, response);
+        writer.flush();
+
+        assertEquals("[true,false,true,true]", stringWriter.toString().trim());
+    }
+
+    @Test
+    public void testGetEmptyTargetId() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("123");
+        when(request.getParameter("targetIds")).thenReturn("456,,789");
+
+        new BulkFollowServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testGetTooManyTargets() throws IOException {
+        StringBuilder targetIds = new StringBuilder("0");
+        for (int i = 1; i <= BulkFollowServlet.MAX_TARGETS; i++) {
+            targetIds.append(",").append(i);
+        }
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("123");
+        when(request.getParameter("targetIds")).thenReturn(targetIds.toString());
+
+        new BulkFollowServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+}
@@ -6,10 +6,13 @@ import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestC
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
 import com.google.sps.ContextListener;
+import com.google.sps.model.user.PublicUserObject;
 import com.google.sps.model.user.UserObject;
+import com.google.sps.model.user.UserStats;
 import com.google.sps.model.follow.FollowItem;
 import com.google.sps.model.follow.FollowListObject;
 import com.google.sps.servlets.TestDelegatingServletInputStream;
+import com.google.sps.util.FollowLookups;
 
 import org.junit.Test;
 import org.junit.After;
@@ -27,9 +30,14 @@ import java.util.List;
 import java.util.Map;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import static com.googlecode.objectify.ObjectifyService.ofy;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
 
 public class FollowServletTest extends Mockito {
     private LocalServiceTestHelper helper;
@@ -38,7 +46,7 @@ public class FollowServletTest extends Mockito {
     private StringWriter stringWriter;
     private PrintWriter writer;
     private FollowListObject listObject;
-    Gson gson = new Gson();
+    Gson gson = new GsonBuilder().serializeNulls().create();
 
     @Before
     public void before() throws IOException{
@@ -84,6 +92,56 @@ public class FollowServletTest extends Mockito {
         assertEquals(stringWriter.toString().trim(), expected);
     }
 
+    @Test
+    public void testFollowListsOmitEmail() throws IOException, ServletException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        when(request.getParameter("userId")).thenReturn("9876");
+
+        new FollowServlet().doGet(request, response);
+        writer.flush();
+
+        assertFalse(stringWriter.toString().contains("email"));
+        assertEquals("bravo@example.com", ofy().load().type(UserObject.class).id("0123").now().getEmail());
+    }
+
+    @Test
+    public void testFollowersCursorPagination() throws IOException, ServletException {
+        // 25 more users follow alpha, one millisecond apart
+        for (int i = 0; i < 25; i++) {
+            String followerId = "follower" + i;
+            ofy().save().entity(new UserObject(followerId, "user" + i, followerId + "@example.com", "")).now();
+            FollowItem followItem = new FollowItem(followerId, "9876");
+            followItem.setTimestamp(1000 + i);
+            ofy().save().entity(followItem).now();
+        }
+
+        JsonObject firstPage = getFollowersPage(null);
+        assertEquals(20, firstPage.getAsJsonArray("followersList").size());
+        // bravo followed most recently
+        assertEquals("0123", firstPage.getAsJsonArray("followersList")
+                .get(0).getAsJsonObject().get("id").getAsString());
+        assertEquals("follower24", firstPage.getAsJsonArray("followersList")
+                .get(1).getAsJsonObject().get("id").getAsString());
+        assertTrue(firstPage.get("followingList").isJsonNull());
+
+        JsonObject secondPage = getFollowersPage(firstPage.get("followersCursor").getAsString());
+        assertEquals(6, secondPage.getAsJsonArray("followersList").size());
+        assertTrue(secondPage.get("followersCursor").isJsonNull());
+    }
+
+    @Test
+    public void testGetInvalidList() throws IOException, ServletException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        when(request.getParameter("userId")).thenReturn("9876");
+        when(request.getParameter("list")).thenReturn("friends");
+
+        new FollowServlet().doGet(request, response);
+
+        verify(response, times(1)).setStatus(400);
+    }
+
     @Test
     public void testTrueFollowingBoolean() throws IOException, ServletException {
         HttpServletRequest request = mock(HttpServletRequest.class);
@@ -155,6 +213,24 @@ public class FollowServletTest extends Mockito {
         assertEquals(2, ofy().load().type(FollowItem.class).filter("userId", "9876").list().size());
     }
 
+    @Test
+    public void testPostFollowingKey() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        String json = "{\n" +
+                "\t\"userId\": \"9876\",\n" +
+                "\t\"targetId\": \"0123\"\n" +
+                "}";
+        when(request.getReader()).thenReturn(
+                new BufferedReader(new StringReader(json)));
+
+        new FollowServlet().doPost(request,response);
+        writer.flush();
+
+        FollowItem saved = ofy().load().type(FollowItem.class).id(FollowItem.makeId("9876", "0123")).now();
+        assertEquals("0123", saved.getTargetId());
+    }
+
     @Test
     public void testNonStoredTarget() throws IOException {
         HttpServletRequest request = mock(HttpServletRequest.class);
@@ -209,6 +285,34 @@ public class FollowServletTest extends Mockito {
         assertEquals(1, ofy().load().type(FollowItem.class).list().size());
     }
 
+    @Test
+    public void testFollowCountsUpdated() throws IOException {
+        // Compute the stored counts before following
+        assertEquals(1, FollowLookups.loadStats("9876").getFollowingCount());
+        assertEquals(0, FollowLookups.loadStats("0123").getFollowerCount());
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        String json = "{\n" +
+                "\t\"userId\": \"9876\",\n" +
+                "\t\"targetId\": \"0123\"\n" +
+                "}";
+        when(request.getReader()).thenReturn(
+                new BufferedReader(new StringReader(json)));
+        new FollowServlet().doPost(request, response);
+
+        assertEquals(2, ofy().load().type(UserStats.class).id("9876").now().getFollowingCount());
+        // Followers are counted in shards, the stored count stays as it was
+        assertEquals(0, ofy().load().type(UserStats.class).id("0123").now().getFollowerCount());
+        assertEquals(1, FollowLookups.loadStats("0123").getFollowerCount());
+
+        HttpServletRequest deleteRequest = mock(HttpServletRequest.class);
+        when(deleteRequest.getParameter("followingId")).thenReturn("0123");
+        new FollowServlet().doDelete(deleteRequest, response);
+
+        assertEquals(1, ofy().load().type(UserStats.class).id("9876").now().getFollowingCount());
+        assertEquals(0, FollowLookups.loadStats("0123").getFollowerCount());
+    }
+
     @Test
     public void testNoDeleteTarget() throws IOException {
         HttpServletRequest request = mock(HttpServletRequest.class);
@@ -240,20 +344,29 @@ public class FollowServletTest extends Mockito {
         verify(response, times(1)).setStatus(HttpServletResponse.SC_UNAUTHORIZED);
     }
 
+    private JsonObject getFollowersPage(String cursor) throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("9876");
+        when(request.getParameter("list")).thenReturn(FollowItem.TYPE_FOLLOWERS);
+        when(request.getParameter("followersCursor")).thenReturn(cursor);
+
+        StringWriter pageWriter = new StringWriter();
+        HttpServletResponse pageResponse = mock(HttpServletResponse.class);
+        when(pageResponse.getWriter()).thenReturn(new PrintWriter(pageWriter));
+
+        new FollowServlet().doGet(request, pageResponse);
+        pageResponse.getWriter().flush();
+        return JsonParser.parseString(pageWriter.toString()).getAsJsonObject();
+    }
+
     private void addFollowers() {
         //bravo follows alpha
-        FollowItem followers = new FollowItem();
-        followers.setId(1234L);
-        followers.setUserId("0123");
-        followers.setTargetId("9876");
+        FollowItem followers = new FollowItem("0123", "9876");
 
         ofy().save().entity(followers).now();
 
         //alpha follows charlie
-        FollowItem following = new FollowItem();
-        following.setId(4321L);
-        following.setUserId("9876");
-        following.setTargetId("3210");
+        FollowItem following = new FollowItem("9876", "3210");
 
         ofy().save().entity(following).now();
 
@@ -266,11 +379,11 @@ public class FollowServletTest extends Mockito {
         UserObject charlie = new UserObject("3210", "charlie", "charlie@example.com", "");
         ofy().save().entity(charlie).now();
 
-        List<UserObject> followerList = new ArrayList<UserObject>();
-        followerList.add(bravo);
+        List<PublicUserObject> followerList = new ArrayList<PublicUserObject>();
+        followerList.add(new PublicUserObject(bravo));
 
-        List<UserObject> followingList = new ArrayList<UserObject>();
-        followingList.add(charlie);
+        List<PublicUserObject> followingList = new ArrayList<PublicUserObject>();
+        followingList.add(new PublicUserObject(charlie));
 
         listObject = new FollowListObject(followerList, followingList, 1, 1);
     }
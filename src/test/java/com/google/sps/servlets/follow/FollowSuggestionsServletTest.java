@@ -0,0 +1,149 @@
+package com.google.sps.servlets.follow;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.graph.SocialGraphService;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class FollowSuggestionsServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @BeforeClass
+    public static void initialize() {
+        new ContextListener().initDbObjects();
+    }
+
+    @Before
+    public void before() throws IOException {
+        helper.setUp();
+        response = mock(HttpServletResponse.class);
+
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testFriendsOfFriendsRankedByPaths() throws IOException {
+        saveUsers("fof-a", "fof-b", "fof-c", "fof-d", "fof-e");
+        follow("fof-a", "fof-b");
+        follow("fof-a", "fof-c");
+        follow("fof-b", "fof-d");
+        follow("fof-c", "fof-d");
+        follow("fof-c", "fof-e");
+        follow("fof-c", "fof-a");
+        SocialGraphService.get().reload();
+
+        JsonArray suggestions = getSuggestions("fof-a");
+
+        assertEquals(2, suggestions.size());
+        JsonObject first = suggestions.get(0).getAsJsonObject();
+        assertEquals("fof-d", first.get("userId").getAsString());
+        assertEquals(2, first.get("followedBy").getAsInt());
+        assertEquals("fof-d", first.getAsJsonObject("user").get("username").getAsString());
+        assertEquals("fof-e", suggestions.get(1).getAsJsonObject().get("userId").getAsString());
+    }
+
+    @Test
+    public void testFollowedUsersAreNotSuggested() throws IOException {
+        saveUsers("followed-a", "followed-b", "followed-c");
+        follow("followed-a", "followed-b");
+        follow("followed-b", "followed-c");
+        SocialGraphService.get().reload();
+        assertEquals(1, getSuggestions("followed-a").size());
+
+        FollowItem followItem = new FollowItem("followed-a", "followed-c");
+        ofy().save().entity(followItem).now();
+        SocialGraphService.get().applyFollow(followItem);
+
+        assertEquals(0, getSuggestions("followed-a").size());
+    }
+
+    @Test
+    public void testSuggestsUsersWithSameTaste() throws IOException {
+        saveUsers("taste-a", "taste-b", "taste-c");
+        review("taste-a", "taste-movie", 5);
+        review("taste-b", "taste-movie", 5);
+        review("taste-c", "taste-movie", 1);
+        SocialGraphService.get().reload();
+
+        JsonArray suggestions = getSuggestions("taste-a");
+
+        // taste-c rated the movie at the other end of the scale, so has nothing in common
+        assertEquals(1, suggestions.size());
+        JsonObject first = suggestions.get(0).getAsJsonObject();
+        assertEquals("taste-b", first.get("userId").getAsString());
+        assertEquals(1, first.get("sharedRatings").getAsInt());
+    }
+
+    @Test
+    public void testGetInvalidLimit() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("fof-a");
+        when(request.getParameter("limit")).thenReturn("none");
+
+        new FollowSuggestionsServlet().doGet(request, response);
+
+        verify(response, times(1)).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private JsonArray getSuggestions(String userId) throws IOException {
+        stringWriter.getBuffer().setLength(0);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(userId);
+
+        new FollowSuggestionsServlet().doGet(request, response);
+        writer.flush();
+
+        return new JsonParser().parse(stringWriter.toString()).getAsJsonArray();
+    }
+
+    private void saveUsers(String... userIds) {
+        for (String userId : userIds) {
+            ofy().save().entity(new UserObject(userId, userId, userId + "@example.com", "")).now();
+        }
+    }
+
+    private void follow(String userId, String targetId) {
+        ofy().save().entity(new FollowItem(userId, targetId)).now();
+    }
+
+    private void review(String userId, String movieId, int rating) {
+        UserObject user = ofy().load().type(UserObject.class).id(userId).now();
+        ofy().save().entity(new ReviewObject(user, ContentType.MOVIE, movieId,
+                "title", "", "review", "body", rating)).now();
+    }
+}
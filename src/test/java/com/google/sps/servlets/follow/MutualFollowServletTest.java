@@ -0,0 +1,156 @@
+package com.google.sps.servlets.follow;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.graph.SocialGraphService;
+import com.google.sps.model.follow.FollowChange;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.user.UserObject;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class MutualFollowServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @BeforeClass
+    public static void initialize() {
+        new ContextListener().initDbObjects();
+        System.setProperty(SocialGraphService.REFRESH_MILLIS_PROPERTY, "0");
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        System.clearProperty(SocialGraphService.REFRESH_MILLIS_PROPERTY);
+    }
+
+    @Before
+    public void before() throws IOException {
+        helper.setUp();
+        response = mock(HttpServletResponse.class);
+
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+
+        for (String userId : new String[] {"alice", "bob", "carol", "dave"}) {
+            ofy().save().entity(new UserObject(userId, userId, userId + "@example.com", "")).now();
+        }
+        ofy().save().entity(new FollowItem("alice", "bob")).now();
+        ofy().save().entity(new FollowItem("alice", "carol")).now();
+        ofy().save().entity(new FollowItem("bob", "alice")).now();
+        ofy().save().entity(new FollowItem("dave", "alice")).now();
+        SocialGraphService.get().reload();
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testGetMutual() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("alice");
+
+        new MutualFollowServlet().doGet(request, response);
+        writer.flush();
+
+        JsonArray mutual = new JsonParser().parse(stringWriter.toString()).getAsJsonArray();
+        assertEquals(1, mutual.size());
+        assertEquals("bob", mutual.get(0).getAsJsonObject().get("id").getAsString());
+        assertFalse(stringWriter.toString().contains("email"));
+    }
+
+    @Test
+    public void testGetRelationship() throws IOException {
+        JsonObject relationship = getRelationship("alice", "carol");
+
+        assertTrue(relationship.get("following").getAsBoolean());
+        assertFalse(relationship.get("followsBack").getAsBoolean());
+    }
+
+    @Test
+    public void testAppliedFollowsAreSeen() throws IOException {
+        FollowItem followItem = new FollowItem("carol", "alice");
+        ofy().save().entity(followItem).now();
+        SocialGraphService.get().applyFollow(followItem);
+
+        JsonObject relationship = getRelationship("alice", "carol");
+
+        assertTrue(relationship.get("following").getAsBoolean());
+        assertTrue(relationship.get("followsBack").getAsBoolean());
+    }
+
+    @Test
+    public void testAppliedUnfollowsAreSeen() throws IOException {
+        FollowItem followItem = new FollowItem("bob", "alice");
+        ofy().delete().entity(followItem).now();
+        SocialGraphService.get().applyUnfollow(followItem);
+
+        JsonObject relationship = getRelationship("alice", "bob");
+
+        assertTrue(relationship.get("following").getAsBoolean());
+        assertFalse(relationship.get("followsBack").getAsBoolean());
+    }
+
+    @Test
+    public void testChangesFromOtherInstancesAreSeen() throws IOException {
+        FollowItem followItem = new FollowItem("carol", "alice");
+        FollowItem unfollowed = new FollowItem("alice", "bob");
+        ofy().save().entities(followItem, new FollowChange(followItem, true)).now();
+        ofy().delete().entity(unfollowed).now();
+        ofy().save().entity(new FollowChange(unfollowed, false)).now();
+
+        JsonObject relationship = getRelationship("alice", "carol");
+        assertTrue(relationship.get("followsBack").getAsBoolean());
+        stringWriter.getBuffer().setLength(0);
+        relationship = getRelationship("alice", "bob");
+        assertFalse(relationship.get("following").getAsBoolean());
+    }
+
+    @Test
+    public void testGetInvalidLimit() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("alice");
+        when(request.getParameter("limit")).thenReturn("-1");
+
+        new MutualFollowServlet().doGet(request, response);
+
+        verify(response, times(1)).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private JsonObject getRelationship(String userId, String otherId) throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(userId);
+        when(request.getParameter("otherId")).thenReturn(otherId);
+
+        new MutualFollowServlet().doGet(request, response);
+        writer.flush();
+
+        return new JsonParser().parse(stringWriter.toString()).getAsJsonObject();
+    }
+}
@@ -0,0 +1,85 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.ContextListener;
+import com.google.sps.model.review.ReviewObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class ActivityReindexServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testDropsObsoleteIndexes() throws Exception {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+        // A review written before reviewBody was unindexed
+        Entity legacy = new Entity("Activity");
+        legacy.setUnindexedProperty("^d", "ReviewObject");
+        legacy.setIndexedProperty("^i", Collections.singletonList("ReviewObject"));
+        legacy.setIndexedProperty("userId", "123");
+        legacy.setIndexedProperty("timestamp", 1L);
+        legacy.setIndexedProperty("reviewBody", "This is a test review");
+        Key key = datastore.put(legacy);
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        new ActivityReindexServlet().doGet(request, response);
+        writer.flush();
+
+        Entity resaved = datastore.get(key);
+        assertTrue(resaved.isUnindexedProperty("reviewBody"));
+        assertFalse(resaved.isUnindexedProperty("userId"));
+
+        ReviewObject review = ofy().load().type(ReviewObject.class).id(key.getId()).now();
+        assertEquals("This is a test review", review.getReviewBody());
+    }
+
+    @Test
+    public void testBadCursor() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("cursor")).thenReturn("%%%");
+
+        new ActivityReindexServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+}
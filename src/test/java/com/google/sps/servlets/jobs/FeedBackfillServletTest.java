@@ -0,0 +1,109 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class FeedBackfillServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testCopiesLatestActivity() throws Exception {
+        UserObject alpha = new UserObject("9876", "alpha", "alpha@example.com", "");
+        ofy().save().entities(alpha, new FollowItem("0123", "9876")).now();
+        for (int i = 0; i < FeedBackfillServlet.BACKFILL_SIZE + 2; i++) {
+            ReviewObject review = new ReviewObject(alpha, ContentType.MOVIE, String.valueOf(i),
+                    "title", "", "review", "body", 4);
+            review.setTimestamp(1000L + i);
+            ofy().save().entity(review).now();
+        }
+
+        // Running the task twice, as a retry would, writes every entry once
+        JsonObject result = backfill("0123", "9876");
+        backfill("0123", "9876");
+
+        assertEquals(FeedBackfillServlet.BACKFILL_SIZE, result.get("delivered").getAsInt());
+        assertFalse(result.get("pulled").getAsBoolean());
+        assertEquals(FeedBackfillServlet.BACKFILL_SIZE, ofy().load().type(FeedEntry.class).count());
+        FeedEntry oldest = ofy().load().type(FeedEntry.class).order("timestamp").first().now();
+        assertEquals("0123", oldest.getOwnerId());
+        assertEquals("9876", oldest.getAuthorId());
+        assertEquals(1002L, oldest.getTimestamp());
+    }
+
+    @Test
+    public void testUnfollowedMeanwhile() throws Exception {
+        UserObject alpha = new UserObject("9876", "alpha", "alpha@example.com", "");
+        ofy().save().entities(alpha, new ReviewObject(alpha, ContentType.MOVIE, "127",
+                "title", "", "review", "body", 4)).now();
+
+        JsonObject result = backfill("0123", "9876");
+
+        assertEquals(0, result.get("delivered").getAsInt());
+        assertEquals(0, ofy().load().type(FeedEntry.class).count());
+    }
+
+    @Test
+    public void testMissingTarget() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn("0123");
+
+        new FeedBackfillServlet().doPost(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private JsonObject backfill(String userId, String targetId) throws Exception {
+        stringWriter.getBuffer().setLength(0);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(userId);
+        when(request.getParameter("targetId")).thenReturn(targetId);
+
+        new FeedBackfillServlet().doPost(request, response);
+        writer.flush();
+
+        return JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+    }
+}
@@ -0,0 +1,116 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.model.queue.QueueListItemObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class FeedCompactionServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testDeletesExpiredEntries() throws Exception {
+        long now = System.currentTimeMillis();
+        FeedEntry recent = deliver("0123", "9876", now);
+        FeedEntry expired = deliver("0123", "9876", now - TimeUnit.DAYS.toMillis(FeedCompactionServlet.DEFAULT_RETENTION_DAYS + 1));
+
+        JsonObject result = compact(null);
+
+        assertNotNull(ofy().load().type(FeedEntry.class).id(recent.getId()).now());
+        assertNull(ofy().load().type(FeedEntry.class).id(expired.getId()).now());
+        assertEquals(1, result.get("expired").getAsInt());
+        assertEquals(FeedCompactionServlet.indexBytes(expired.getId()), result.get("indexBytes").getAsLong());
+        assertFalse(result.has("cursor"));
+
+        // The finished run released its lease, so the next one runs
+        assertFalse(compact(null).has("running"));
+    }
+
+    @Test
+    public void testOverlappingRunDoesNothing() throws Exception {
+        long now = System.currentTimeMillis();
+        FeedEntry expired = deliver("0123", "9876", now - TimeUnit.DAYS.toMillis(FeedCompactionServlet.DEFAULT_RETENTION_DAYS + 1));
+        MemcacheServiceFactory.getMemcacheService("jobLeases").put("/jobs/compactFeeds", 1000L);
+
+        JsonObject result = compact(null);
+
+        assertEquals(1000L, result.get("running").getAsLong());
+        assertNotNull(ofy().load().type(FeedEntry.class).id(expired.getId()).now());
+
+        // The batches of the run holding the lease go on
+        assertEquals(0, compact("1000").get("expired").getAsInt());
+    }
+
+    @Test
+    public void testBadCutoff() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("before")).thenReturn("yesterday");
+
+        new FeedCompactionServlet().doGet(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private JsonObject compact(String before) throws Exception {
+        stringWriter.getBuffer().setLength(0);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("before")).thenReturn(before);
+
+        new FeedCompactionServlet().doGet(request, response);
+        writer.flush();
+
+        return JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+    }
+
+    private FeedEntry deliver(String ownerId, String authorId, long timestamp) {
+        QueueListItemObject item = new QueueListItemObject();
+        item.setUserId(authorId);
+        item.setListType(MediaListItem.TYPE_QUEUE);
+        item.setTimestamp(timestamp);
+        ofy().save().entity(item).now();
+        FeedEntry entry = new FeedEntry(ownerId, item.getId(), authorId, item.getListType(), timestamp);
+        ofy().save().entity(entry).now();
+        return entry;
+    }
+}
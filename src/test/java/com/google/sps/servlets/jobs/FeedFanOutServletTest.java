@@ -0,0 +1,126 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.util.FeedInboxes;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class FeedFanOutServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testDeliversToFollowers() throws Exception {
+        UserObject alpha = new UserObject("9876", "alpha", "alpha@example.com", "");
+        ofy().save().entities(alpha,
+                new FollowItem("0123", "9876"),
+                new FollowItem("3210", "9876"),
+                new FollowItem("9876", "3210")).now();
+        ReviewObject review = new ReviewObject(alpha, ContentType.MOVIE, "127",
+                "title", "", "review", "body", 4);
+        ofy().save().entity(review).now();
+
+        // Running the task twice, as a retry would, delivers every entry once
+        JsonObject result = fanOut(String.valueOf(review.getId()));
+        fanOut(String.valueOf(review.getId()));
+
+        assertEquals(2, result.get("delivered").getAsInt());
+        assertTrue(result.get("cursor").isJsonNull());
+        assertEquals(2, ofy().load().type(FeedEntry.class).count());
+        FeedEntry entry = ofy().load().type(FeedEntry.class).id(FeedEntry.makeId("0123", review.getId())).now();
+        assertEquals("9876", entry.getAuthorId());
+        assertEquals(review.getTimestamp(), entry.getTimestamp());
+    }
+
+    @Test
+    public void testCelebrityActivityIsPulled() throws Exception {
+        UserObject alpha = new UserObject("9876", "alpha", "alpha@example.com", "");
+        ofy().save().entities(alpha,
+                new FollowItem("0123", "9876"),
+                new FollowItem("3210", "9876")).now();
+        ReviewObject review = new ReviewObject(alpha, ContentType.MOVIE, "127",
+                "title", "", "review", "body", 4);
+        ofy().save().entity(review).now();
+
+        System.setProperty(FeedInboxes.CELEBRITY_THRESHOLD_PROPERTY, "2");
+        JsonObject result;
+        try {
+            result = fanOut(String.valueOf(review.getId()));
+        } finally {
+            System.clearProperty(FeedInboxes.CELEBRITY_THRESHOLD_PROPERTY);
+        }
+
+        assertTrue(result.get("pulled").getAsBoolean());
+        assertEquals(0, result.get("delivered").getAsInt());
+        assertEquals(0, ofy().load().type(FeedEntry.class).count());
+    }
+
+    @Test
+    public void testDeletedActivity() throws Exception {
+        JsonObject result = fanOut("4321");
+
+        assertEquals(0, result.get("delivered").getAsInt());
+    }
+
+    @Test
+    public void testInvalidActivityId() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("activityId")).thenReturn("abc");
+
+        new FeedFanOutServlet().doPost(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private JsonObject fanOut(String activityId) throws Exception {
+        stringWriter.getBuffer().setLength(0);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("activityId")).thenReturn(activityId);
+
+        new FeedFanOutServlet().doPost(request, response);
+        writer.flush();
+
+        return JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+    }
+}
@@ -0,0 +1,143 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.activity.FeedEntry;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.model.queue.QueueListItemObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class FeedRetractionServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testRetractsDeletedActivities() throws Exception {
+        ofy().save().entities(new FollowItem("0123", "9876"), new FollowItem("3210", "9876")).now();
+        FeedEntry deleted = deliver("0123", "9876");
+        FeedEntry deletedElsewhere = new FeedEntry("3210", deleted.getActivityId(), "9876",
+                MediaListItem.TYPE_QUEUE, deleted.getTimestamp());
+        ofy().save().entity(deletedElsewhere).now();
+        FeedEntry kept = deliver("0123", "9876");
+
+        JsonObject result = retract("9876", null, String.valueOf(deleted.getActivityId()));
+
+        assertEquals(2, result.get("deleted").getAsInt());
+        assertFalse(result.has("cursor"));
+        assertNull(ofy().load().type(FeedEntry.class).id(deleted.getId()).now());
+        assertNull(ofy().load().type(FeedEntry.class).id(deletedElsewhere.getId()).now());
+        assertNotNull(ofy().load().type(FeedEntry.class).id(kept.getId()).now());
+    }
+
+    @Test
+    public void testSkipsLegacyFollowKeys() throws Exception {
+        ofy().save().entity(new FollowItem("0123", "9876")).now();
+        Entity legacy = new Entity("FollowItem");
+        legacy.setIndexedProperty("userId", "3210");
+        legacy.setIndexedProperty("targetId", "9876");
+        DatastoreServiceFactory.getDatastoreService().put(legacy);
+        FeedEntry deleted = deliver("0123", "9876");
+
+        JsonObject result = retract("9876", null, String.valueOf(deleted.getActivityId()));
+
+        assertEquals(1, result.get("deleted").getAsInt());
+        assertNull(ofy().load().type(FeedEntry.class).id(deleted.getId()).now());
+    }
+
+    @Test
+    public void testRetractsUnfollowedAuthor() throws Exception {
+        FeedEntry unfollowed = deliver("0123", "9876");
+        FeedEntry kept = deliver("0123", "3210");
+
+        JsonObject result = retract("9876", "0123", null);
+
+        assertEquals(1, result.get("deleted").getAsInt());
+        assertNull(ofy().load().type(FeedEntry.class).id(unfollowed.getId()).now());
+        assertNotNull(ofy().load().type(FeedEntry.class).id(kept.getId()).now());
+    }
+
+    @Test
+    public void testFollowedAgainMeanwhile() throws Exception {
+        ofy().save().entity(new FollowItem("0123", "9876")).now();
+        FeedEntry entry = deliver("0123", "9876");
+
+        JsonObject result = retract("9876", "0123", null);
+
+        assertEquals(0, result.get("deleted").getAsInt());
+        assertNotNull(ofy().load().type(FeedEntry.class).id(entry.getId()).now());
+    }
+
+    @Test
+    public void testInvalidActivityIds() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("authorId")).thenReturn("9876");
+        when(request.getParameter("activityIds")).thenReturn("42,");
+
+        new FeedRetractionServlet().doPost(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private JsonObject retract(String authorId, String ownerId, String activityIds) throws Exception {
+        stringWriter.getBuffer().setLength(0);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("authorId")).thenReturn(authorId);
+        when(request.getParameter("ownerId")).thenReturn(ownerId);
+        when(request.getParameter("activityIds")).thenReturn(activityIds);
+
+        new FeedRetractionServlet().doPost(request, response);
+        writer.flush();
+
+        return JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+    }
+
+    private FeedEntry deliver(String ownerId, String authorId) {
+        QueueListItemObject item = new QueueListItemObject();
+        item.setUserId(authorId);
+        item.setListType(MediaListItem.TYPE_QUEUE);
+        item.setTimestamp(System.currentTimeMillis());
+        ofy().save().entity(item).now();
+        FeedEntry entry = new FeedEntry(ownerId, item.getId(), authorId, item.getListType(), item.getTimestamp());
+        ofy().save().entity(entry).now();
+        return entry;
+    }
+}
@@ -0,0 +1,81 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.graph.SocialGraphService;
+import com.google.sps.model.follow.FollowChange;
+import com.google.sps.model.follow.FollowItem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class FollowChangePruneServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testDeletesExpiredChanges() throws Exception {
+        FollowChange expired = new FollowChange(new FollowItem("alice", "bob"), true);
+        expired.setTimestamp(System.currentTimeMillis() - SocialGraphService.CHANGE_RETENTION_MILLIS - 1000);
+        FollowChange recent = new FollowChange(new FollowItem("bob", "alice"), true);
+        ofy().save().entities(expired, recent).now();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        new FollowChangePruneServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject result = JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+        assertEquals(1, result.get("deleted").getAsInt());
+        assertFalse(result.has("cursor"));
+
+        ofy().clear();
+        List<FollowChange> left = ofy().load().type(FollowChange.class).list();
+        assertEquals(1, left.size());
+        assertEquals("bob", left.get(0).getUserId());
+    }
+
+    @Test
+    public void testBadCutoff() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("before")).thenReturn("yesterday");
+
+        new FollowChangePruneServlet().doGet(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+}
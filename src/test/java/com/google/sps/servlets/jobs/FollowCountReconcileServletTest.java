@@ -0,0 +1,106 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.follow.FollowItem;
+import com.google.sps.model.user.FollowerCountShard;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.model.user.UserStats;
+import com.google.sps.util.FollowLookups;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class FollowCountReconcileServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testRepairsDriftedCounts() throws Exception {
+        ofy().save().entities(
+                new UserObject("9876", "alpha", "alpha@example.com", ""),
+                new UserObject("0123", "bravo", "bravo@example.com", ""),
+                new FollowItem("0123", "9876")).now();
+        // alpha's stats drifted, bravo's were never computed
+        ofy().save().entity(new UserStats("9876", 5, 2)).now();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        new FollowCountReconcileServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject result = JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+        assertEquals(2, result.get("checked").getAsInt());
+        assertEquals(2, result.get("repaired").getAsInt());
+
+        ofy().clear();
+        UserStats alpha = ofy().load().type(UserStats.class).id("9876").now();
+        assertEquals(1, alpha.getFollowerCount());
+        assertEquals(0, alpha.getFollowingCount());
+        UserStats bravo = ofy().load().type(UserStats.class).id("0123").now();
+        assertEquals(0, bravo.getFollowerCount());
+        assertEquals(1, bravo.getFollowingCount());
+    }
+
+    @Test
+    public void testKeepsFollowerShards() throws Exception {
+        ofy().save().entities(
+                new UserObject("9876", "alpha", "alpha@example.com", ""),
+                new FollowItem("0123", "9876"),
+                new FollowItem("3210", "9876")).now();
+        // One follower was counted in a shard, the other one was missed
+        FollowerCountShard shard = new FollowerCountShard(FollowerCountShard.makeId("9876", 3));
+        shard.add(1);
+        ofy().save().entities(new UserStats("9876", 0, 0), shard).now();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        new FollowCountReconcileServlet().doGet(request, response);
+
+        ofy().clear();
+        assertEquals(1, ofy().load().type(UserStats.class).id("9876").now().getFollowerCount());
+        assertEquals(2, FollowLookups.loadExactStats("9876").getFollowerCount());
+    }
+
+    @Test
+    public void testBadCursor() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("cursor")).thenReturn("%%%");
+
+        new FollowCountReconcileServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+}
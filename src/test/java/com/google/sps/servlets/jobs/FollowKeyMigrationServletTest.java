@@ -0,0 +1,111 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.ContextListener;
+import com.google.sps.model.follow.FollowItem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class FollowKeyMigrationServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testMigratesNumericKeys() throws Exception {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        Key legacy = datastore.put(legacyFollow("9876", "3210"));
+        Key duplicate = datastore.put(legacyFollow("9876", "3210"));
+        ofy().save().entity(new FollowItem("0123", "9876")).now();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        new FollowKeyMigrationServlet().doGet(request, response);
+        writer.flush();
+
+        assertMissing(datastore, legacy);
+        assertMissing(datastore, duplicate);
+        assertNotNull(ofy().load().type(FollowItem.class).id("9876:3210").now());
+        assertNotNull(ofy().load().type(FollowItem.class).id("0123:9876").now());
+        assertEquals(2, ofy().load().type(FollowItem.class).count());
+        assertEquals(0, ofy().load().type(FollowItem.class).id("9876:3210").now().getTimestamp());
+    }
+
+    @Test
+    public void testAddsMissingTimestamps() throws Exception {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        // Keyed by name, but saved before follows had a timestamp
+        Entity unordered = new Entity("FollowItem", FollowItem.makeId("9876", "3210"));
+        unordered.setIndexedProperty("userId", "9876");
+        unordered.setIndexedProperty("targetId", "3210");
+        datastore.put(unordered);
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        new FollowKeyMigrationServlet().doGet(request, response);
+
+        assertTrue(datastore.get(unordered.getKey()).hasProperty("timestamp"));
+        assertEquals(1, ofy().load().type(FollowItem.class).filter("userId", "9876").order("-timestamp").count());
+    }
+
+    @Test
+    public void testBadCursor() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("cursor")).thenReturn("%%%");
+
+        new FollowKeyMigrationServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private static Entity legacyFollow(String userId, String targetId) {
+        Entity entity = new Entity("FollowItem");
+        entity.setIndexedProperty("userId", userId);
+        entity.setIndexedProperty("targetId", targetId);
+        return entity;
+    }
+
+    private static void assertMissing(DatastoreService datastore, Key key) {
+        try {
+            datastore.get(key);
+            fail("Legacy follow " + key + " was not deleted");
+        } catch (EntityNotFoundException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.model.queue.QueueListItemObject;
+import com.google.sps.model.queue.ViewedListItemObject;
+import com.google.sps.util.ListLookups;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class ListItemPointerMigrationServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testPointsLegacyItemsAndDeletesDuplicates() throws Exception {
+        // Saved before pointers existed, the queue item twice
+        legacyItem(new QueueListItemObject(), MediaListItem.TYPE_QUEUE);
+        legacyItem(new QueueListItemObject(), MediaListItem.TYPE_QUEUE);
+        ViewedListItemObject viewed = legacyItem(new ViewedListItemObject(), MediaListItem.TYPE_VIEWED);
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        new ListItemPointerMigrationServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject result = new JsonParser().parse(stringWriter.toString()).getAsJsonObject();
+        assertEquals(2, result.get("pointed").getAsInt());
+        assertEquals(1, result.get("duplicates").getAsInt());
+        assertFalse(result.has("cursor"));
+
+        List<QueueListItemObject> queued = ofy().load().type(QueueListItemObject.class).list();
+        assertEquals(1, queued.size());
+        assertEquals(queued.get(0).getId(), ListLookups.deleteIfPresent(
+                MediaListItem.TYPE_QUEUE, "5678", ContentType.MOVIE, "123"));
+        assertEquals(viewed.getId(), ListLookups.deleteIfPresent(
+                MediaListItem.TYPE_VIEWED, "5678", ContentType.MOVIE, "123"));
+    }
+
+    @Test
+    public void testBadCursor() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("cursor")).thenReturn("%%%");
+
+        new ListItemPointerMigrationServlet().doGet(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private <T extends MediaListItem> T legacyItem(T item, String listType) {
+        item.setUserId("5678");
+        item.setMediaType(ContentType.MOVIE);
+        item.setMediaId("123");
+        item.setListType(listType);
+        ofy().save().entity(item).now();
+        return item;
+    }
+}
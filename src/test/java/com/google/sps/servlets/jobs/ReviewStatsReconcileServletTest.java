@@ -0,0 +1,87 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.review.ReviewStats;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class ReviewStatsReconcileServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @Before
+    public void before() throws Exception {
+        new ContextListener().initDbObjects();
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testRepairsDriftedStats() throws Exception {
+        UserObject alpha = new UserObject("9876", "alpha", "alpha@example.com", "");
+        UserObject bravo = new UserObject("0123", "bravo", "bravo@example.com", "");
+        ofy().save().entities(
+                new ReviewObject(alpha, ContentType.MOVIE, "127", "test movie", "", "Good", "Good movie", 4),
+                new ReviewObject(bravo, ContentType.MOVIE, "127", "test movie", "", "Bad", "Bad movie", 2)).now();
+        // The movie's stats missed bravo's review, the book's are right
+        ReviewStats movie = new ReviewStats(ContentType.MOVIE, "127");
+        movie.addRating(4);
+        ofy().save().entities(movie, new ReviewStats(ContentType.BOOK, "ASImDQAAQBAJ")).now();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        new ReviewStatsReconcileServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject result = JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+        assertEquals(2, result.get("checked").getAsInt());
+        assertEquals(1, result.get("repaired").getAsInt());
+
+        ofy().clear();
+        ReviewStats repaired = ofy().load().type(ReviewStats.class)
+                .id(ReviewStats.makeId(ContentType.MOVIE, "127")).now();
+        assertEquals(2, repaired.getRatingCount());
+        assertEquals(3.0, repaired.getAverageRating(), 0.001);
+    }
+
+    @Test
+    public void testBadCursor() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("cursor")).thenReturn("%%%");
+
+        new ReviewStatsReconcileServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+}
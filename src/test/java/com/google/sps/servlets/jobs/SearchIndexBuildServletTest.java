@@ -0,0 +1,109 @@
+package com.google.sps.servlets.jobs;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.search.ReviewSearchIndex;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class SearchIndexBuildServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @BeforeClass
+    public static void initialize() {
+        new ContextListener().initDbObjects();
+        System.setProperty(ReviewSearchIndex.REFRESH_MILLIS_PROPERTY, "0");
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        System.clearProperty(ReviewSearchIndex.REFRESH_MILLIS_PROPERTY);
+    }
+
+    @Before
+    public void before() throws Exception {
+        helper.setUp();
+
+        response = mock(HttpServletResponse.class);
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testIndexesMissingReviews() throws Exception {
+        ReviewObject review = saveReview();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        new SearchIndexBuildServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject result = JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+        assertEquals(1, result.get("indexed").getAsInt());
+        assertTrue(ReviewSearchIndex.get().contains(review.getId()));
+    }
+
+    @Test
+    public void testRepairsSingleReview() throws Exception {
+        ReviewObject review = saveReview();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("reviewId")).thenReturn(String.valueOf(review.getId()));
+        new SearchIndexBuildServlet().doPost(request, response);
+        assertTrue(ReviewSearchIndex.get().contains(review.getId()));
+
+        // Deleted without updating the index
+        ofy().delete().entity(review).now();
+        new SearchIndexBuildServlet().doPost(request, response);
+        assertFalse(ReviewSearchIndex.get().contains(review.getId()));
+        assertEquals(0, ReviewSearchIndex.get().search("popcorn", 0, 10).getTotal());
+    }
+
+    @Test
+    public void testBadReviewId() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("reviewId")).thenReturn("abc");
+
+        new SearchIndexBuildServlet().doPost(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    private ReviewObject saveReview() {
+        UserObject user = new UserObject("123", "test", "test@example.com", "");
+        ReviewObject review = new ReviewObject(user, ContentType.MOVIE, "127", "test movie", "",
+                "Popcorn classic", "Bring popcorn", 5);
+        ofy().save().entity(review).now();
+        return review;
+    }
+}
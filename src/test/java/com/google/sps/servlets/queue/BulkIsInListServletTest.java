@@ -0,0 +1,150 @@
+package com.google.sps.servlets.queue;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.queue.MediaListItem;
+import com.google.sps.model.queue.QueueListItemObject;
+import com.google.sps.model.queue.ViewedListItemObject;
+import com.google.sps.util.ListLookups;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class BulkIsInListServletTest extends Mockito {
+
+    public static final String DUMMY_USER_ID = "5678";
+    public static final String GOOD_MOVIE_ID = "127";
+    public static final String GOOD_BOOK_ID = "ASImDQAAQBAJ";
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @BeforeClass
+    public static void initialize() {
+        new ContextListener().initDbObjects();
+    }
+
+    @Before
+    public void before() throws IOException {
+        helper.setUp();
+        response = mock(HttpServletResponse.class);
+
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+
+        ViewedListItemObject watched = new ViewedListItemObject();
+        watched.setUserId(DUMMY_USER_ID);
+        watched.setMediaType(ContentType.MOVIE);
+        watched.setMediaId(GOOD_MOVIE_ID);
+        watched.setListType(MediaListItem.TYPE_VIEWED);
+        ListLookups.insertIfAbsent(watched);
+
+        QueueListItemObject queued = new QueueListItemObject();
+        queued.setUserId(DUMMY_USER_ID);
+        queued.setMediaType(ContentType.BOOK);
+        queued.setMediaId(GOOD_BOOK_ID);
+        queued.setListType(MediaListItem.TYPE_QUEUE);
+        ListLookups.insertIfAbsent(queued);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testGetNoUser() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("items")).thenReturn(ContentType.MOVIE + ":" + GOOD_MOVIE_ID);
+
+        new BulkIsInListServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testGetBadItem() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(DUMMY_USER_ID);
+        when(request.getParameter("items")).thenReturn("bok:" + GOOD_BOOK_ID);
+
+        new BulkIsInListServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testGetTrailingComma() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(DUMMY_USER_ID);
+        when(request.getParameter("items")).thenReturn(ContentType.MOVIE + ":" + GOOD_MOVIE_ID + ",");
+
+        new BulkIsInListServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testGetTooManyItems() throws IOException {
+        StringBuilder items = new StringBuilder(ContentType.MOVIE + ":0");
+        for (int i = 1; i <= BulkIsInListServlet.MAX_ITEMS; i++) {
+            items.append(",").append(ContentType.MOVIE).append(":").append(i);
+        }
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(DUMMY_USER_ID);
+        when(request.getParameter("items")).thenReturn(items.toString());
+
+        new BulkIsInListServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testGetMemberships() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(DUMMY_USER_ID);
+        // The movie id as a book isn't in any list
+        when(request.getParameter("items")).thenReturn(ContentType.MOVIE + ":" + GOOD_MOVIE_ID + ","
+                + ContentType.BOOK + ":" + GOOD_BOOK_ID + "," + ContentType.BOOK + ":" + GOOD_MOVIE_ID);
+
+        new BulkIsInListServlet().doGet(request, response);
+        writer.flush();
+
+        JsonArray results = JsonParser.parseString(stringWriter.toString()).getAsJsonArray();
+        assertEquals(3, results.size());
+
+        JsonObject movie = results.get(0).getAsJsonObject();
+        assertFalse(movie.get("isInQueue").getAsBoolean());
+        assertTrue(movie.get("isInViewed").getAsBoolean());
+
+        JsonObject book = results.get(1).getAsJsonObject();
+        assertTrue(book.get("isInQueue").getAsBoolean());
+        assertFalse(book.get("isInViewed").getAsBoolean());
+
+        JsonObject other = results.get(2).getAsJsonObject();
+        assertFalse(other.get("isInQueue").getAsBoolean());
+        assertFalse(other.get("isInViewed").getAsBoolean());
+    }
+}
@@ -11,6 +11,7 @@ import com.google.sps.model.queue.MediaListItem;
 import com.google.sps.model.queue.QueueListItemObject;
 import com.google.sps.model.queue.ViewedListItemObject;
 import com.google.sps.servlets.review.ReviewServlet;
+import com.google.sps.util.ListLookups;
 import com.google.sps.util.Utils;
 import org.junit.After;
 import org.junit.Before;
@@ -102,6 +103,24 @@ public class MediaItemInServletTest {
         assertTrue(db.isInQueue());
     }
 
+    @Test
+    public void getOtherMediaTypeShouldBeFalse() throws IOException {
+        populateDb();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        // 123 is a watched movie, not a book
+        when(request.getParameter("mediaId")).thenReturn("123");
+        when(request.getParameter("mediaType")).thenReturn(Utils.ContentType.BOOK);
+        when(request.getParameter("userId")).thenReturn("5678");
+
+        new MediaItemInServlet().doGet(request, response);
+        writer.flush();
+
+        IsInListResponseObject db = mapper.readValue(stringWriter.toString(), IsInListResponseObject.class);
+        assertFalse(db.isInViewed());
+        assertFalse(db.isInQueue());
+    }
+
     @Test
     public void getEmptyDatabase() throws IOException {
         HttpServletRequest request = mock(HttpServletRequest.class);
@@ -136,7 +155,7 @@ public class MediaItemInServletTest {
         watched.setMediaId("123");
         watched.setListType(MediaListItem.TYPE_VIEWED);
 
-        ofy().save().entity(watched).now();
+        ListLookups.insertIfAbsent(watched);
 
         QueueListItemObject queue = new QueueListItemObject();
         queue.setId(4321L);
@@ -145,6 +164,6 @@ public class MediaItemInServletTest {
         queue.setMediaId("321");
         queue.setListType(MediaListItem.TYPE_QUEUE);
 
-        ofy().save().entity(queue).now();
+        ListLookups.insertIfAbsent(queue);
     }
 }
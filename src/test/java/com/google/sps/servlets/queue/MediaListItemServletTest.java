@@ -11,6 +11,7 @@ import com.google.sps.model.queue.MediaListItem;
 import com.google.sps.model.queue.QueueListItemObject;
 import com.google.sps.model.queue.ViewedListItemObject;
 import com.google.sps.servlets.TestDelegatingServletInputStream;
+import com.google.sps.util.ListLookups;
 import com.google.sps.util.Utils.ContentType;
 import org.junit.After;
 import org.junit.Before;
@@ -285,7 +286,7 @@ public class MediaListItemServletTest extends Mockito {
         watched.setMediaId("123");
         watched.setListType(MediaListItem.TYPE_VIEWED);
 
-        ofy().save().entity(watched).now();
+        ListLookups.insertIfAbsent(watched);
 
         QueueListItemObject queue = new QueueListItemObject();
         queue.setId(4321L);
@@ -294,7 +295,7 @@ public class MediaListItemServletTest extends Mockito {
         queue.setMediaId("321");
         queue.setListType(MediaListItem.TYPE_QUEUE);
 
-        ofy().save().entity(queue).now();
+        ListLookups.insertIfAbsent(queue);
 
         UserObject userObject = new UserObject("5678", "test", "", "");
         ofy().save().entity(userObject).now();
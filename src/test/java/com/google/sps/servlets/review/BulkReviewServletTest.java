@@ -0,0 +1,142 @@
+package com.google.sps.servlets.review;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.util.ReviewLookups;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class BulkReviewServletTest extends Mockito {
+
+    public static final String DUMMY_USER_ID = "123";
+    public static final String OTHER_USER_ID = "456";
+    public static final String GOOD_MOVIE_ID = "127";
+    public static final String GOOD_BOOK_ID = "ASImDQAAQBAJ";
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @BeforeClass
+    public static void initialize() {
+        new ContextListener().initDbObjects();
+    }
+
+    @Before
+    public void before() throws IOException {
+        helper.setUp();
+        response = mock(HttpServletResponse.class);
+
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+
+        UserObject user = new UserObject(DUMMY_USER_ID, "test", "test@example.com", "");
+        UserObject other = new UserObject(OTHER_USER_ID, "other", "other@example.com", "");
+        postReview(user, 4);
+        postReview(other, 2);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testGetNoItems() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        new BulkReviewServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testGetBadItem() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("items")).thenReturn("bok:" + GOOD_BOOK_ID);
+
+        new BulkReviewServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testGetViewerReviewsAndStats() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(DUMMY_USER_ID);
+        when(request.getParameter("items")).thenReturn(
+                ContentType.MOVIE + ":" + GOOD_MOVIE_ID + "," + ContentType.BOOK + ":" + GOOD_BOOK_ID);
+
+        new BulkReviewServlet().doGet(request, response);
+        writer.flush();
+
+        JsonArray results = JsonParser.parseString(stringWriter.toString()).getAsJsonArray();
+        assertEquals(2, results.size());
+
+        JsonObject movie = results.get(0).getAsJsonObject();
+        assertEquals(4, movie.getAsJsonObject("viewerReview").get("rating").getAsInt());
+        assertEquals(2, movie.get("ratingCount").getAsInt());
+        assertEquals(3.0, movie.get("averageRating").getAsDouble(), 0.001);
+
+        JsonObject book = results.get(1).getAsJsonObject();
+        assertTrue(book.get("viewerReview").isJsonNull());
+        assertEquals(0, book.get("ratingCount").getAsInt());
+    }
+
+    @Test
+    public void testStatsFollowDeletes() throws IOException {
+        // Computes and stores the stats
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("items")).thenReturn(ContentType.MOVIE + ":" + GOOD_MOVIE_ID);
+        new BulkReviewServlet().doGet(request, response);
+
+        ReviewObject review = ofy().load().type(ReviewObject.class)
+                .filter("userId", OTHER_USER_ID).first().now();
+        ofy().delete().entity(review).now();
+        ReviewLookups.removeReview(review);
+
+        HttpServletResponse nextResponse = mock(HttpServletResponse.class);
+        StringWriter nextStringWriter = new StringWriter();
+        PrintWriter nextWriter = new PrintWriter(nextStringWriter);
+        when(nextResponse.getWriter()).thenReturn(nextWriter);
+
+        new BulkReviewServlet().doGet(request, nextResponse);
+        nextWriter.flush();
+
+        JsonObject movie = JsonParser.parseString(nextStringWriter.toString())
+                .getAsJsonArray().get(0).getAsJsonObject();
+        assertEquals(1, movie.get("ratingCount").getAsInt());
+        assertEquals(4.0, movie.get("averageRating").getAsDouble(), 0.001);
+    }
+
+    private void postReview(UserObject user, int rating) {
+        ReviewObject review = new ReviewObject(user, ContentType.MOVIE, GOOD_MOVIE_ID,
+                "test movie", "", "Test review", "This is a test review", rating);
+        ofy().save().entity(review).now();
+        ReviewLookups.recordReview(review);
+    }
+}
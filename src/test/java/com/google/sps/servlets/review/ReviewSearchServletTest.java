@@ -0,0 +1,140 @@
+package com.google.sps.servlets.review;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.user.UserObject;
+import com.google.sps.search.ReviewSearchIndex;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class ReviewSearchServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+    private UserObject user;
+
+    @BeforeClass
+    public static void initialize() {
+        new ContextListener().initDbObjects();
+        // Every test starts with an empty Datastore, which the index should see right away
+        System.setProperty(ReviewSearchIndex.REFRESH_MILLIS_PROPERTY, "0");
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        System.clearProperty(ReviewSearchIndex.REFRESH_MILLIS_PROPERTY);
+    }
+
+    @Before
+    public void before() throws IOException {
+        helper.setUp();
+        response = mock(HttpServletResponse.class);
+
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+
+        user = new UserObject("123", "test", "test@example.com", "");
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testSearchEmptyQuery() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("query")).thenReturn(" ");
+
+        new ReviewSearchServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testSearchRanksMatches() throws IOException {
+        ReviewObject passing = indexReview("Great film", "The soundtrack was fine but the acting was better.");
+        ReviewObject focused = indexReview("Soundtrack heaven", "Every one of the soundtracks is wonderful.");
+        indexReview("Boring", "Nothing happens for two hours.");
+
+        JsonObject results = search("soundtracks");
+
+        JsonArray hits = results.getAsJsonArray("results");
+        assertEquals(2, results.get("total_results").getAsInt());
+        assertEquals(focused.getId().longValue(), hits.get(0).getAsJsonObject().get("id").getAsLong());
+        assertEquals(passing.getId().longValue(), hits.get(1).getAsJsonObject().get("id").getAsLong());
+        assertTrue(results.has("took_ms"));
+    }
+
+    @Test
+    public void testRemovedReviewsAreNotFound() throws IOException {
+        ReviewObject review = indexReview("Soundtrack heaven", "Every one of the soundtracks is wonderful.");
+        ReviewSearchIndex.get().remove(review.getId());
+
+        JsonObject results = search("soundtrack");
+
+        assertEquals(0, results.get("total_results").getAsInt());
+    }
+
+    @Test
+    public void testSearchPagination() throws IOException {
+        for (int i = 0; i < 12; i++) {
+            indexReview("Review " + i, "The soundtrack is number " + i);
+        }
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("query")).thenReturn("soundtrack");
+        when(request.getParameter("pageNumber")).thenReturn("2");
+
+        new ReviewSearchServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject results = JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+        assertEquals(12, results.get("total_results").getAsInt());
+        assertEquals(2, results.get("total_pages").getAsInt());
+        assertEquals(2, results.getAsJsonArray("results").size());
+    }
+
+    private JsonObject search(String query) throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("query")).thenReturn(query);
+
+        new ReviewSearchServlet().doGet(request, response);
+        writer.flush();
+
+        return JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+    }
+
+    private ReviewObject indexReview(String title, String body) {
+        ReviewObject review = new ReviewObject(user, ContentType.MOVIE, "127",
+                "test movie", "", title, body, 3);
+        ofy().save().entity(review).now();
+        ReviewSearchIndex.get().add(review);
+        return review;
+    }
+}
@@ -1,11 +1,18 @@
 package com.google.sps.servlets.review;
 
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.sps.ContextListener;
 import com.google.sps.model.review.ReviewObject;
+import com.google.sps.model.review.ReviewSummaryObject;
 import com.google.sps.model.user.UserObject;
 import com.google.sps.servlets.TestDelegatingServletInputStream;
+import com.google.sps.util.ReviewLookups;
 import com.google.sps.util.Utils.ContentType;
 import org.junit.After;
 import org.junit.Before;
@@ -572,4 +579,190 @@ public class ReviewServletTest extends Mockito {
                 .list();
         assertTrue(reviews.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetContentReviewsWithCursor() throws IOException {
+        initLoggedIn();
+
+        UserObject userObject = ofy().load().type(UserObject.class).id(DUMMY_USER_ID).now();
+        for (int i = 0; i < 12; i++) {
+            ReviewObject reviewObject = new ReviewObject(userObject,
+                    ContentType.BOOK, GOOD_BOOK_ID,
+                    DUMMY_BOOK_TITLE, DUMMY_BOOK_ART_URL,
+                    DUMMY_REVIEW_TITLE, DUMMY_REVIEW_BODY, Integer.parseInt(GOOD_DUMMY_RATING));
+            reviewObject.setTimestamp(i);
+            ofy().save().entity(reviewObject).now();
+        }
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("contentType")).thenReturn(ContentType.BOOK);
+        when(request.getParameter("contentId")).thenReturn(GOOD_BOOK_ID);
+        when(request.getParameter("cursor")).thenReturn("");
+
+        new ReviewServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject firstPage = JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+        assertEquals(10, firstPage.getAsJsonArray("results").size());
+        assertTrue(firstPage.has("cursor"));
+
+        HttpServletResponse nextResponse = mock(HttpServletResponse.class);
+        StringWriter nextStringWriter = new StringWriter();
+        PrintWriter nextWriter = new PrintWriter(nextStringWriter);
+        when(nextResponse.getWriter()).thenReturn(nextWriter);
+        when(request.getParameter("cursor")).thenReturn(firstPage.get("cursor").getAsString());
+
+        new ReviewServlet().doGet(request, nextResponse);
+        nextWriter.flush();
+
+        JsonObject secondPage = JsonParser.parseString(nextStringWriter.toString()).getAsJsonObject();
+        assertEquals(2, secondPage.getAsJsonArray("results").size());
+        assertFalse(secondPage.has("cursor"));
+    }
+
+    @Test
+    public void testGetBadCursor() throws IOException {
+        initLoggedOut();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("contentType")).thenReturn(ContentType.BOOK);
+        when(request.getParameter("contentId")).thenReturn(GOOD_BOOK_ID);
+        when(request.getParameter("cursor")).thenReturn("%%%");
+
+        new ReviewServlet().doGet(request, response);
+        writer.flush();
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testGetUserReviewsSummary() throws IOException {
+        initLoggedIn();
+
+        StringBuilder longBody = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longBody.append(DUMMY_REVIEW_BODY).append(' ');
+        }
+        UserObject userObject = ofy().load().type(UserObject.class).id(DUMMY_USER_ID).now();
+        ReviewObject reviewObject = new ReviewObject(userObject,
+                ContentType.BOOK, GOOD_BOOK_ID,
+                DUMMY_BOOK_TITLE, DUMMY_BOOK_ART_URL,
+                DUMMY_REVIEW_TITLE, longBody.toString(), Integer.parseInt(GOOD_DUMMY_RATING));
+        ofy().save().entity(reviewObject).now();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("userId")).thenReturn(DUMMY_USER_ID);
+        when(request.getParameter("pageNumber")).thenReturn("1");
+        when(request.getParameter("summary")).thenReturn("1");
+
+        new ReviewServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject summary = JsonParser.parseString(stringWriter.toString())
+                .getAsJsonArray().get(0).getAsJsonObject();
+        assertFalse(summary.has("reviewBody"));
+        assertTrue(summary.get("truncated").getAsBoolean());
+        assertTrue(summary.get("reviewExcerpt").getAsString().length() <= ReviewObject.EXCERPT_LENGTH + 3);
+    }
+
+    @Test
+    public void testGetContentReviewsSummaryFromStoredSummary() throws IOException {
+        initLoggedIn();
+
+        UserObject userObject = ofy().load().type(UserObject.class).id(DUMMY_USER_ID).now();
+        ReviewObject reviewObject = new ReviewObject(userObject,
+                ContentType.MOVIE, GOOD_MOVIE_ID,
+                DUMMY_MOVIE_TITLE, DUMMY_MOVIE_ART_URL,
+                DUMMY_REVIEW_TITLE, DUMMY_REVIEW_BODY, Integer.parseInt(GOOD_DUMMY_RATING));
+        ofy().save().entity(reviewObject).now();
+        ReviewLookups.recordReview(reviewObject);
+        ofy().clear();
+        assertNotNull(ofy().load().type(ReviewSummaryObject.class).id(reviewObject.getId()).now());
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("contentType")).thenReturn(ContentType.MOVIE);
+        when(request.getParameter("contentId")).thenReturn(GOOD_MOVIE_ID);
+        when(request.getParameter("cursor")).thenReturn("");
+        when(request.getParameter("summary")).thenReturn("1");
+
+        new ReviewServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject summary = JsonParser.parseString(stringWriter.toString()).getAsJsonObject()
+                .getAsJsonArray("results").get(0).getAsJsonObject();
+        assertEquals(reviewObject.getId().longValue(), summary.get("id").getAsLong());
+        assertEquals(DUMMY_REVIEW_BODY, summary.get("reviewExcerpt").getAsString());
+        assertFalse(summary.get("truncated").getAsBoolean());
+        assertFalse(summary.has("reviewBody"));
+    }
+
+    @Test
+    public void testGetReviewById() throws IOException {
+        initLoggedIn();
+
+        UserObject userObject = ofy().load().type(UserObject.class).id(DUMMY_USER_ID).now();
+        ReviewObject reviewObject = new ReviewObject(userObject,
+                ContentType.BOOK, GOOD_BOOK_ID,
+                DUMMY_BOOK_TITLE, DUMMY_BOOK_ART_URL,
+                DUMMY_REVIEW_TITLE, DUMMY_REVIEW_BODY, Integer.parseInt(GOOD_DUMMY_RATING));
+        ofy().save().entity(reviewObject).now();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("id")).thenReturn(String.valueOf(reviewObject.getId()));
+
+        new ReviewServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject review = JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+        assertEquals(DUMMY_REVIEW_BODY, review.get("reviewBody").getAsString());
+        assertFalse(review.has("reviewExcerpt"));
+    }
+
+    @Test
+    public void testGetCompressedReviewById() throws IOException, EntityNotFoundException {
+        initLoggedIn();
+
+        StringBuilder body = new StringBuilder();
+        while (body.length() < ReviewObject.COMPRESSION_THRESHOLD * 2) {
+            body.append(DUMMY_REVIEW_BODY).append(' ');
+        }
+        String longBody = body.toString().trim();
+
+        UserObject userObject = ofy().load().type(UserObject.class).id(DUMMY_USER_ID).now();
+        ReviewObject reviewObject = new ReviewObject(userObject,
+                ContentType.BOOK, GOOD_BOOK_ID,
+                DUMMY_BOOK_TITLE, DUMMY_BOOK_ART_URL,
+                DUMMY_REVIEW_TITLE, longBody, Integer.parseInt(GOOD_DUMMY_RATING));
+        ofy().save().entity(reviewObject).now();
+        ofy().clear();
+
+        Entity stored = DatastoreServiceFactory.getDatastoreService()
+                .get(com.googlecode.objectify.Key.create(ReviewObject.class, reviewObject.getId()).getRaw());
+        assertFalse(stored.hasProperty("reviewBody"));
+        assertTrue(stored.hasProperty("compressedBody"));
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("id")).thenReturn(String.valueOf(reviewObject.getId()));
+
+        new ReviewServlet().doGet(request, response);
+        writer.flush();
+
+        JsonObject review = JsonParser.parseString(stringWriter.toString()).getAsJsonObject();
+        assertEquals(longBody, review.get("reviewBody").getAsString());
+        assertFalse(review.has("compressedBody"));
+        assertFalse(review.has("excerptTruncated"));
+    }
+
+    @Test
+    public void testGetMissingReviewId() throws IOException {
+        initLoggedOut();
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("id")).thenReturn("42");
+
+        new ReviewServlet().doGet(request, response);
+        writer.flush();
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+}
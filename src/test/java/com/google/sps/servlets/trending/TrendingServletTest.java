@@ -0,0 +1,132 @@
+package com.google.sps.servlets.trending;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.sps.ContextListener;
+import com.google.sps.trending.TrendingTracker;
+import com.google.sps.util.Utils.ContentType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static com.googlecode.objectify.ObjectifyService.ofy;
+import static org.junit.Assert.*;
+
+public class TrendingServletTest extends Mockito {
+
+    private final LocalServiceTestHelper helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+    private HttpServletResponse response;
+    private StringWriter stringWriter;
+    private PrintWriter writer;
+
+    @BeforeClass
+    public static void initialize() {
+        new ContextListener().initDbObjects();
+    }
+
+    @Before
+    public void before() throws IOException {
+        helper.setUp();
+        response = mock(HttpServletResponse.class);
+
+        stringWriter = new StringWriter();
+        writer = new PrintWriter(stringWriter);
+        when(response.getWriter()).thenReturn(writer);
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+        ofy().clear();
+    }
+
+    @Test
+    public void testGetInvalidContentType() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("contentType")).thenReturn("bok");
+
+        new TrendingServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testGetInvalidLimit() throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("contentType")).thenReturn(ContentType.MOVIE);
+        when(request.getParameter("limit")).thenReturn("0");
+
+        new TrendingServlet().doGet(request, response);
+
+        verify(response, times(1)).sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testMostActiveItemsComeFirst() throws IOException {
+        long now = System.currentTimeMillis();
+        TrendingTracker tracker = TrendingTracker.get();
+        tracker.record(ContentType.MOVIE, "trending-1", "less popular", "", 500, now);
+        tracker.record(ContentType.MOVIE, "trending-2", "popular", "", 500, now);
+        tracker.record(ContentType.MOVIE, "trending-2", "popular", "", 500, now);
+        tracker.record(ContentType.BOOK, "trending-3", "a book", "", 500, now);
+
+        JsonArray results = getTrending(ContentType.MOVIE);
+
+        int popular = indexOf(results, "trending-2");
+        int lessPopular = indexOf(results, "trending-1");
+        assertTrue(popular >= 0 && lessPopular >= 0);
+        assertTrue(popular < lessPopular);
+        assertEquals("popular", results.get(popular).getAsJsonObject().get("title").getAsString());
+        assertEquals(-1, indexOf(results, "trending-3"));
+    }
+
+    @Test
+    public void testOldActivityDecays() throws IOException {
+        long now = System.currentTimeMillis();
+        TrendingTracker tracker = TrendingTracker.get();
+        tracker.record(ContentType.BOOK, "decayed-1", "old", "", 4000, now - TimeUnit.DAYS.toMillis(30));
+        tracker.record(ContentType.BOOK, "decayed-2", "new", "", 1000, now);
+
+        JsonArray results = getTrending(ContentType.BOOK);
+
+        int recent = indexOf(results, "decayed-2");
+        int old = indexOf(results, "decayed-1");
+        assertTrue(recent >= 0);
+        assertTrue(old == -1 || recent < old);
+    }
+
+    private JsonArray getTrending(String contentType) throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("contentType")).thenReturn(contentType);
+        when(request.getParameter("limit")).thenReturn(String.valueOf(TrendingTracker.MAX_ITEMS));
+
+        new TrendingServlet().doGet(request, response);
+        writer.flush();
+
+        return JsonParser.parseString(stringWriter.toString()).getAsJsonArray();
+    }
+
+    private static int indexOf(JsonArray results, String contentId) {
+        for (int i = 0; i < results.size(); i++) {
+            JsonElement item = results.get(i);
+            if (contentId.equals(item.getAsJsonObject().get("contentId").getAsString())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}